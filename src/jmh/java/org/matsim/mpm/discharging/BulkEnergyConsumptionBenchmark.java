@@ -0,0 +1,84 @@
+package org.matsim.mpm.discharging;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.ev.discharging.AuxEnergyConsumption;
+import org.matsim.contrib.ev.discharging.DriveEnergyConsumption;
+import org.matsim.core.network.NetworkUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Energy estimation of one route as done by the ev routing: per link through the consumption interfaces, and in bulk
+ * with the {@link LinearEnergyConsumption}.
+ * <p>
+ * {@code mvn -Pjmh test-compile}, then
+ * {@code java -cp target/test-classes:target/classes:<mvn dependency:build-classpath>
+ * org.openjdk.jmh.Main BulkEnergyConsumptionBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkEnergyConsumptionBenchmark {
+    private static final double AUX_POWER = 1200;
+
+    // route lengths of a regional, a national and a cross-border trip on the german network
+    @Param({"500", "5000", "20000"})
+    public int links;
+
+    private List<Link> route;
+    private double[] lengths;
+    private double[] travelTimes;
+    private double[] consumptions;
+
+    private final DriveEnergyConsumption drive = new BetDriveEnergyConsumption();
+    private final AuxEnergyConsumption aux = (beginTime, duration, linkId) -> AUX_POWER * duration;
+    private final BulkEnergyConsumption bulk = new LinearEnergyConsumption(BetDriveEnergyConsumption.AVG_CONSUMPTION_PER_KM, AUX_POWER);
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(4711);
+        Network network = NetworkUtils.createNetwork();
+        route = new ArrayList<>(links);
+        lengths = new double[links];
+        travelTimes = new double[links];
+        consumptions = new double[links];
+        Node from = NetworkUtils.createAndAddNode(network, Id.createNodeId(0), new Coord(0, 0));
+        for (int i = 0; i < links; i++) {
+            Node to = NetworkUtils.createAndAddNode(network, Id.createNodeId(i + 1), new Coord(i + 1, 0));
+            Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId(i), from, to,
+                    10 + random.nextDouble() * 2000, 10 + random.nextDouble() * 25, 2000, 2);
+            route.add(link);
+            lengths[i] = link.getLength();
+            travelTimes[i] = link.getLength() / Math.min(18.056, link.getFreespeed());
+            from = to;
+        }
+    }
+
+    @Benchmark
+    public void perLink(Blackhole blackhole) {
+        for (int i = 0; i < links; i++) {
+            Link link = route.get(i);
+            consumptions[i] = drive.calcEnergyConsumption(link, travelTimes[i], 0)
+                    + aux.calcEnergyConsumption(0, travelTimes[i], link.getId());
+        }
+        blackhole.consume(consumptions);
+    }
+
+    @Benchmark
+    public void bulk(Blackhole blackhole) {
+        bulk.calcEnergyConsumptions(lengths, travelTimes, links, consumptions);
+        blackhole.consume(consumptions);
+    }
+}
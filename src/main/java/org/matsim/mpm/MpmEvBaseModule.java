@@ -7,15 +7,34 @@ import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureModule;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.mobsim.qsim.components.QSimComponentsConfigGroup;
+import org.matsim.mpm.charging.MpmChargingModule;
 import org.matsim.mpm.discharging.MpmDischargingModule;
+import org.matsim.mpm.events.BinaryEventsModule;
+import org.matsim.mpm.events.EvEventDispatch;
+import org.matsim.mpm.fleet.CompactElectricFleetModule;
 
 public class MpmEvBaseModule extends AbstractModule {
     public void install(){
+        if (MpmEvConfigGroup.get(getConfig()).laneEventDispatch) {
+            // before the modules with qsim components, so that the lanes are drained before their listeners run
+            installQSimModule(EvEventDispatch.createQSimModule());
+        }
         install(new ElectricFleetModule() );
+        if (MpmEvConfigGroup.get(getConfig()).compactElectricFleet) {
+            installOverridingQSimModule(new CompactElectricFleetModule() );
+        }
         install(new ChargingInfrastructureModule() );
-        install(new ChargingModule() );
+        if (MpmEvConfigGroup.get(getConfig()).chargingThreads > 0 && !MpmEvConfigGroup.get(getConfig()).heapChargingLogic) {
+            throw new IllegalArgumentException("chargingThreads requires the heapChargingLogic");
+        }
+        if (MpmEvConfigGroup.get(getConfig()).heapChargingLogic) {
+            install(new MpmChargingModule() );
+        } else {
+            install(new ChargingModule() );
+        }
         install(new MpmDischargingModule() );
         install(new MpmEvStatsModule() );
+        install(new BinaryEventsModule() );
         {
             // this switches on all the QSimComponents that are registered at various places under EvModule.EV_Component.
             ConfigUtils.addOrGetModule( this.getConfig(), QSimComponentsConfigGroup.class ).addActiveComponent( EvModule.EV_COMPONENT );
@@ -0,0 +1,161 @@
+package org.matsim.mpm;
+
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.ReflectiveConfigGroup;
+import org.matsim.mpm.telemetry.EvTelemetry;
+
+/**
+ * Switches for the mpm-specific additions to the ev contrib.  Everything defaults to the behaviour of the plain
+ * {@link MpmEvModule} setup, so configs without this module run unchanged.
+ */
+public final class MpmEvConfigGroup extends ReflectiveConfigGroup {
+    public static final String GROUP_NAME = "mpmEv";
+
+    public static MpmEvConfigGroup get(Config config) {
+        return ConfigUtils.addOrGetModule(config, MpmEvConfigGroup.class);
+    }
+
+    public MpmEvConfigGroup() {
+        super(GROUP_NAME);
+    }
+
+    @Parameter
+    @Comment("Write the events additionally in the compact binary format (<it>.events.bin) every n-th iteration"
+            + " (and in the last iteration). 0 disables the binary events writer.")
+    public int writeBinaryEventsInterval = 0;
+
+    @Parameter
+    @Comment("Dispatch the ev statistics handlers (queuing and energy consumption collectors) on their own threads"
+            + " instead of the events thread. The handlers that change vehicle or charger state stay on the events"
+            + " thread, so per vehicle and per charger ordering is unchanged.")
+    public boolean laneEventDispatch = false;
+
+    @Parameter
+    @Comment("Write the charging procedures and charger queuing outputs from snapshots taken at mobsim end on"
+            + " background threads, so the next iteration does not wait for them. Replaces the ChargingProceduresCSVWriter:"
+            + " its output is not written, the procedures go to <it>.ev_charging_procedures.csv.gz (one line per plug-in,"
+            + " with vehicle, queuing start and charge at start and end) instead.")
+    public boolean asyncEvOutput = false;
+
+    @Parameter
+    @Comment("Number of threads writing the ev outputs if asyncEvOutput is switched on.")
+    public int evOutputThreads = 1;
+
+    @Parameter
+    @Comment("Number of pending output snapshots before the mobsim thread has to write itself (bounds the memory"
+            + " held by snapshots).")
+    public int evOutputQueueCapacity = 4;
+
+    @Parameter
+    @Comment("Use the struct-of-arrays CompactElectricFleet instead of one object graph per vehicle. Drive and aux"
+            + " consumption models are then shared per vehicle type, so their factories must not keep per-vehicle state.")
+    public boolean compactElectricFleet = false;
+
+    @Parameter
+    @Comment("Use the MpmChargingLogic, which keeps plugged vehicles in a heap by expected end of charging, instead of"
+            + " the ChargingWithQueueingLogic. Meant for chargers with many plugs and long queues.")
+    public boolean heapChargingLogic = false;
+
+    @Parameter
+    @Comment("Let the ev routing choose among the nearest chargers by detour and forecast waiting time. The forecast is"
+            + " seeded from the queuing of the previous mobsim and updated with the slots booked while routing.")
+    public boolean chargerOccupancyForecast = false;
+
+    @Parameter
+    @Comment("Number of nearest compatible chargers considered per stop if chargerOccupancyForecast is switched on.")
+    public int chargerChoiceCandidates = 3;
+
+    @Parameter
+    @Comment("Time bin size of the charger occupancy forecast, in seconds.")
+    public double chargerForecastBinSize = 900;
+
+    @Parameter
+    @Comment("Load network, plans, vehicles and chargers concurrently with the ParallelScenarioLoader (RunBetScenario).")
+    public boolean parallelScenarioLoading = false;
+
+    @Parameter
+    @Comment("Write the ev state (soc per vehicle, plugged and queued vehicles per charger) at the end of every mobsim"
+            + " to <it>.ev_state.bin.")
+    public boolean writeEvCheckpoint = false;
+
+    @Parameter
+    @Comment("Ev state checkpoint (<it>.ev_state.bin of an earlier run) to start from instead of the initialSoc of the"
+            + " vehicles file, e.g. to simulate the next day of a multi-day run. The plans have to start at the state"
+            + " of the checkpoint. No time shifting is done: the vehicles plugged or queued in the checkpoint are put"
+            + " back at the start of the mobsim, whatever the time of the checkpoint, and the plans of the next day"
+            + " have to be on their own clock (starting again at 0). Used by RunBetScenario and RunBetSweep.")
+    public String evCheckpointFile = null;
+
+    @Parameter
+    @Comment("Expose sim time, event rate, soc distribution, charger occupancy and routing throughput of the running"
+            + " simulation as JMX MXBean " + EvTelemetry.OBJECT_NAME + ".")
+    public boolean telemetry = false;
+
+    @Parameter
+    @Comment("Replace the per-charger ChargerOccupancyXYDataCollector (if timeProfiles are on) with the grid-aggregated"
+            + " ChargerOccupancyRasterCollector, written to <it>.ev_charger_occupancy_raster.bin.gz.")
+    public boolean chargerOccupancyRaster = false;
+
+    @Parameter
+    @Comment("Cell size of the charger occupancy raster, in network units.")
+    public double chargerRasterCellSize = 10_000;
+
+    @Parameter
+    @Comment("Time bin size of the charger occupancy raster, in seconds.")
+    public double chargerRasterTimeBinSize = 900;
+
+    @Parameter
+    @Comment("Share of the full truck population in this scenario (set by the BetPopulationSampler). Below 1, the charger"
+            + " queuing is extrapolated to full scale in <it>.ev_charger_queuing_upscaled.csv.gz.")
+    public double populationSampleFraction = 1.0;
+
+    @Parameter
+    @Comment("Within the mobsim, send trucks that queue at a charger with an expected wait above"
+            + " chargerDiversionWaitThreshold to a compatible charger with a shorter detour plus expected wait"
+            + " (up to chargerChoiceCandidates within chargerDiversionMaxDistance). Only the legs to and from the new"
+            + " charger are routed, the later charging and rest stops of the trip stay where the ev routing put them.")
+    public boolean chargerDiversion = false;
+
+    @Parameter
+    @Comment("Expected wait at a charger above which a queued truck looks for another charger, in seconds.")
+    public double chargerDiversionWaitThreshold = 1800;
+
+    @Parameter
+    @Comment("Maximum straight line distance to the chargers considered for a diversion, in network units.")
+    public double chargerDiversionMaxDistance = 50_000;
+
+    @Parameter
+    @Comment("Route on per-mode views of one IndexedNetwork instead of per-mode copies of the network. Requires one of"
+            + " the Speedy routing algorithms, which build their graph from the links of the view.")
+    public boolean indexedModeNetworks = false;
+
+    @Parameter
+    @Comment("Number of threads of the charging step of the heapChargingLogic. 0 charges all chargers on the mobsim"
+            + " thread as before; from 1 on, the chargers are charged in fixed shards and their events are merged in"
+            + " charger order, so the results do not depend on the number of threads.")
+    public int chargingThreads = 0;
+
+    @Parameter
+    @Comment("Keep network routes as arrays of link indices (CompactNetworkRoute) instead of lists of link ids. Same"
+            + " plans file format. Used by RunBetScenario, the ParallelScenarioLoader and the ShardedRouting.")
+    public boolean compactNetworkRoutes = false;
+
+    @Parameter
+    @Comment("Warm start from routed plans (e.g. output_plans of an earlier run): before the first iteration, check the"
+            + " routes and charging stops of all trips in parallel against the current network, chargers and vehicles,"
+            + " and route only the invalid trips again instead of relying on the PrepareForSim.")
+    public boolean warmStart = false;
+
+    @Parameter
+    @Comment("With the heapChargingLogic, also throw a QuitQueueAtChargerEvent when a queued vehicle is plugged in, so"
+            + " that the ChargerQueuingCollector records every waiting period and not only the abandoned ones. Changes"
+            + " the events compared with the ChargingWithQueueingLogic, hence off by default.")
+    public boolean quitQueueEventOnPlugIn = false;
+
+    @Parameter
+    @Comment("Let the ev routing estimate the energy consumption of the BET trucks on whole routes (LinearEnergyConsumption)"
+            + " instead of calling the drive and aux consumption models link by link. Same results, the gain is not"
+            + " measured yet (BulkEnergyConsumptionBenchmark), hence off by default.")
+    public boolean bulkEnergyConsumption = false;
+}
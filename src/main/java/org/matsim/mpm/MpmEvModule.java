@@ -26,6 +26,12 @@ import org.matsim.contrib.ev.EvModule;
 import org.matsim.contrib.ev.charging.VehicleChargingHandler;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+import org.matsim.mpm.charging.ChargerDiversion;
+import org.matsim.mpm.checkpoint.EvStateCheckpointWriter;
+import org.matsim.mpm.network.IndexedNetwork;
+import org.matsim.mpm.routing.ChargerOccupancyForecast;
+import org.matsim.mpm.routing.ChargerOccupancyForecastUpdater;
+import org.matsim.mpm.routing.StagedRouteValidator;
 
 public class MpmEvModule extends AbstractModule {
     public static final String EV_COMPONENT = "EV_COMPONENT";
@@ -39,10 +45,54 @@ public class MpmEvModule extends AbstractModule {
     public void install() {
         install( new MpmEvBaseModule() );
 
+        if (MpmEvConfigGroup.get(getConfig()).chargerOccupancyForecast) {
+            bind(ChargerOccupancyForecast.class).in(Singleton.class);
+            installQSimModule(new AbstractQSimModule() {
+                @Override protected void configureQSim() {
+                    addQSimComponentBinding(EvModule.EV_COMPONENT).to(ChargerOccupancyForecastUpdater.class);
+                }
+            });
+        }
+
+        if (MpmEvConfigGroup.get(getConfig()).indexedModeNetworks) {
+            // the classic Dijkstra and A* walk the out-links of the nodes, which are not filtered by the views
+            if (!getConfig().routing().getRoutingAlgorithmType().name().startsWith("Speedy")) {
+                throw new IllegalArgumentException("indexedModeNetworks requires a Speedy routing algorithm, not "
+                        + getConfig().routing().getRoutingAlgorithmType());
+            }
+            bind(IndexedNetwork.class).in(Singleton.class);
+        }
+
+        if (MpmEvConfigGroup.get(getConfig()).warmStart) {
+            // startup listeners run before the PrepareForSim, which then finds all trips routed
+            addControlerListenerBinding().to(StagedRouteValidator.class);
+        }
+
+        if (MpmEvConfigGroup.get(getConfig()).writeEvCheckpoint) {
+            installQSimModule(new AbstractQSimModule() {
+                @Override protected void configureQSim() {
+                    addQSimComponentBinding(EvModule.EV_COMPONENT).to(EvStateCheckpointWriter.class);
+                }
+            });
+        }
+
+        if (MpmEvConfigGroup.get(getConfig()).chargerDiversion) {
+            installQSimModule(new AbstractQSimModule() {
+                @Override protected void configureQSim() {
+                    bind(ChargerDiversion.class).asEagerSingleton();
+                    // on the events thread, it has to see the queues in the same order as the charging logic
+                    addMobsimScopeEventHandlerBinding().to(ChargerDiversion.class);
+                    addQSimComponentBinding(EvModule.EV_COMPONENT).to(ChargerDiversion.class);
+                }
+            });
+        }
+
         // this is not for DynVehicles.  Does that mean that we cannot combine charging for normal vehicles with charging for eTaxis?  Can't say ...  kai, dec'22
         installQSimModule(new AbstractQSimModule() {
             @Override protected void configureQSim() {
                 bind(VehicleChargingHandler.class).in(Singleton.class);
+                // stays on the events thread also with laneEventDispatch: plugging/unplugging has to be in sync with the
+                // charging step and with the discharging of the last link
                 addMobsimScopeEventHandlerBinding().to( VehicleChargingHandler.class);
                 if(evCfg.enforceChargingInteractionDuration){
                     this.addQSimComponentBinding(EvModule.EV_COMPONENT).to(VehicleChargingHandler.class);
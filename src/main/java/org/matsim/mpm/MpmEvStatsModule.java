@@ -1,6 +1,7 @@
 package org.matsim.mpm;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import org.matsim.contrib.common.timeprofile.ProfileWriter;
 import org.matsim.contrib.ev.EvConfigGroup;
@@ -10,8 +11,18 @@ import org.matsim.contrib.ev.stats.*;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.controler.MatsimServices;
 import org.matsim.core.controler.listener.ControlerListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimListener;
 import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+import org.matsim.mpm.events.EvEventDispatch;
+import org.matsim.mpm.stats.ChargerOccupancyRasterCollector;
+import org.matsim.mpm.stats.ChargerQueueUpscaler;
 import org.matsim.mpm.stats.ChargerQueuingCollector;
+import org.matsim.mpm.stats.ChargingProceduresCollector;
+import org.matsim.mpm.stats.EvOutputPipeline;
+import org.matsim.mpm.stats.EvOutputSnapshotWriter;
+import org.matsim.mpm.stats.PipelinedCleanupListener.PipelinedCleanupProvider;
+import org.matsim.mpm.telemetry.EvTelemetry;
+import org.matsim.mpm.telemetry.EvTelemetryCollector;
 
 public class MpmEvStatsModule extends AbstractModule {
     @Inject
@@ -19,33 +30,109 @@ public class MpmEvStatsModule extends AbstractModule {
 
     @Override
     public void install() {
+        MpmEvConfigGroup mpmEvCfg = MpmEvConfigGroup.get(getConfig());
         bind(ChargingEventSequenceCollector.class).asEagerSingleton();
+        // iteration scope handler (reset by the events manager), hence not dispatched on a lane
         addEventHandlerBinding().to(ChargingEventSequenceCollector.class);
-        addControlerListenerBinding().to(ChargingProceduresCSVWriter.class).in(Singleton.class);
+
+        if (mpmEvCfg.asyncEvOutput) {
+            bind(EvOutputPipeline.class).in(Singleton.class);
+            addControlerListenerBinding().to(EvOutputPipeline.class);
+            installQSimModule(new AbstractQSimModule() {
+                @Override
+                protected void configureQSim() {
+                    bind(ChargingProceduresCollector.class).asEagerSingleton();
+                    if (mpmEvCfg.laneEventDispatch) {
+                        EvEventDispatch.addHandlerBinding(binder(), EvEventDispatch.LANE_QUEUING_STATS, ChargingProceduresCollector.class);
+                    } else {
+                        addMobsimScopeEventHandlerBinding().to(ChargingProceduresCollector.class);
+                    }
+                    // after the collectors, so that they are complete when the snapshot is taken
+                    addQSimComponentBinding(EvModule.EV_COMPONENT).to(EvOutputSnapshotWriter.class);
+                }
+            });
+        } else {
+            addControlerListenerBinding().to(ChargingProceduresCSVWriter.class).in(Singleton.class);
+        }
+
+        boolean upscaleQueuing = mpmEvCfg.populationSampleFraction < 1;
+        if (evCfg.timeProfiles || mpmEvCfg.asyncEvOutput || mpmEvCfg.chargerOccupancyForecast || upscaleQueuing) {
+            installQSimModule(new AbstractQSimModule() {
+                @Override
+                protected void configureQSim() {
+                    bind(ChargerQueuingCollector.class).asEagerSingleton();
+                    if (mpmEvCfg.laneEventDispatch) {
+                        EvEventDispatch.addHandlerBinding(binder(), EvEventDispatch.LANE_QUEUING_STATS, ChargerQueuingCollector.class);
+                    } else {
+                        addMobsimScopeEventHandlerBinding().to(ChargerQueuingCollector.class);
+                    }
+                    if (upscaleQueuing) {
+                        addQSimComponentBinding(EvModule.EV_COMPONENT).to(ChargerQueueUpscaler.class);
+                    }
+                }
+            });
+        }
+
+        if (mpmEvCfg.telemetry) {
+            bind(EvTelemetry.class).in(Singleton.class);
+            addControlerListenerBinding().to(EvTelemetry.class);
+            installQSimModule(new AbstractQSimModule() {
+                @Override
+                protected void configureQSim() {
+                    bind(EvTelemetryCollector.class).asEagerSingleton();
+                    addMobsimScopeEventHandlerBinding().to(EvTelemetryCollector.class);
+                    addQSimComponentBinding(EvModule.EV_COMPONENT).to(EvTelemetryCollector.class);
+                }
+            });
+        }
 
         if (evCfg.timeProfiles) {
             installQSimModule(new AbstractQSimModule() {
                 @Override
                 protected void configureQSim() {
-                    addQSimComponentBinding(EvModule.EV_COMPONENT)
-                            .toProvider(SocHistogramTimeProfileCollectorProvider.class);
-                    addQSimComponentBinding(EvModule.EV_COMPONENT)
-                            .toProvider(IndividualChargeTimeProfileCollectorProvider.class);
-                    addQSimComponentBinding(EvModule.EV_COMPONENT)
-                            .toProvider(ChargerOccupancyTimeProfileCollectorProvider.class);
-                    addQSimComponentBinding(EvModule.EV_COMPONENT).to(ChargerOccupancyXYDataCollector.class)
-                            .asEagerSingleton();
-                    addQSimComponentBinding(EvModule.EV_COMPONENT)
-                            .toProvider(VehicleTypeAggregatedChargeTimeProfileCollectorProvider.class);
+                    addTimeProfileCollector(SocHistogramTimeProfileCollectorProvider.class);
+                    addTimeProfileCollector(IndividualChargeTimeProfileCollectorProvider.class);
+                    addTimeProfileCollector(ChargerOccupancyTimeProfileCollectorProvider.class);
+                    if (mpmEvCfg.chargerOccupancyRaster) {
+                        bind(ChargerOccupancyRasterCollector.class).asEagerSingleton();
+                        addQSimComponentBinding(EvModule.EV_COMPONENT).to(ChargerOccupancyRasterCollector.class);
+                        if (mpmEvCfg.laneEventDispatch) {
+                            EvEventDispatch.addHandlerBinding(binder(), EvEventDispatch.LANE_QUEUING_STATS,
+                                    ChargerOccupancyRasterCollector.class);
+                        } else {
+                            addMobsimScopeEventHandlerBinding().to(ChargerOccupancyRasterCollector.class);
+                        }
+                    } else if (mpmEvCfg.asyncEvOutput) {
+                        addQSimComponentBinding(EvModule.EV_COMPONENT).toProvider(new PipelinedCleanupProvider(
+                                "charger occupancy xy data",
+                                injector -> injector.getInstance(ChargerOccupancyXYDataCollector.class)));
+                    } else {
+                        addQSimComponentBinding(EvModule.EV_COMPONENT).to(ChargerOccupancyXYDataCollector.class)
+                                .asEagerSingleton();
+                    }
+                    addTimeProfileCollector(VehicleTypeAggregatedChargeTimeProfileCollectorProvider.class);
 
                     bind(EnergyConsumptionCollector.class).asEagerSingleton();
-                    addMobsimScopeEventHandlerBinding().to(EnergyConsumptionCollector.class);
                     addQSimComponentBinding(EvModule.EV_COMPONENT).to(EnergyConsumptionCollector.class);
 
-                    bind(ChargerQueuingCollector.class).asEagerSingleton();
-                    addMobsimScopeEventHandlerBinding().to(ChargerQueuingCollector.class);
+                    if (mpmEvCfg.laneEventDispatch) {
+                        // pure collector, it does not feed back into the simulation
+                        EvEventDispatch.addHandlerBinding(binder(), EvEventDispatch.LANE_ENERGY_STATS, EnergyConsumptionCollector.class);
+                    } else {
+                        addMobsimScopeEventHandlerBinding().to(EnergyConsumptionCollector.class);
+                    }
                     // add more time profiles or collectors if necessary
                 }
+
+                private void addTimeProfileCollector(Class<? extends Provider<MobsimListener>> collectorProvider) {
+                    if (mpmEvCfg.asyncEvOutput) {
+                        addQSimComponentBinding(EvModule.EV_COMPONENT).toProvider(new PipelinedCleanupProvider(
+                                collectorProvider.getSimpleName(),
+                                injector -> injector.getInstance(collectorProvider).get()));
+                    } else {
+                        addQSimComponentBinding(EvModule.EV_COMPONENT).toProvider(collectorProvider);
+                    }
+                }
             });
             /*bind(ChargerPowerTimeProfileCalculator.class).asEagerSingleton();
             addEventHandlerBinding().to(ChargerPowerTimeProfileCalculator.class);
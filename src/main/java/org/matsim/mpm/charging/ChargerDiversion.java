@@ -0,0 +1,354 @@
+package org.matsim.mpm.charging;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.handler.PersonLeavesVehicleEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.*;
+import org.matsim.contrib.ev.charging.*;
+import org.matsim.contrib.ev.fleet.ElectricFleet;
+import org.matsim.contrib.ev.fleet.ElectricVehicle;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructure;
+import org.matsim.core.config.Config;
+import org.matsim.core.events.MobsimScopeEventHandler;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.DefaultRoutingModules;
+import org.matsim.core.router.DefaultRoutingRequest;
+import org.matsim.core.router.LinkWrapperFacility;
+import org.matsim.core.router.RoutingModule;
+import org.matsim.core.router.SingleModeNetworksCache;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.network.IndexedNetwork;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.matsim.mpm.routing.MpmEvNetworkRoutingModule.BREAK_DURATION;
+import static org.matsim.mpm.routing.MpmEvNetworkRoutingModule.MAX_VEHICLE_SPEED;
+import static org.matsim.mpm.routing.MpmEvNetworkRoutingModule.MIN_SOC;
+
+/**
+ * Sends trucks that queue at a charger with a long expected wait to a less busy compatible charger nearby, within the
+ * running mobsim.
+ * <p>
+ * The decision is taken on the events thread, where the occupancy of all chargers (plugged since, queue order) is
+ * tracked from the charging events. The expected wait assumes that every truck occupies a plug for the break planned
+ * by the ev routing. Trucks already sent to a charger count as queued there. The plan change is applied by the
+ * mobsim thread before the next sim step: the charging activity ends right away (which makes the
+ * {@link VehicleChargingHandler} take the truck out of the queue), followed by a leg to the other charger, a charging
+ * activity of the same duration there and a new leg to the original next stop. Only chargers within
+ * {@code chargerDiversionMaxDistance} (from a quad tree built once per mobsim) that the truck can reach with its
+ * current charge (drive and aux consumption, keeping the minimum soc of the ev routing) are considered.
+ * <p>
+ * Only the legs to and from the new charger are routed; the later stops planned by the ev routing stay where they are.
+ * The routers of all network modes are built when the mobsim is initialised, so that no path calculator (e.g. the
+ * landmarks of SpeedyALT) is prepared while the mobsim is running.
+ */
+public class ChargerDiversion implements QueuedAtChargerEventHandler, QuitQueueAtChargerEventHandler,
+        ChargingStartEventHandler, ChargingEndEventHandler, PersonLeavesVehicleEventHandler, MobsimScopeEventHandler,
+        MobsimInitializedListener, MobsimBeforeSimStepListener, MobsimBeforeCleanupListener {
+    private static final Logger log = LogManager.getLogger(ChargerDiversion.class);
+
+    private record Diversion(Id<Person> personId, Id<Vehicle> vehicleId, Charger from, Charger to) {
+    }
+
+    private final QSim qsim;
+    private final Config config;
+    private final ElectricFleet fleet;
+    private final ChargingInfrastructure chargingInfrastructure;
+    private final Network network;
+    private final SingleModeNetworksCache singleModeNetworksCache;
+    private final Map<String, TravelTime> travelTimes;
+    private final Map<String, TravelDisutilityFactory> travelDisutilityFactories;
+    private final LeastCostPathCalculatorFactory pathCalculatorFactory;
+    private final PopulationFactory populationFactory;
+    private final double waitThreshold;
+    private final double maxDistance;
+    private final int candidates;
+    private final QuadTree<Charger> chargerTree;
+
+    // events thread
+    private final Map<Id<Charger>, Map<Id<Vehicle>, Double>> pluggedSince = new HashMap<>();
+    private final Map<Id<Charger>, LinkedHashSet<Id<Vehicle>>> queues = new HashMap<>();
+    private final Map<Id<Vehicle>, Id<Person>> drivers = new HashMap<>();
+    // events thread -> mobsim thread
+    private final Queue<Diversion> pendingDiversions = new ConcurrentLinkedQueue<>();
+    private final Map<Id<Vehicle>, Id<Charger>> divertedTo = new ConcurrentHashMap<>();
+    // mobsim thread
+    private final Map<String, RoutingModule> routersByMode = new HashMap<>();
+    // only bound (and only to be requested) with MpmEvConfigGroup.indexedModeNetworks
+    @Inject
+    private Provider<IndexedNetwork> indexedNetwork;
+    private int diversions = 0;
+
+    @Inject
+    ChargerDiversion(QSim qsim, ElectricFleet fleet, ChargingInfrastructure chargingInfrastructure, Network network,
+                     SingleModeNetworksCache singleModeNetworksCache, Map<String, TravelTime> travelTimes,
+                     Map<String, TravelDisutilityFactory> travelDisutilityFactories,
+                     LeastCostPathCalculatorFactory pathCalculatorFactory, PopulationFactory populationFactory, Config config) {
+        this.qsim = qsim;
+        this.config = config;
+        this.fleet = fleet;
+        this.chargingInfrastructure = chargingInfrastructure;
+        this.network = network;
+        this.singleModeNetworksCache = singleModeNetworksCache;
+        this.travelTimes = travelTimes;
+        this.travelDisutilityFactories = travelDisutilityFactories;
+        this.pathCalculatorFactory = pathCalculatorFactory;
+        this.populationFactory = populationFactory;
+        MpmEvConfigGroup mpmEvCfg = MpmEvConfigGroup.get(config);
+        this.waitThreshold = mpmEvCfg.chargerDiversionWaitThreshold;
+        this.maxDistance = mpmEvCfg.chargerDiversionMaxDistance;
+        this.candidates = mpmEvCfg.chargerChoiceCandidates;
+
+        Collection<Charger> chargers = chargingInfrastructure.getChargers().values();
+        double[] bounds = NetworkUtils.getBoundingBox(network.getNodes().values());
+        chargerTree = new QuadTree<>(bounds[0], bounds[1], bounds[2], bounds[3]);
+        for (Charger charger : chargers) {
+            chargerTree.put(charger.getCoord().getX(), charger.getCoord().getY(), charger);
+        }
+    }
+
+    @Override
+    public void handleEvent(PersonLeavesVehicleEvent event) {
+        drivers.put(event.getVehicleId(), event.getPersonId());
+    }
+
+    @Override
+    public void handleEvent(ChargingStartEvent event) {
+        queues.computeIfAbsent(event.getChargerId(), id -> new LinkedHashSet<>()).remove(event.getVehicleId());
+        pluggedSince.computeIfAbsent(event.getChargerId(), id -> new HashMap<>()).put(event.getVehicleId(), event.getTime());
+        divertedTo.remove(event.getVehicleId());
+    }
+
+    @Override
+    public void handleEvent(ChargingEndEvent event) {
+        pluggedSince.computeIfAbsent(event.getChargerId(), id -> new HashMap<>()).remove(event.getVehicleId());
+    }
+
+    @Override
+    public void handleEvent(QuitQueueAtChargerEvent event) {
+        queues.computeIfAbsent(event.getChargerId(), id -> new LinkedHashSet<>()).remove(event.getVehicleId());
+    }
+
+    @Override
+    public void handleEvent(QueuedAtChargerEvent event) {
+        queues.computeIfAbsent(event.getChargerId(), id -> new LinkedHashSet<>()).add(event.getVehicleId());
+        if (divertedTo.remove(event.getVehicleId()) != null) {
+            return;// diverted once already, stays in this queue
+        }
+        Id<Person> personId = drivers.get(event.getVehicleId());
+        ElectricVehicle ev = fleet.getElectricVehicles().get(event.getVehicleId());
+        if (personId == null || ev == null) {
+            return;
+        }
+
+        double now = event.getTime();
+        Charger current = chargingInfrastructure.getChargers().get(event.getChargerId());
+        int queuedAhead = queues.get(current.getId()).size() - 1;
+        double waitHere = expectedWait(current, queuedAhead, now, now);
+        if (waitHere <= waitThreshold) {
+            return;
+        }
+
+        Charger best = null;
+        double bestCost = waitHere;
+        for (Charger candidate : findCandidates(current, ev)) {
+            double detourTime = CoordUtils.calcEuclideanDistance(current.getCoord(), candidate.getCoord()) / MAX_VEHICLE_SPEED;
+            int queuedThere = queues.getOrDefault(candidate.getId(), new LinkedHashSet<>()).size() + countDivertedTo(candidate);
+            double cost = detourTime + expectedWait(candidate, queuedThere, now, now + detourTime);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = candidate;
+            }
+        }
+        if (best != null) {
+            divertedTo.put(event.getVehicleId(), best.getId());
+            pendingDiversions.add(new Diversion(personId, event.getVehicleId(), current, best));
+        }
+    }
+
+    private List<Charger> findCandidates(Charger current, ElectricVehicle ev) {
+        List<Charger> nearby = new ArrayList<>(chargerTree.getDisk(current.getCoord().getX(), current.getCoord().getY(), maxDistance));
+        nearby.removeIf(c -> c == current || !ev.getChargerTypes().contains(c.getChargerType()));
+        nearby.sort(Comparator.comparingDouble(c -> CoordUtils.calcEuclideanDistance(current.getCoord(), c.getCoord())));
+        return nearby.subList(0, Math.min(candidates, nearby.size()));
+    }
+
+    private int countDivertedTo(Charger charger) {
+        int count = 0;
+        for (Id<Charger> target : divertedTo.values()) {
+            if (target.equals(charger.getId())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Plugs become free one break of the ev routing after plugging in, the queue is served first come first served.
+     */
+    private double expectedWait(Charger charger, int queuedAhead, double now, double arrival) {
+        PriorityQueue<Double> plugsFreeAt = new PriorityQueue<>();
+        Map<Id<Vehicle>, Double> plugged = pluggedSince.getOrDefault(charger.getId(), Map.of());
+        for (double since : plugged.values()) {
+            plugsFreeAt.add(Math.max(since + BREAK_DURATION, now));
+        }
+        for (int i = plugged.size(); i < charger.getPlugCount(); i++) {
+            plugsFreeAt.add(now);
+        }
+        for (int i = 0; i < queuedAhead; i++) {
+            plugsFreeAt.add(plugsFreeAt.poll() + BREAK_DURATION);
+        }
+        return Math.max(0, plugsFreeAt.peek() - arrival);
+    }
+
+    @Override
+    public void notifyMobsimInitialized(MobsimInitializedEvent e) {
+        for (String mode : config.routing().getNetworkModes()) {
+            if (travelTimes.containsKey(mode) && travelDisutilityFactories.containsKey(mode)) {
+                routersByMode.put(mode, createRouter(mode));
+            }
+        }
+    }
+
+    @Override
+    public void notifyMobsimBeforeSimStep(MobsimBeforeSimStepEvent e) {
+        Diversion diversion;
+        while ((diversion = pendingDiversions.poll()) != null) {
+            if (!divert(diversion, e.getSimulationTime())) {
+                divertedTo.remove(diversion.vehicleId(), diversion.to().getId());
+            }
+        }
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        log.info(diversions + " trucks diverted to a less busy charger");
+    }
+
+    private boolean divert(Diversion diversion, double now) {
+        if (!diversion.to().getId().equals(divertedTo.get(diversion.vehicleId()))) {
+            return false;// plugged in at its charger since the decision
+        }
+        MobsimAgent agent = qsim.getAgents().get(diversion.personId());
+        if (agent == null || agent.getState() != MobsimAgent.State.ACTIVITY) {
+            return false;
+        }
+        List<PlanElement> elements = WithinDayAgentUtils.getModifiablePlan(agent).getPlanElements();
+        int index = WithinDayAgentUtils.getCurrentPlanElementIndex(agent);
+        if (index + 2 >= elements.size() || !(elements.get(index) instanceof Activity charging)
+                || !charging.getType().endsWith(VehicleChargingHandler.CHARGING_INTERACTION)
+                || !charging.getLinkId().equals(diversion.from().getLink().getId())) {
+            return false;// the truck has already left (or is not at the charging stop of the event)
+        }
+        Leg onward = (Leg)elements.get(index + 1);
+        RoutingModule router = routersByMode.get(onward.getMode());
+        if (router == null) {
+            return false;// not a network mode
+        }
+        Id<Link> nextStopLinkId = ((Activity)elements.get(index + 2)).getLinkId();
+        Person person = populationFactory.createPerson(diversion.personId());
+        Link chargerLink = diversion.to().getLink();
+
+        Leg toCharger = route(router, onward, charging.getLinkId(), chargerLink.getId(), now, person);
+        // the charge of a queued truck does not change, so it can be read here
+        ElectricVehicle ev = fleet.getElectricVehicles().get(diversion.vehicleId());
+        double usableCharge = ev.getBattery().getCharge() - MIN_SOC * ev.getBattery().getCapacity();
+        if (estimateEnergy(ev, toCharger, now) >= usableCharge) {
+            return false;
+        }
+        double stopDuration = charging.getMaximumDuration().orElse(BREAK_DURATION);
+        Activity newCharging = PopulationUtils.createActivity(PopulationUtils.createStageActivityFromCoordLinkIdAndModePrefix(
+                chargerLink.getCoord(), chargerLink.getId(), onward.getMode() + VehicleChargingHandler.CHARGING_IDENTIFIER));
+        newCharging.setMaximumDuration(stopDuration);
+        double departure = now + toCharger.getTravelTime().seconds() + stopDuration;
+        Leg fromCharger = route(router, onward, chargerLink.getId(), nextStopLinkId, departure, person);
+
+        elements.set(index + 1, toCharger);
+        elements.add(index + 2, newCharging);
+        elements.add(index + 3, fromCharger);
+
+        charging.setMaximumDurationUndefined();
+        charging.setEndTime(now);
+        WithinDayAgentUtils.resetCaches(agent);
+        WithinDayAgentUtils.rescheduleActivityEnd(agent, qsim);
+        diversions++;
+        return true;
+    }
+
+    private Leg route(RoutingModule router, Leg template, Id<Link> fromLinkId, Id<Link> toLinkId, double departureTime,
+                      Person person) {
+        Leg leg = (Leg)router.calcRoute(DefaultRoutingRequest.withoutAttributes(
+                new LinkWrapperFacility(network.getLinks().get(fromLinkId)),
+                new LinkWrapperFacility(network.getLinks().get(toLinkId)),
+                departureTime, person)).get(0);
+        TripStructureUtils.setRoutingMode(leg, TripStructureUtils.getRoutingMode(template));
+        ((NetworkRoute)leg.getRoute()).setVehicleId(((NetworkRoute)template.getRoute()).getVehicleId());
+        return leg;
+    }
+
+    private RoutingModule createRouter(String mode) {
+        Network modeNetwork;
+        if (MpmEvConfigGroup.get(config).indexedModeNetworks) {
+            modeNetwork = indexedNetwork.get().getModeView(mode);
+        } else {
+            synchronized (singleModeNetworksCache.getSingleModeNetworksCache()) {
+                modeNetwork = singleModeNetworksCache.getSingleModeNetworksCache().computeIfAbsent(mode, m -> {
+                    Network filtered = NetworkUtils.createNetwork(config);
+                    new TransportModeNetworkFilter(network).filter(filtered, Set.of(m));
+                    return filtered;
+                });
+            }
+        }
+        TravelTime travelTime = travelTimes.get(mode);
+        return DefaultRoutingModules.createPureNetworkRouter(mode, populationFactory, modeNetwork,
+                pathCalculatorFactory.createPathCalculator(modeNetwork,
+                        travelDisutilityFactories.get(mode).createTravelDisutility(travelTime), travelTime));
+    }
+
+    /**
+     * Drive plus aux energy of the leg, over the links of the route and the end link.
+     */
+    private double estimateEnergy(ElectricVehicle ev, Leg leg, double departureTime) {
+        TravelTime travelTime = travelTimes.get(leg.getMode());
+        NetworkRoute route = (NetworkRoute)leg.getRoute();
+        List<Link> links = new ArrayList<>(NetworkUtils.getLinks(network, route.getLinkIds()));
+        links.add(network.getLinks().get(route.getEndLinkId()));
+        double energy = 0;
+        double time = departureTime;
+        for (Link link : links) {
+            double linkTravelTime = travelTime.getLinkTravelTime(link, time, null, null);
+            energy += ev.getDriveEnergyConsumption().calcEnergyConsumption(link, linkTravelTime, time);
+            energy += ev.getAuxEnergyConsumption().calcEnergyConsumption(time, linkTravelTime, link.getId());
+            time += linkTravelTime;
+        }
+        return energy;
+    }
+}
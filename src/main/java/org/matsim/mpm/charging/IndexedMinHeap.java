@@ -0,0 +1,129 @@
+package org.matsim.mpm.charging;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap on a double key (ties broken by insertion order) that knows the position of each entry, so entries
+ * can be removed or re-keyed in O(log n). An entry can be in at most one heap at a time.
+ */
+final class IndexedMinHeap<E extends IndexedMinHeap.Entry> {
+    static class Entry {
+        private double key;
+        private long sequence;
+        private int heapIndex = -1;
+
+        double getKey() {
+            return key;
+        }
+
+        boolean isInHeap() {
+            return heapIndex >= 0;
+        }
+    }
+
+    private Entry[] entries = new Entry[16];
+    private int size = 0;
+    private long sequenceCounter = 0;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    E peek() {
+        return size == 0 ? null : (E)entries[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(int i) {
+        return (E)entries[i];
+    }
+
+    void add(E entry, double key) {
+        if (entry.heapIndex >= 0) {
+            throw new IllegalStateException("entry is already in a heap");
+        }
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entry.key = key;
+        entry.sequence = sequenceCounter++;
+        entry.heapIndex = size;
+        entries[size++] = entry;
+        siftUp(entry.heapIndex);
+    }
+
+    E poll() {
+        E top = peek();
+        if (top != null) {
+            remove(top);
+        }
+        return top;
+    }
+
+    void remove(E entry) {
+        int i = entry.heapIndex;
+        if (i < 0 || i >= size || entries[i] != entry) {
+            throw new IllegalStateException("entry is not in this heap");
+        }
+        Entry last = entries[--size];
+        entries[size] = null;
+        entry.heapIndex = -1;
+        if (last != entry) {
+            entries[i] = last;
+            last.heapIndex = i;
+            siftDown(i);
+            siftUp(last.heapIndex);
+        }
+    }
+
+    void updateKey(E entry, double key) {
+        entry.key = key;
+        siftDown(entry.heapIndex);
+        siftUp(entry.heapIndex);
+    }
+
+    private boolean less(Entry a, Entry b) {
+        return a.key < b.key || (a.key == b.key && a.sequence < b.sequence);
+    }
+
+    private void siftUp(int i) {
+        Entry entry = entries[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(entry, entries[parent])) {
+                break;
+            }
+            move(entries[parent], i);
+            i = parent;
+        }
+        move(entry, i);
+    }
+
+    private void siftDown(int i) {
+        Entry entry = entries[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && less(entries[right], entries[child])) {
+                child = right;
+            }
+            if (!less(entries[child], entry)) {
+                break;
+            }
+            move(entries[child], i);
+            i = child;
+        }
+        move(entry, i);
+    }
+
+    private void move(Entry entry, int i) {
+        entries[i] = entry;
+        entry.heapIndex = i;
+    }
+}
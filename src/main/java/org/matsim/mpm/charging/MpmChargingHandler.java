@@ -0,0 +1,149 @@
+package org.matsim.mpm.charging;
+
+import com.google.inject.Inject;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructure;
+import org.matsim.core.config.Config;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.mpm.MpmEvConfigGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triggers the charging step of all chargers every {@code chargeTimeStep} seconds. With time profiles, the batteries of
+ * the plugged vehicles are brought up to date before each sampling of the soc profiles.
+ * <p>
+ * With {@code chargingThreads > 0}, the chargers are split into fixed shards of consecutive chargers (in the order of
+ * the charging infrastructure), which are charged by a pool of that many threads. The events, listener calls and
+ * battery writes of each shard are collected by the {@link MpmChargingLogic} and run afterwards on the mobsim thread,
+ * shard by shard, i.e. in charger order, as with {@code chargingThreads = 0}. Until its calls have been run, a charger
+ * shows its state before the step, or fails if its logic is used, so the result is the same as with the serial step.
+ */
+public class MpmChargingHandler implements MobsimAfterSimStepListener, MobsimBeforeCleanupListener {
+    private static final int SHARDS_PER_THREAD = 4;// for load balancing, chargers differ a lot in their plug count
+    private static final int SOC_PROFILE_INTERVAL = 300;// sampling interval of the soc time profiles of the ev contrib
+
+    private final ChargingInfrastructure chargingInfrastructure;
+    private final int chargeTimeStep;
+    private final boolean updateSocsForProfiles;
+    private final List<Shard> shards = new ArrayList<>();
+    private final ExecutorService executor;// null: shards are charged on the mobsim thread
+
+    @Inject
+    MpmChargingHandler(ChargingInfrastructure chargingInfrastructure, EvConfigGroup evCfg, Config config) {
+        this.chargingInfrastructure = chargingInfrastructure;
+        this.chargeTimeStep = evCfg.chargeTimeStep;
+        this.updateSocsForProfiles = evCfg.timeProfiles;
+
+        int threads = MpmEvConfigGroup.get(config).chargingThreads;
+        if (threads > 0) {
+            List<MpmChargingLogic> logics = new ArrayList<>();
+            for (Charger charger : chargingInfrastructure.getChargers().values()) {
+                logics.add((MpmChargingLogic)charger.getLogic());
+            }
+            int shardCount = Math.max(1, Math.min(logics.size(), threads * SHARDS_PER_THREAD));
+            for (int s = 0; s < shardCount; s++) {
+                shards.add(new Shard(logics.subList(s * logics.size() / shardCount, (s + 1) * logics.size() / shardCount)));
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = threads > 1 ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ev-charging-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    @Override
+    public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
+        if ((e.getSimulationTime() + 1) % chargeTimeStep == 0) {
+            if (shards.isEmpty()) {
+                for (Charger charger : chargingInfrastructure.getChargers().values()) {
+                    charger.getLogic().chargeVehicles(chargeTimeStep, e.getSimulationTime());
+                }
+            } else {
+                chargeShards(e.getSimulationTime());
+            }
+            if (updateSocsForProfiles && isSocProfileSampledBeforeNextStep(e.getSimulationTime())) {
+                for (Charger charger : chargingInfrastructure.getChargers().values()) {
+                    ((MpmChargingLogic)charger.getLogic()).updatePluggedCharges();
+                }
+            }
+        }
+    }
+
+    /**
+     * The MpmChargingLogic only updates the batteries of charging vehicles when needed; the soc time profiles read all
+     * batteries at the beginning of every SOC_PROFILE_INTERVAL.
+     */
+    private boolean isSocProfileSampledBeforeNextStep(double now) {
+        return Math.floor((now + chargeTimeStep) / SOC_PROFILE_INTERVAL) > Math.floor(now / SOC_PROFILE_INTERVAL);
+    }
+
+    private void chargeShards(double now) {
+        if (executor == null) {
+            shards.forEach(shard -> shard.charge(chargeTimeStep, now));
+        } else {
+            List<Future<?>> futures = new ArrayList<>(shards.size());
+            for (Shard shard : shards) {
+                futures.add(executor.submit(() -> shard.charge(chargeTimeStep, now)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(ex);
+                } catch (ExecutionException ex) {
+                    throw new RuntimeException("exception in the charging step", ex.getCause());
+                }
+            }
+        }
+        for (Shard shard : shards) {
+            shard.runDeferredCalls();
+        }
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        // vehicles still plugged at the end of the mobsim leave it with their current charge
+        for (Charger charger : chargingInfrastructure.getChargers().values()) {
+            ((MpmChargingLogic)charger.getLogic()).updatePluggedCharges();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static final class Shard {
+        private final List<MpmChargingLogic> logics;
+        private final List<Runnable> deferredCalls = new ArrayList<>();
+
+        private Shard(List<MpmChargingLogic> logics) {
+            this.logics = logics;
+        }
+
+        private void charge(double chargePeriod, double now) {
+            for (MpmChargingLogic logic : logics) {
+                logic.chargeVehicles(chargePeriod, now, deferredCalls);
+            }
+        }
+
+        private void runDeferredCalls() {
+            for (Runnable call : deferredCalls) {
+                call.run();
+            }
+            deferredCalls.clear();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package org.matsim.mpm.charging;
+
+import com.google.common.collect.Collections2;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.charging.*;
+import org.matsim.contrib.ev.fleet.ElectricVehicle;
+import org.matsim.contrib.ev.infrastructure.ChargerSpecification;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.*;
+
+/**
+ * Charging logic for chargers with many plugs and long queues. Plugged vehicles are kept in a heap ordered by their
+ * expected end of charging, queued vehicles in an insertion ordered map. Plug release, promotion from the queue and
+ * leaving the queue are O(log n) (or O(1)); a charging step only looks at the vehicles whose charging is expected to
+ * end, so its cost does not grow with the number of plugged vehicles.
+ * <p>
+ * The energy is not transferred step by step. Each plugged vehicle keeps its charge and charging power at plug-in (or
+ * at its last completion check) and the number of charging steps since then; its battery is only written when the
+ * charging is expected to end, when it is unplugged, and when the plugged vehicles are read through
+ * {@link #getPluggedVehicles()} or {@link #updatePluggedCharges()}. In between, the battery of a plugged vehicle shows
+ * the charge of its last update. The charge is the same as with step by step charging (up to rounding) as long as the
+ * charging power does not change between two completion checks, which holds for the {@link FixedSpeedCharging} of the
+ * {@link MpmChargingModule}; a power depending on the soc is taken over at each completion check.
+ * <p>
+ * Behaves like the {@link ChargingWithQueueingLogic} otherwise. With {@code mpmEv.quitQueueEventOnPlugIn}, a vehicle
+ * taken from the queue also triggers a {@link QuitQueueAtChargerEvent}, so that the
+ * {@link org.matsim.mpm.stats.ChargerQueuingCollector} sees every waiting period.
+ * <p>
+ * {@link #chargeVehicles(double, double, List)} is the charging step of the parallel {@link MpmChargingHandler}: it only
+ * touches this charger and its plugged vehicles, and hands back the events, listener calls and battery writes instead of
+ * executing them. Until they are run, the batteries show their charges before the step and any other access to this
+ * logic fails, so that the caller sees exactly the same as after a serial step.
+ */
+public final class MpmChargingLogic implements ChargingLogic {
+    private final ChargerSpecification charger;
+    private final ChargingStrategy chargingStrategy;
+    private final EventsManager eventsManager;
+    private final boolean quitQueueEventOnPlugIn;
+
+    private static final class Session extends IndexedMinHeap.Entry {
+        private final ElectricVehicle ev;
+        private final ChargingListener listener;
+        private int pluggedIndex = -1;
+
+        // charge = chargeAtSync + power * chargePeriod * (steps - stepsAtSync), up to the capacity
+        private double chargeAtSync;
+        private double power;
+        private long stepsAtSync;
+
+        private double chargeBeforeStep = Double.NaN;// set while a deferred step is pending
+
+        private Session(ElectricVehicle ev, ChargingListener listener) {
+            this.ev = ev;
+            this.listener = listener;
+        }
+    }
+
+    private final Map<Id<Vehicle>, Session> sessions = new HashMap<>();
+    private final IndexedMinHeap<Session> pluggedByExpectedEnd = new IndexedMinHeap<>();
+    private final ArrayList<Session> plugged = new ArrayList<>();
+    private final LinkedHashMap<Id<Vehicle>, Session> queued = new LinkedHashMap<>();
+    private List<Runnable> deferred = null;// null: events and listeners are called right away
+    private final List<Session> updatedInDeferredStep = new ArrayList<>();
+    private boolean steppedAhead = false;// true: the calls of a deferred step have not been run yet
+    private long steps = 0;
+    private double chargePeriod;
+
+    /**
+     * @param chargePeriod the period of the charging steps ({@code chargeTimeStep} of the ev config), needed to know
+     *                     when a vehicle plugged in between two steps is done
+     */
+    public MpmChargingLogic(ChargerSpecification charger, ChargingStrategy chargingStrategy, EventsManager eventsManager,
+                            double chargePeriod, boolean quitQueueEventOnPlugIn) {
+        this.charger = Objects.requireNonNull(charger);
+        this.chargingStrategy = Objects.requireNonNull(chargingStrategy);
+        this.eventsManager = Objects.requireNonNull(eventsManager);
+        this.chargePeriod = chargePeriod;
+        this.quitQueueEventOnPlugIn = quitQueueEventOnPlugIn;
+    }
+
+    /**
+     * Same as {@link #chargeVehicles(double, double)}, but the events, listener calls and battery writes are appended to
+     * {@code deferredCalls} (in the order in which the serial step makes them), to be run by the caller. The batteries
+     * are reset to their charges before the step, and this logic must not be used until the calls have been run.
+     */
+    public void chargeVehicles(double chargePeriod, double now, List<Runnable> deferredCalls) {
+        deferred = deferredCalls;
+        try {
+            chargeVehicles(chargePeriod, now);
+        } finally {
+            deferred = null;
+            for (Session session : updatedInDeferredStep) {
+                session.ev.getBattery().setCharge(session.chargeBeforeStep);
+                session.chargeBeforeStep = Double.NaN;
+            }
+            updatedInDeferredStep.clear();
+        }
+        steppedAhead = true;
+        deferredCalls.add(() -> steppedAhead = false);
+    }
+
+    @Override
+    public void chargeVehicles(double chargePeriod, double now) {
+        checkNotSteppedAhead();
+        // every plugged vehicle is charged for one more period, see chargeAt()
+        steps++;
+        this.chargePeriod = chargePeriod;
+
+        // only the vehicles that are expected to be done are checked
+        Session next;
+        while ((next = pluggedByExpectedEnd.peek()) != null && next.getKey() <= now) {
+            updateCharge(next);
+            if (chargingStrategy.isChargingCompleted(next.ev)) {
+                unplug(next, now);
+                Session ended = next;
+                call(() -> ended.listener.notifyChargingEnded(ended.ev, now));
+            } else {
+                sync(next);
+                pluggedByExpectedEnd.updateKey(next, expectedEnd(next.ev, chargePeriod, now));
+            }
+        }
+
+        while (plugged.size() < charger.getPlugCount() && !queued.isEmpty()) {
+            plug(pollQueued(now), now);
+        }
+    }
+
+    /**
+     * Writes the current charge into the batteries of all plugged vehicles.
+     */
+    public void updatePluggedCharges() {
+        checkNotSteppedAhead();
+        for (int i = 0, n = plugged.size(); i < n; i++) {
+            updateCharge(plugged.get(i));
+        }
+    }
+
+    private double chargeAt(Session session) {
+        double charge = session.chargeAtSync + session.power * chargePeriod * (steps - session.stepsAtSync);
+        return Math.min(charge, session.ev.getBattery().getCapacity());
+    }
+
+    private void updateCharge(Session session) {
+        double charge = chargeAt(session);
+        if (deferred != null) {
+            if (Double.isNaN(session.chargeBeforeStep)) {
+                session.chargeBeforeStep = session.ev.getBattery().getCharge();
+                updatedInDeferredStep.add(session);
+            }
+            deferred.add(() -> session.ev.getBattery().setCharge(charge));
+        }
+        session.ev.getBattery().setCharge(charge);
+    }
+
+    /**
+     * With the serial step, event handlers and listeners may look at chargers that are not charged yet. A deferred step
+     * cannot be hidden from them, so such an access fails instead of silently seeing the charger one step ahead.
+     */
+    private void checkNotSteppedAhead() {
+        if (steppedAhead) {
+            throw new IllegalStateException("Charger " + charger.getId() + " is used before the events of its parallel"
+                    + " charging step have been processed; run with mpmEv.chargingThreads = 0");
+        }
+    }
+
+    private void sync(Session session) {
+        session.chargeAtSync = session.ev.getBattery().getCharge();
+        session.power = session.ev.getChargingPower().calcChargingPower(charger);
+        session.stepsAtSync = steps;
+    }
+
+    private Session pollQueued(double now) {
+        Session first = queued.values().iterator().next();
+        queued.remove(first.ev.getId());
+        if (quitQueueEventOnPlugIn) {
+            emit(new QuitQueueAtChargerEvent(now, charger.getId(), first.ev.getId()));
+        }
+        return first;
+    }
+
+    /**
+     * One charging period early, since the step in which the charging completes integrates a full period.
+     */
+    private double expectedEnd(ElectricVehicle ev, double chargePeriod, double now) {
+        return now + Math.max(chargingStrategy.calcRemainingTimeToCharge(ev) - chargePeriod, 0.5 * chargePeriod);
+    }
+
+    /**
+     * Like {@link #expectedEnd}, but the next step may still be at {@code now}, and it integrates a full period no matter
+     * how shortly before it the vehicle was plugged, as in the {@link ChargingWithQueueingLogic}.
+     */
+    private double expectedEndAfterPlugging(ElectricVehicle ev, double now) {
+        return now + Math.max(chargingStrategy.calcRemainingTimeToCharge(ev) - chargePeriod, 0);
+    }
+
+    @Override
+    public void addVehicle(ElectricVehicle ev, double now) {
+        addVehicle(ev, new ChargingListener() {
+        }, now);
+    }
+
+    @Override
+    public void addVehicle(ElectricVehicle ev, ChargingListener chargingListener, double now) {
+        checkNotSteppedAhead();
+        Session session = new Session(ev, chargingListener);
+        if (sessions.putIfAbsent(ev.getId(), session) != null) {
+            throw new IllegalStateException("Vehicle " + ev.getId() + " is already at charger " + charger.getId());
+        }
+        if (plugged.size() < charger.getPlugCount()) {
+            plug(session, now);
+        } else {
+            queued.put(ev.getId(), session);
+            emit(new QueuedAtChargerEvent(now, charger.getId(), ev.getId()));
+            chargingListener.notifyVehicleQueued(ev, now);
+        }
+    }
+
+    @Override
+    public void removeVehicle(ElectricVehicle ev, double now) {
+        checkNotSteppedAhead();
+        Session session = sessions.get(ev.getId());
+        if (session == null) {
+            throw new IllegalStateException("Trying to remove a non-existing vehicle: " + ev.getId());
+        }
+        if (session.pluggedIndex >= 0) {
+            updateCharge(session);
+            unplug(session, now);
+            if (!queued.isEmpty()) {
+                plug(pollQueued(now), now);
+            }
+        } else {
+            queued.remove(ev.getId());
+            sessions.remove(ev.getId());
+            emit(new QuitQueueAtChargerEvent(now, charger.getId(), ev.getId()));
+        }
+    }
+
+    private void plug(Session session, double now) {
+        session.pluggedIndex = plugged.size();
+        plugged.add(session);
+        sync(session);
+        pluggedByExpectedEnd.add(session, expectedEndAfterPlugging(session.ev, now));
+        emit(new ChargingStartEvent(now, charger.getId(), session.ev.getId(),
+                session.ev.getBattery().getCharge()));
+        call(() -> session.listener.notifyChargingStarted(session.ev, now));
+    }
+
+    private void unplug(Session session, double now) {
+        // swap-remove from the dense array
+        Session last = plugged.remove(plugged.size() - 1);
+        if (last != session) {
+            plugged.set(session.pluggedIndex, last);
+            last.pluggedIndex = session.pluggedIndex;
+        }
+        session.pluggedIndex = -1;
+        if (session.isInHeap()) {
+            pluggedByExpectedEnd.remove(session);
+        }
+        sessions.remove(session.ev.getId());
+        emit(new ChargingEndEvent(now, charger.getId(), session.ev.getId(),
+                session.ev.getBattery().getCharge()));
+    }
+
+    private void emit(Event event) {
+        if (deferred == null) {
+            eventsManager.processEvent(event);
+        } else {
+            deferred.add(() -> eventsManager.processEvent(event));
+        }
+    }
+
+    private void call(Runnable listenerCall) {
+        if (deferred == null) {
+            listenerCall.run();
+        } else {
+            deferred.add(listenerCall);
+        }
+    }
+
+    /**
+     * Also brings the batteries of the plugged vehicles up to date, see {@link #updatePluggedCharges()}.
+     */
+    @Override
+    public Collection<ElectricVehicle> getPluggedVehicles() {
+        updatePluggedCharges();
+        return Collections.unmodifiableCollection(Collections2.transform(plugged, s -> s.ev));
+    }
+
+    @Override
+    public Collection<ElectricVehicle> getQueuedVehicles() {
+        checkNotSteppedAhead();
+        return Collections.unmodifiableCollection(Collections2.transform(queued.values(), s -> s.ev));
+    }
+
+    public ChargingStrategy getChargingStrategy() {
+        return chargingStrategy;
+    }
+
+    public static class FactoryProvider implements Provider<ChargingLogic.Factory> {
+        @Inject
+        private EventsManager eventsManager;
+        @Inject
+        private Config config;
+        @Inject
+        private EvConfigGroup evConfigGroup;
+
+        @Override
+        public ChargingLogic.Factory get() {
+            boolean quitQueueEventOnPlugIn = MpmEvConfigGroup.get(config).quitQueueEventOnPlugIn;
+            return charger -> new MpmChargingLogic(charger, new ChargeUpToMaxSocStrategy(charger, 1.), eventsManager,
+                    evConfigGroup.chargeTimeStep, quitQueueEventOnPlugIn);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.matsim.mpm.charging;
+
+import com.google.inject.Singleton;
+import org.matsim.contrib.ev.EvModule;
+import org.matsim.contrib.ev.charging.ChargingLogic;
+import org.matsim.contrib.ev.charging.ChargingModule;
+import org.matsim.contrib.ev.charging.ChargingPower;
+import org.matsim.contrib.ev.charging.FixedSpeedCharging;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+
+/**
+ * Replacement for the {@link ChargingModule} using the {@link MpmChargingLogic}.
+ */
+public final class MpmChargingModule extends AbstractModule {
+    @Override
+    public void install() {
+        bind(ChargingLogic.Factory.class).toProvider(MpmChargingLogic.FactoryProvider.class);
+        // same charging power as in the ChargingModule
+        bind(ChargingPower.Factory.class).toInstance(ev -> new FixedSpeedCharging(ev, 1));
+
+        installQSimModule(new AbstractQSimModule() {
+            @Override
+            protected void configureQSim() {
+                this.bind(MpmChargingHandler.class).in(Singleton.class);
+                addQSimComponentBinding(EvModule.EV_COMPONENT).to(MpmChargingHandler.class);
+            }
+        });
+    }
+}
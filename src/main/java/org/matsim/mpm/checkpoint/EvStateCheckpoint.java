@@ -0,0 +1,167 @@
+package org.matsim.mpm.checkpoint;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.ev.fleet.ElectricFleet;
+import org.matsim.contrib.ev.fleet.ElectricVehicle;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructure;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.Vehicles;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * State of the electric fleet and the chargers at the end of a mobsim: soc per vehicle, and the plugged and queued
+ * vehicles per charger. A later run can start from it instead of from the {@code initialSoc} of the vehicles file,
+ * see {@link EvStateRestorer}.
+ * <p>
+ * Binary format: magic, version, time, the vehicle ids with their soc, then per charger the indices of the plugged and
+ * queued vehicles in that list. Ids are stored once, so a checkpoint of a full BET fleet is a few MB.
+ */
+public final class EvStateCheckpoint {
+    public static final String FILE_NAME = "ev_state.bin";
+    public static final String INITIAL_SOC = "initialSoc";
+
+    private static final int MAGIC = 0x4d45_5653;// "MEVS"
+    private static final int VERSION = 1;
+
+    public record ChargerState(Id<Charger> chargerId, List<Id<Vehicle>> pluggedVehicles, List<Id<Vehicle>> queuedVehicles) {
+    }
+
+    private final double time;
+    private final Map<Id<Vehicle>, Double> socs;
+    private final List<ChargerState> chargers;
+
+    EvStateCheckpoint(double time, Map<Id<Vehicle>, Double> socs, List<ChargerState> chargers) {
+        this.time = time;
+        this.socs = Collections.unmodifiableMap(socs);
+        this.chargers = Collections.unmodifiableList(chargers);
+    }
+
+    public static EvStateCheckpoint capture(double now, ElectricFleet fleet, ChargingInfrastructure infrastructure) {
+        // chargers first: reading the plugged vehicles brings their batteries up to date (see MpmChargingLogic)
+        List<ChargerState> chargers = new ArrayList<>();
+        for (Charger charger : infrastructure.getChargers().values()) {
+            Collection<ElectricVehicle> plugged = charger.getLogic().getPluggedVehicles();
+            Collection<ElectricVehicle> queued = charger.getLogic().getQueuedVehicles();
+            if (!plugged.isEmpty() || !queued.isEmpty()) {
+                chargers.add(new ChargerState(charger.getId(), plugged.stream().map(ElectricVehicle::getId).toList(),
+                        queued.stream().map(ElectricVehicle::getId).toList()));
+            }
+        }
+        Map<Id<Vehicle>, Double> socs = new LinkedHashMap<>();
+        for (ElectricVehicle ev : fleet.getElectricVehicles().values()) {
+            socs.put(ev.getId(), ev.getBattery().getSoc());
+        }
+        return new EvStateCheckpoint(now, socs, chargers);
+    }
+
+    /**
+     * @return the sim time at which the checkpoint was taken; informative only, the restored run is not shifted by it
+     */
+    public double getTime() {
+        return time;
+    }
+
+    public Map<Id<Vehicle>, Double> getSocs() {
+        return socs;
+    }
+
+    /**
+     * @return the chargers with plugged or queued vehicles
+     */
+    public List<ChargerState> getChargers() {
+        return chargers;
+    }
+
+    /**
+     * Sets the {@code initialSoc} attribute of the vehicles to their soc in the checkpoint. Has to be called before the
+     * ev modules create the fleet specification from the vehicles.
+     */
+    public void restoreInitialSoc(Vehicles vehicles) {
+        socs.forEach((vehicleId, soc) -> {
+            Vehicle vehicle = vehicles.getVehicles().get(vehicleId);
+            if (vehicle != null) {
+                vehicle.getAttributes().putAttribute(INITIAL_SOC, soc);
+            }
+        });
+    }
+
+    public void write(String filename) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(filename)), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(time);
+
+            Map<Id<Vehicle>, Integer> indices = new HashMap<>();
+            out.writeInt(socs.size());
+            for (Map.Entry<Id<Vehicle>, Double> entry : socs.entrySet()) {
+                indices.put(entry.getKey(), indices.size());
+                out.writeUTF(entry.getKey().toString());
+                out.writeDouble(entry.getValue());
+            }
+
+            out.writeInt(chargers.size());
+            for (ChargerState charger : chargers) {
+                out.writeUTF(charger.chargerId().toString());
+                writeVehicles(out, charger.pluggedVehicles(), indices);
+                writeVehicles(out, charger.queuedVehicles(), indices);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeVehicles(DataOutputStream out, List<Id<Vehicle>> vehicleIds, Map<Id<Vehicle>, Integer> indices)
+            throws IOException {
+        out.writeInt(vehicleIds.size());
+        for (Id<Vehicle> vehicleId : vehicleIds) {
+            out.writeInt(indices.get(vehicleId));
+        }
+    }
+
+    public static EvStateCheckpoint read(URL url) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(url.openStream(), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException(url + " is not an ev state checkpoint");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported ev state checkpoint version " + version + " in " + url);
+            }
+            double time = in.readDouble();
+
+            int vehicleCount = in.readInt();
+            List<Id<Vehicle>> vehicleIds = new ArrayList<>(vehicleCount);
+            Map<Id<Vehicle>, Double> socs = new LinkedHashMap<>();
+            for (int i = 0; i < vehicleCount; i++) {
+                Id<Vehicle> vehicleId = Id.createVehicleId(in.readUTF());
+                vehicleIds.add(vehicleId);
+                socs.put(vehicleId, in.readDouble());
+            }
+
+            int chargerCount = in.readInt();
+            List<ChargerState> chargers = new ArrayList<>(chargerCount);
+            for (int i = 0; i < chargerCount; i++) {
+                Id<Charger> chargerId = Id.create(in.readUTF(), Charger.class);
+                chargers.add(new ChargerState(chargerId, readVehicles(in, vehicleIds), readVehicles(in, vehicleIds)));
+            }
+            return new EvStateCheckpoint(time, socs, chargers);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Id<Vehicle>> readVehicles(DataInputStream in, List<Id<Vehicle>> vehicleIds) throws IOException {
+        int count = in.readInt();
+        List<Id<Vehicle>> vehicles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vehicles.add(vehicleIds.get(in.readInt()));
+        }
+        return vehicles;
+    }
+}
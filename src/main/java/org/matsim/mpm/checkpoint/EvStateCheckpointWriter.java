@@ -0,0 +1,34 @@
+package org.matsim.mpm.checkpoint;
+
+import com.google.inject.Inject;
+import org.matsim.contrib.ev.fleet.ElectricFleet;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructure;
+import org.matsim.core.controler.MatsimServices;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.qsim.interfaces.MobsimTimer;
+
+/**
+ * Writes an {@link EvStateCheckpoint} to {@code <it>.ev_state.bin} at the end of every mobsim.
+ */
+public class EvStateCheckpointWriter implements MobsimBeforeCleanupListener {
+    private final ElectricFleet fleet;
+    private final ChargingInfrastructure infrastructure;
+    private final MobsimTimer timer;
+    private final MatsimServices matsimServices;
+
+    @Inject
+    EvStateCheckpointWriter(ElectricFleet fleet, ChargingInfrastructure infrastructure, MobsimTimer timer,
+                            MatsimServices matsimServices) {
+        this.fleet = fleet;
+        this.infrastructure = infrastructure;
+        this.timer = timer;
+        this.matsimServices = matsimServices;
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        EvStateCheckpoint.capture(timer.getTimeOfDay(), fleet, infrastructure).write(matsimServices.getControlerIO()
+                .getIterationFilename(matsimServices.getIterationNumber(), EvStateCheckpoint.FILE_NAME));
+    }
+}
@@ -0,0 +1,30 @@
+package org.matsim.mpm.checkpoint;
+
+import org.matsim.contrib.ev.EvModule;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+
+/**
+ * Restores the chargers of an {@link EvStateCheckpoint} at the start of every mobsim. The soc has to be restored
+ * separately with {@link EvStateCheckpoint#restoreInitialSoc} before the controler is started.
+ */
+public final class EvStateRestoreModule extends AbstractModule {
+    private final EvStateCheckpoint checkpoint;
+
+    public EvStateRestoreModule(EvStateCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public void install() {
+        bind(EvStateCheckpoint.class).toInstance(checkpoint);
+        installQSimModule(new AbstractQSimModule() {
+            @Override
+            protected void configureQSim() {
+                bind(EvStateRestorer.class).asEagerSingleton();
+                addQSimComponentBinding(EvModule.EV_COMPONENT).to(EvStateRestorer.class);
+                addMobsimScopeEventHandlerBinding().to(EvStateRestorer.class);
+            }
+        });
+    }
+}
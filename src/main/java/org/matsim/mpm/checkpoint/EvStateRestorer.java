@@ -0,0 +1,84 @@
+package org.matsim.mpm.checkpoint;
+
+import com.google.inject.Inject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.contrib.ev.fleet.ElectricFleet;
+import org.matsim.contrib.ev.fleet.ElectricVehicle;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructure;
+import org.matsim.core.events.MobsimScopeEventHandler;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.interfaces.MobsimTimer;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Puts the vehicles that were plugged or queued at the end of the checkpointed run back to their chargers when the
+ * mobsim starts (plugged ones first, so they get the plugs again). A restored vehicle leaves its charger when it next
+ * enters traffic; the vehicle charging handler does not know about it, since the charging activity started before.
+ * <p>
+ * The soc itself is restored earlier through the {@code initialSoc} attribute, see
+ * {@link EvStateCheckpoint#restoreInitialSoc}. Times are not shifted: the vehicles are put back at the start of the
+ * mobsim, not at the time of the checkpoint.
+ */
+public class EvStateRestorer implements MobsimInitializedListener, VehicleEntersTrafficEventHandler,
+        MobsimScopeEventHandler {
+    private static final Logger log = LogManager.getLogger(EvStateRestorer.class);
+
+    private final EvStateCheckpoint checkpoint;
+    private final ElectricFleet fleet;
+    private final ChargingInfrastructure infrastructure;
+    private final MobsimTimer timer;
+    private final Map<Id<Vehicle>, Charger> restoredAtChargers = new HashMap<>();
+
+    @Inject
+    EvStateRestorer(EvStateCheckpoint checkpoint, ElectricFleet fleet, ChargingInfrastructure infrastructure,
+                    MobsimTimer timer) {
+        this.checkpoint = checkpoint;
+        this.fleet = fleet;
+        this.infrastructure = infrastructure;
+        this.timer = timer;
+    }
+
+    @Override
+    public void notifyMobsimInitialized(MobsimInitializedEvent e) {
+        double now = timer.getTimeOfDay();
+        for (EvStateCheckpoint.ChargerState state : checkpoint.getChargers()) {
+            Charger charger = infrastructure.getChargers().get(state.chargerId());
+            if (charger == null) {
+                log.warn("charger " + state.chargerId() + " of the checkpoint does not exist, its vehicles are not restored");
+                continue;
+            }
+            addVehicles(charger, state.pluggedVehicles(), now);
+            addVehicles(charger, state.queuedVehicles(), now);
+        }
+        log.info("restored " + restoredAtChargers.size() + " vehicles at chargers from the checkpoint taken at "
+                + checkpoint.getTime());
+    }
+
+    private void addVehicles(Charger charger, List<Id<Vehicle>> vehicleIds, double now) {
+        for (Id<Vehicle> vehicleId : vehicleIds) {
+            ElectricVehicle ev = fleet.getElectricVehicles().get(vehicleId);
+            if (ev != null) {
+                charger.getLogic().addVehicle(ev, now);
+                restoredAtChargers.put(vehicleId, charger);
+            }
+        }
+    }
+
+    @Override
+    public void handleEvent(VehicleEntersTrafficEvent event) {
+        Charger charger = restoredAtChargers.remove(event.getVehicleId());
+        if (charger != null) {
+            charger.getLogic().removeVehicle(fleet.getElectricVehicles().get(event.getVehicleId()), event.getTime());
+        }
+    }
+}
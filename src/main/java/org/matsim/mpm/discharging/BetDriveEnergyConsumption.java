@@ -4,7 +4,7 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.ev.discharging.DriveEnergyConsumption;
 
 public class BetDriveEnergyConsumption implements DriveEnergyConsumption {
-    private final static double AVG_CONSUMPTION_PER_KM = 1200 * 3.6; // 1200 Wh/km * 60^2/1000 = Ws/m
+    final static double AVG_CONSUMPTION_PER_KM = 1200 * 3.6; // 1200 Wh/km * 60^2/1000 = Ws/m
 
     @Override
     public double calcEnergyConsumption(Link link, double travelTime, double linkEnterTime) {
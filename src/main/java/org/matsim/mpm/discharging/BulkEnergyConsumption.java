@@ -0,0 +1,27 @@
+package org.matsim.mpm.discharging;
+
+import org.matsim.contrib.ev.fleet.ElectricVehicle;
+
+/**
+ * Drive plus aux energy consumption of a whole route at once, on primitive arrays instead of one
+ * {@link org.matsim.contrib.ev.discharging.DriveEnergyConsumption} and
+ * {@link org.matsim.contrib.ev.discharging.AuxEnergyConsumption} call per link. Used by the ev routing to estimate the
+ * consumption of the basic route; the results must be the same as with the per-link models.
+ */
+public interface BulkEnergyConsumption {
+    /**
+     * @param linkLengths  in m
+     * @param travelTimes  in s
+     * @param count        number of links, the arrays may be longer
+     * @param consumptions output, energy per link in J
+     */
+    void calcEnergyConsumptions(double[] linkLengths, double[] travelTimes, int count, double[] consumptions);
+
+    interface Factory {
+        /**
+         * @return null if the consumption models of the vehicle can not be evaluated in bulk; the routing then calls
+         * them link by link
+         */
+        BulkEnergyConsumption create(ElectricVehicle ev);
+    }
+}
@@ -0,0 +1,30 @@
+package org.matsim.mpm.discharging;
+
+/**
+ * Drive energy linear in the link length (none on links passed in no time, as in {@link BetDriveEnergyConsumption}) and
+ * aux energy linear in the travel time, i.e. at a fixed temperature.
+ * <p>
+ * A plain loop without interface calls per link; {@code BulkEnergyConsumptionBenchmark} (src/jmh) compares it with the
+ * per-link models.
+ */
+public final class LinearEnergyConsumption implements BulkEnergyConsumption {
+    private final double drivePerMeter;
+    private final double auxPower;
+
+    /**
+     * @param drivePerMeter in J/m
+     * @param auxPower      in W
+     */
+    public LinearEnergyConsumption(double drivePerMeter, double auxPower) {
+        this.drivePerMeter = drivePerMeter;
+        this.auxPower = auxPower;
+    }
+
+    @Override
+    public void calcEnergyConsumptions(double[] linkLengths, double[] travelTimes, int count, double[] consumptions) {
+        for (int i = 0; i < count; i++) {
+            double drive = travelTimes[i] == 0 ? 0 : drivePerMeter * linkLengths[i];
+            consumptions[i] = drive + auxPower * travelTimes[i];
+        }
+    }
+}
@@ -25,6 +25,8 @@ import org.matsim.contrib.ev.discharging.*;
 import org.matsim.contrib.ev.temperature.TemperatureService;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.telemetry.SocTelemetryCollector;
 
 import com.google.inject.Singleton;
 
@@ -37,10 +39,20 @@ public final class MpmDischargingModule extends AbstractModule {
         bind(DriveEnergyConsumption.Factory.class).toInstance(ev -> new BetDriveEnergyConsumption());
         bind(TemperatureService.class).toInstance(linkId -> 15);// XXX fixed temperature 15 oC
         bind(AuxEnergyConsumption.Factory.class).to(OhdeSlaskiAuxEnergyConsumption.Factory.class).in(Singleton.class);
+        if (MpmEvConfigGroup.get(getConfig()).bulkEnergyConsumption) {
+            // both models above are linear (in the link length, and in time at the fixed temperature), so the routing
+            // can evaluate them on whole routes; the aux power is taken from the aux model itself
+            bind(BulkEnergyConsumption.Factory.class).toInstance(ev -> ev.getDriveEnergyConsumption() instanceof BetDriveEnergyConsumption ?
+                    new LinearEnergyConsumption(BetDriveEnergyConsumption.AVG_CONSUMPTION_PER_KM,
+                            ev.getAuxEnergyConsumption().calcEnergyConsumption(0, 1, null)) :
+                    null);
+        }
 
         installQSimModule(new AbstractQSimModule() {
             @Override
             protected void configureQSim() {
+                // discharging stays on the events thread also with laneEventDispatch, it has to happen before the
+                // VehicleChargingHandler plugs the vehicle in at the end of the trip
                 this.bind(DriveDischargingHandler.class).in(Singleton.class);
                 addMobsimScopeEventHandlerBinding().to(DriveDischargingHandler.class);
                 this.addQSimComponentBinding(EvModule.EV_COMPONENT).to(DriveDischargingHandler.class);
@@ -52,6 +64,12 @@ public final class MpmDischargingModule extends AbstractModule {
 
                 //by default, no vehicle will be AUX-discharged when not moving
                 this.bind(IdleDischargingHandler.VehicleProvider.class).toInstance(event -> null);
+
+                if (MpmEvConfigGroup.get(getConfig()).telemetry) {
+                    bind(SocTelemetryCollector.class).asEagerSingleton();
+                    addMobsimScopeEventHandlerBinding().to(SocTelemetryCollector.class);
+                    addQSimComponentBinding(EvModule.EV_COMPONENT).to(SocTelemetryCollector.class);
+                }
             }
         });
     }
@@ -0,0 +1,51 @@
+package org.matsim.mpm.events;
+
+import com.google.inject.Inject;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.mpm.MpmEvConfigGroup;
+
+/**
+ * Same life cycle as the core events writers: registered before the mobsim, closed after it.
+ */
+final class BinaryEventsControlerListener implements BeforeMobsimListener, AfterMobsimListener {
+    static final String FILENAME = "events.bin";
+
+    private final EventsManager eventsManager;
+    private final OutputDirectoryHierarchy controlerIO;
+    private final int interval;
+    private final int lastIteration;
+
+    private BinaryEventsWriter writer;
+
+    @Inject
+    BinaryEventsControlerListener(EventsManager eventsManager, OutputDirectoryHierarchy controlerIO, Config config) {
+        this.eventsManager = eventsManager;
+        this.controlerIO = controlerIO;
+        this.interval = MpmEvConfigGroup.get(config).writeBinaryEventsInterval;
+        this.lastIteration = config.controller().getLastIteration();
+    }
+
+    @Override
+    public void notifyBeforeMobsim(BeforeMobsimEvent event) {
+        int iteration = event.getIteration();
+        if (iteration % interval == 0 || iteration == lastIteration) {
+            writer = new BinaryEventsWriter(controlerIO.getIterationFilename(iteration, FILENAME));
+            eventsManager.addHandler(writer);
+        }
+    }
+
+    @Override
+    public void notifyAfterMobsim(AfterMobsimEvent event) {
+        if (writer != null) {
+            eventsManager.removeHandler(writer);
+            writer.closeFile();
+            writer = null;
+        }
+    }
+}
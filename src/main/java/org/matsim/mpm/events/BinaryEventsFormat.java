@@ -0,0 +1,154 @@
+package org.matsim.mpm.events;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of the binary events files written by {@link BinaryEventsWriter} and read by {@link BinaryEventsReader}.
+ * <p>
+ * The file starts with {@link #MAGIC} and {@link #VERSION} (two ints) followed by blocks until the end of the file.
+ * Each block holds up to {@link #BLOCK_SIZE} events and starts with two ints: the number of events and the length of
+ * the block payload in bytes. The payload is stored column by column:
+ * <ol>
+ *     <li>dictionary delta: the number of strings added to the (file-global) dictionary in this block, followed by the
+ *     strings themselves (varint length + UTF-8 bytes). Strings are referenced by their position in the dictionary.</li>
+ *     <li>type column: one varint dictionary reference per event.</li>
+ *     <li>time column: one zig-zag varint per event, the difference in milliseconds to the previous event.</li>
+ *     <li>attribute column: per event a varint with the number of attributes, then per attribute a varint dictionary
+ *     reference of the key and the value. Values are encoded as varint {@code ref << 1} for dictionary strings, or as
+ *     varint {@code 1} followed by the raw 8 bytes of a double for numbers whose {@link Double#toString(double)}
+ *     representation equals the original string, so the conversion back to text is exact, or as varint {@code 3} for
+ *     a null value (since version 2; version 1 wrote null as an empty string).</li>
+ * </ol>
+ * Times are stored with millisecond resolution, which covers everything the qsim and the ev contrib produce.
+ */
+final class BinaryEventsFormat {
+    static final int MAGIC = 0x4d504d45; // "MPME"
+    static final int VERSION = 2;
+    static final int BLOCK_SIZE = 1 << 16;
+    static final int BLOCK_HEADER_BYTES = 2 * Integer.BYTES;
+
+    static final long DOUBLE_VALUE = 1;
+    static final long NULL_VALUE = 3;
+
+    static final double TIME_RESOLUTION = 1000.;
+
+    private BinaryEventsFormat() {
+    }
+
+    static long toTimeUnits(double time) {
+        return Math.round(time * TIME_RESOLUTION);
+    }
+
+    static double fromTimeUnits(long units) {
+        return units / TIME_RESOLUTION;
+    }
+
+    /**
+     * @return true if the string can be stored as a raw double without changing its textual representation
+     */
+    static boolean isExactDouble(String value) {
+        int length = value.length();
+        if (length == 0 || length > 25) {
+            return false;
+        }
+        char first = value.charAt(0);
+        if (!(first == '-' || (first >= '0' && first <= '9'))) {
+            return false;
+        }
+        if (value.indexOf('.') < 0 && value.indexOf('E') < 0) {
+            return false;// integers are most likely ids
+        }
+        try {
+            return Double.toString(Double.parseDouble(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            result |= (long)(b & 0x7f) << shift;
+            if (b >= 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+
+    static int readVarInt(ByteBuffer buffer) {
+        return (int)readVarLong(buffer);
+    }
+
+    /**
+     * Minimal growable byte buffer; {@link java.io.ByteArrayOutputStream} synchronizes on every write.
+     */
+    static final class ByteSink {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte)b;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte)((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte)value;
+        }
+
+        void writeDouble(double value) {
+            ensureCapacity(8);
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte)(bits >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] src) {
+            ensureCapacity(src.length);
+            System.arraycopy(src, 0, bytes, size, src.length);
+            size += src.length;
+        }
+
+        void writeTo(ByteSink other) {
+            other.ensureCapacity(size);
+            System.arraycopy(bytes, 0, other.bytes, other.size, size);
+            other.size += size;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, size + extra)];
+                System.arraycopy(bytes, 0, grown, 0, size);
+                bytes = grown;
+            }
+        }
+    }
+}
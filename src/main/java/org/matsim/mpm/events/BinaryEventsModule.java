@@ -0,0 +1,17 @@
+package org.matsim.mpm.events;
+
+import com.google.inject.Singleton;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.mpm.MpmEvConfigGroup;
+
+/**
+ * Writes {@code <it>.events.bin} next to the regular events files, see {@link MpmEvConfigGroup#writeBinaryEventsInterval}.
+ */
+public final class BinaryEventsModule extends AbstractModule {
+    @Override
+    public void install() {
+        if (MpmEvConfigGroup.get(getConfig()).writeBinaryEventsInterval > 0) {
+            addControlerListenerBinding().to(BinaryEventsControlerListener.class).in(Singleton.class);
+        }
+    }
+}
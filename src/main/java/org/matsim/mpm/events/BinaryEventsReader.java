@@ -0,0 +1,193 @@
+package org.matsim.mpm.events;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.ev.charging.ChargingEndEvent;
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.QueuedAtChargerEvent;
+import org.matsim.contrib.ev.charging.QuitQueueAtChargerEvent;
+import org.matsim.contrib.ev.discharging.DrivingEnergyConsumptionEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads files written by {@link BinaryEventsWriter} block by block from a memory-mapped file and passes the events to
+ * an {@link EventsManager}.
+ * <p>
+ * The core qsim events and the ev charging/consumption events are handed out as their typed classes, so the usual
+ * handlers work on them. Everything else arrives as {@link GenericEvent} unless a mapper is registered with
+ * {@link #addCustomEventMapper(String, MatsimEventsReader.CustomEventMapper)}, same as with the xml reader.
+ */
+public final class BinaryEventsReader {
+    private static final Logger log = LogManager.getLogger(BinaryEventsReader.class);
+
+    private final EventsManager events;
+    private final Map<String, MatsimEventsReader.CustomEventMapper> mappers = new HashMap<>();
+
+    public BinaryEventsReader(EventsManager events) {
+        this.events = events;
+
+        mappers.put(LinkEnterEvent.EVENT_TYPE, e -> new LinkEnterEvent(e.getTime(),
+                vehicleId(e, "vehicle"), linkId(e, "link")));
+        mappers.put(LinkLeaveEvent.EVENT_TYPE, e -> new LinkLeaveEvent(e.getTime(),
+                vehicleId(e, "vehicle"), linkId(e, "link")));
+        mappers.put(VehicleEntersTrafficEvent.EVENT_TYPE, e -> new VehicleEntersTrafficEvent(e.getTime(),
+                personId(e, "person"), linkId(e, "link"), vehicleId(e, "vehicle"), attr(e, "networkMode"),
+                number(e, "relativePosition", 1.)));
+        mappers.put(VehicleLeavesTrafficEvent.EVENT_TYPE, e -> new VehicleLeavesTrafficEvent(e.getTime(),
+                personId(e, "person"), linkId(e, "link"), vehicleId(e, "vehicle"), attr(e, "networkMode"),
+                number(e, "relativePosition", 1.)));
+        mappers.put(PersonEntersVehicleEvent.EVENT_TYPE, e -> new PersonEntersVehicleEvent(e.getTime(),
+                personId(e, "person"), vehicleId(e, "vehicle")));
+        mappers.put(PersonLeavesVehicleEvent.EVENT_TYPE, e -> new PersonLeavesVehicleEvent(e.getTime(),
+                personId(e, "person"), vehicleId(e, "vehicle")));
+        mappers.put(PersonDepartureEvent.EVENT_TYPE, e -> new PersonDepartureEvent(e.getTime(),
+                personId(e, "person"), linkId(e, "link"), attr(e, "legMode"), attr(e, "computationalRoutingMode")));
+        mappers.put(PersonArrivalEvent.EVENT_TYPE, e -> new PersonArrivalEvent(e.getTime(),
+                personId(e, "person"), linkId(e, "link"), attr(e, "legMode")));
+        mappers.put(ActivityStartEvent.EVENT_TYPE, e -> new ActivityStartEvent(e.getTime(),
+                personId(e, "person"), linkId(e, "link"), facilityId(e), attr(e, "actType"), coord(e)));
+        mappers.put(ActivityEndEvent.EVENT_TYPE, e -> new ActivityEndEvent(e.getTime(),
+                personId(e, "person"), linkId(e, "link"), facilityId(e), attr(e, "actType"), coord(e)));
+
+        mappers.put(ChargingStartEvent.EVENT_TYPE, ChargingStartEvent::convert);
+        mappers.put(ChargingEndEvent.EVENT_TYPE, ChargingEndEvent::convert);
+        mappers.put(QueuedAtChargerEvent.EVENT_TYPE, QueuedAtChargerEvent::convert);
+        mappers.put(QuitQueueAtChargerEvent.EVENT_TYPE, QuitQueueAtChargerEvent::convert);
+        mappers.put(DrivingEnergyConsumptionEvent.EVENT_TYPE, DrivingEnergyConsumptionEvent::convert);
+    }
+
+    public void addCustomEventMapper(String eventType, MatsimEventsReader.CustomEventMapper mapper) {
+        mappers.put(eventType, mapper);
+    }
+
+    /**
+     * Does not convert events into their typed classes; this is what {@link BinaryEventsToXml} needs.
+     */
+    public void removeAllEventMappers() {
+        mappers.clear();
+    }
+
+    public void readFile(String filename) {
+        List<String> dictionary = new ArrayList<>();
+        long eventCount = 0;
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 2 * Integer.BYTES);
+            if (header.getInt() != BinaryEventsFormat.MAGIC) {
+                throw new IllegalArgumentException(filename + " is not a binary events file");
+            }
+            int version = header.getInt();
+            if (version < 1 || version > BinaryEventsFormat.VERSION) {
+                throw new IllegalArgumentException("unsupported binary events version " + version + " in " + filename);
+            }
+
+            long position = 2 * Integer.BYTES;
+            long size = channel.size();
+            long time = 0;
+            int[] types = new int[BinaryEventsFormat.BLOCK_SIZE];
+            long[] times = new long[BinaryEventsFormat.BLOCK_SIZE];
+            while (position < size) {
+                ByteBuffer blockHeader = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        BinaryEventsFormat.BLOCK_HEADER_BYTES);
+                int count = blockHeader.getInt();
+                int payloadLength = blockHeader.getInt();
+                position += BinaryEventsFormat.BLOCK_HEADER_BYTES;
+                MappedByteBuffer payload = channel.map(FileChannel.MapMode.READ_ONLY, position, payloadLength);
+                position += payloadLength;
+
+                int newStrings = BinaryEventsFormat.readVarInt(payload);
+                for (int i = 0; i < newStrings; i++) {
+                    byte[] bytes = new byte[BinaryEventsFormat.readVarInt(payload)];
+                    payload.get(bytes);
+                    dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                for (int i = 0; i < count; i++) {
+                    types[i] = BinaryEventsFormat.readVarInt(payload);
+                }
+                for (int i = 0; i < count; i++) {
+                    time += BinaryEventsFormat.unZigZag(BinaryEventsFormat.readVarLong(payload));
+                    times[i] = time;
+                }
+                for (int i = 0; i < count; i++) {
+                    GenericEvent event = new GenericEvent(dictionary.get(types[i]),
+                            BinaryEventsFormat.fromTimeUnits(times[i]));
+                    int attributeCount = BinaryEventsFormat.readVarInt(payload);
+                    for (int a = 0; a < attributeCount; a++) {
+                        String key = dictionary.get(BinaryEventsFormat.readVarInt(payload));
+                        long value = BinaryEventsFormat.readVarLong(payload);
+                        String string;
+                        if (value == BinaryEventsFormat.DOUBLE_VALUE) {
+                            string = Double.toString(payload.getDouble());
+                        } else if (value == BinaryEventsFormat.NULL_VALUE) {
+                            string = null;
+                        } else {
+                            string = dictionary.get((int)(value >>> 1));
+                        }
+                        event.getAttributes().put(key, string);
+                    }
+                    MatsimEventsReader.CustomEventMapper mapper = mappers.get(event.getEventType());
+                    events.processEvent(mapper == null ? event : mapper.apply(event));
+                }
+                eventCount += count;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("read " + eventCount + " events from " + filename);
+    }
+
+    private static String attr(GenericEvent e, String key) {
+        return e.getAttributes().get(key);
+    }
+
+    private static double number(GenericEvent e, String key, double defaultValue) {
+        String value = e.getAttributes().get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static Id<Link> linkId(GenericEvent e, String key) {
+        String value = e.getAttributes().get(key);
+        return value == null ? null : Id.createLinkId(value);
+    }
+
+    private static Id<Vehicle> vehicleId(GenericEvent e, String key) {
+        String value = e.getAttributes().get(key);
+        return value == null ? null : Id.createVehicleId(value);
+    }
+
+    private static Id<Person> personId(GenericEvent e, String key) {
+        String value = e.getAttributes().get(key);
+        return value == null ? null : Id.createPersonId(value);
+    }
+
+    private static Id<ActivityFacility> facilityId(GenericEvent e) {
+        String value = e.getAttributes().get("facility");
+        return value == null ? null : Id.create(value, ActivityFacility.class);
+    }
+
+    private static Coord coord(GenericEvent e) {
+        String x = e.getAttributes().get("x");
+        String y = e.getAttributes().get("y");
+        return x == null || y == null ? null : new Coord(Double.parseDouble(x), Double.parseDouble(y));
+    }
+}
@@ -0,0 +1,35 @@
+package org.matsim.mpm.events;
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.algorithms.EventWriterXML;
+
+/**
+ * Converts a binary events file into the standard xml events format, e.g. for via or for
+ * {@link org.matsim.utils.eventsfilecomparison.EventsFileComparator}.
+ * <p>
+ * Usage: {@code BinaryEventsToXml <input.events.bin> <output.events.xml.gz>}
+ */
+public final class BinaryEventsToXml {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("usage: BinaryEventsToXml <input.events.bin> <output.events.xml[.gz]>");
+        }
+        convert(args[0], args[1]);
+    }
+
+    public static void convert(String binaryFile, String xmlFile) {
+        EventsManager events = EventsUtils.createEventsManager();
+        EventWriterXML writer = new EventWriterXML(xmlFile);
+        events.addHandler(writer);
+
+        BinaryEventsReader reader = new BinaryEventsReader(events);
+        // the xml writer only needs the attributes, no need to create the typed events
+        reader.removeAllEventMappers();
+        events.initProcessing();
+        reader.readFile(binaryFile);
+        events.finishProcessing();
+        writer.closeFile();
+    }
+}
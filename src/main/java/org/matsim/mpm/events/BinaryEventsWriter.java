@@ -0,0 +1,134 @@
+package org.matsim.mpm.events;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.handler.BasicEventHandler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes events into the columnar binary format described in {@link BinaryEventsFormat}. Ids and other repeated
+ * strings end up in a dictionary, so a link enter event costs a few bytes instead of a full xml line.
+ * <p>
+ * The file is not compressed on purpose: {@link BinaryEventsReader} memory-maps it.
+ */
+public final class BinaryEventsWriter implements EventWriter, BasicEventHandler {
+    private final DataOutputStream out;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> newStrings = new ArrayList<>();
+
+    private final int[] types = new int[BinaryEventsFormat.BLOCK_SIZE];
+    private final long[] timeDeltas = new long[BinaryEventsFormat.BLOCK_SIZE];
+    private final BinaryEventsFormat.ByteSink attributes = new BinaryEventsFormat.ByteSink();
+    private final BinaryEventsFormat.ByteSink payload = new BinaryEventsFormat.ByteSink();
+    private int eventCount = 0;
+    private long lastTime = 0;
+
+    public BinaryEventsWriter(String filename) {
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 20));
+            out.writeInt(BinaryEventsFormat.MAGIC);
+            out.writeInt(BinaryEventsFormat.VERSION);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        long time = BinaryEventsFormat.toTimeUnits(event.getTime());
+        types[eventCount] = lookup(event.getEventType());
+        timeDeltas[eventCount] = time - lastTime;
+        lastTime = time;
+
+        Map<String, String> attrs = event.getAttributes();
+        // time and type are stored in their own columns
+        attributes.writeVarLong(attrs.size() - (attrs.containsKey(Event.ATTRIBUTE_TYPE) ? 1 : 0)
+                - (attrs.containsKey(Event.ATTRIBUTE_TIME) ? 1 : 0));
+        for (Map.Entry<String, String> e : attrs.entrySet()) {
+            String key = e.getKey();
+            if (key.equals(Event.ATTRIBUTE_TIME) || key.equals(Event.ATTRIBUTE_TYPE)) {
+                continue;
+            }
+            attributes.writeVarLong(lookup(key));
+            String value = e.getValue();
+            if (value == null) {
+                attributes.writeVarLong(BinaryEventsFormat.NULL_VALUE);
+            } else if (BinaryEventsFormat.isExactDouble(value)) {
+                attributes.writeVarLong(BinaryEventsFormat.DOUBLE_VALUE);
+                attributes.writeDouble(Double.parseDouble(value));
+            } else {
+                attributes.writeVarLong((long)lookup(value) << 1);
+            }
+        }
+
+        if (++eventCount == BinaryEventsFormat.BLOCK_SIZE) {
+            flushBlock();
+        }
+    }
+
+    private int lookup(String string) {
+        Integer ref = dictionary.get(string);
+        if (ref == null) {
+            ref = dictionary.size();
+            dictionary.put(string, ref);
+            newStrings.add(string);
+        }
+        return ref;
+    }
+
+    private void flushBlock() {
+        if (eventCount == 0) {
+            return;
+        }
+        payload.clear();
+        payload.writeVarLong(newStrings.size());
+        for (String s : newStrings) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            payload.writeVarLong(bytes.length);
+            payload.writeBytes(bytes);
+        }
+        for (int i = 0; i < eventCount; i++) {
+            payload.writeVarLong(types[i]);
+        }
+        for (int i = 0; i < eventCount; i++) {
+            payload.writeVarLong(BinaryEventsFormat.zigZag(timeDeltas[i]));
+        }
+        attributes.writeTo(payload);
+
+        try {
+            out.writeInt(eventCount);
+            out.writeInt(payload.size());
+            out.write(payload.array(), 0, payload.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        newStrings.clear();
+        attributes.clear();
+        eventCount = 0;
+    }
+
+    @Override
+    public void closeFile() {
+        flushBlock();
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void reset(int iteration) {
+    }
+}
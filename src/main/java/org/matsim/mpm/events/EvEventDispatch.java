@@ -0,0 +1,45 @@
+package org.matsim.mpm.events;
+
+import com.google.inject.Binder;
+import com.google.inject.multibindings.Multibinder;
+import org.matsim.contrib.ev.EvModule;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+
+/**
+ * Bindings for the {@link LanedEventDispatcher}.  Handlers bound here must not be registered as (mobsim scope) event
+ * handlers in addition, otherwise they see every event twice.
+ */
+public final class EvEventDispatch {
+    public static final String LANE_QUEUING_STATS = "queuing-stats";
+    public static final String LANE_ENERGY_STATS = "energy-stats";
+
+    record LaneBinding(String lane, Class<? extends EventHandler> handlerClass) {
+    }
+
+    private EvEventDispatch() {
+    }
+
+    /**
+     * All handlers of one lane are called from the same thread in event order. Use the same lane for handlers that
+     * share state.
+     */
+    public static void addHandlerBinding(Binder binder, String lane, Class<? extends EventHandler> handlerClass) {
+        Multibinder.newSetBinder(binder, LaneBinding.class).addBinding().toInstance(new LaneBinding(lane, handlerClass));
+    }
+
+    /**
+     * The dispatcher itself; to be installed before the modules adding lane bindings.
+     */
+    public static AbstractQSimModule createQSimModule() {
+        return new AbstractQSimModule() {
+            @Override
+            protected void configureQSim() {
+                Multibinder.newSetBinder(binder(), LaneBinding.class);
+                bind(LanedEventDispatcher.class).asEagerSingleton();
+                addMobsimScopeEventHandlerBinding().to(LanedEventDispatcher.class);
+                addQSimComponentBinding(EvModule.EV_COMPONENT).to(LanedEventDispatcher.class);
+            }
+        };
+    }
+}
@@ -0,0 +1,263 @@
+package org.matsim.mpm.events;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.contrib.ev.charging.ChargingEndEvent;
+import org.matsim.contrib.ev.charging.ChargingEndEventHandler;
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.ChargingStartEventHandler;
+import org.matsim.contrib.ev.charging.QueuedAtChargerEvent;
+import org.matsim.contrib.ev.charging.QueuedAtChargerEventHandler;
+import org.matsim.contrib.ev.charging.QuitQueueAtChargerEvent;
+import org.matsim.contrib.ev.charging.QuitQueueAtChargerEventHandler;
+import org.matsim.contrib.ev.discharging.DrivingEnergyConsumptionEvent;
+import org.matsim.contrib.ev.discharging.DrivingEnergyConsumptionEventHandler;
+import org.matsim.contrib.ev.discharging.IdlingEnergyConsumptionEvent;
+import org.matsim.contrib.ev.discharging.IdlingEnergyConsumptionEventHandler;
+import org.matsim.core.events.MobsimScopeEventHandler;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Receives all events as one mobsim scope handler and forwards each event type only to the handlers bound with
+ * {@link EvEventDispatch#addHandlerBinding}. Every lane is served by one thread, so each handler still sees the events
+ * in their original order (in particular per vehicle and per charger); independent lanes run concurrently.
+ * <p>
+ * The handlers are called through their typed handler interfaces, dispatched by the exact event class; only the ev
+ * charging and energy consumption events listed in {@link #SUBSCRIPTIONS} are supported. The lanes are drained before
+ * cleanup, so handlers that are also qsim components see a complete event stream when their cleanup listeners run.
+ * This relies on the dispatcher being bound as qsim component before them, see {@link org.matsim.mpm.MpmEvBaseModule}.
+ * Consumers that need a complete stream during the mobsim have to call {@link #flush()} themselves.
+ */
+public final class LanedEventDispatcher implements BasicEventHandler, MobsimScopeEventHandler,
+        MobsimBeforeCleanupListener {
+    private static final Logger log = LogManager.getLogger(LanedEventDispatcher.class);
+
+    private static final int BATCH_SIZE = 512;
+    private static final int QUEUE_CAPACITY = 256;// batches per lane
+
+    private static final List<Subscription<?, ?>> SUBSCRIPTIONS = List.of(
+            new Subscription<>(QueuedAtChargerEvent.class, QueuedAtChargerEventHandler.class,
+                    QueuedAtChargerEventHandler::handleEvent),
+            new Subscription<>(QuitQueueAtChargerEvent.class, QuitQueueAtChargerEventHandler.class,
+                    QuitQueueAtChargerEventHandler::handleEvent),
+            new Subscription<>(ChargingStartEvent.class, ChargingStartEventHandler.class,
+                    ChargingStartEventHandler::handleEvent),
+            new Subscription<>(ChargingEndEvent.class, ChargingEndEventHandler.class,
+                    ChargingEndEventHandler::handleEvent),
+            new Subscription<>(DrivingEnergyConsumptionEvent.class, DrivingEnergyConsumptionEventHandler.class,
+                    DrivingEnergyConsumptionEventHandler::handleEvent),
+            new Subscription<>(IdlingEnergyConsumptionEvent.class, IdlingEnergyConsumptionEventHandler.class,
+                    IdlingEnergyConsumptionEventHandler::handleEvent));
+
+    private final List<Lane> lanes = new ArrayList<>();
+    // read-only after construction
+    private final Map<Class<? extends Event>, Lane[]> lanesByEventType = new HashMap<>();
+
+    @Inject
+    LanedEventDispatcher(Set<EvEventDispatch.LaneBinding> bindings, Injector injector) {
+        Map<String, Lane> lanesByName = new LinkedHashMap<>();
+        for (EvEventDispatch.LaneBinding binding : bindings) {
+            Lane lane = lanesByName.computeIfAbsent(binding.lane(), Lane::new);
+            lane.addHandler(injector.getInstance(binding.handlerClass()));
+        }
+        lanes.addAll(lanesByName.values());
+        for (Subscription<?, ?> subscription : SUBSCRIPTIONS) {
+            Lane[] subscribed = lanes.stream()
+                    .filter(lane -> lane.callsByEventType.containsKey(subscription.eventType()))
+                    .toArray(Lane[]::new);
+            if (subscribed.length > 0) {
+                lanesByEventType.put(subscription.eventType(), subscribed);
+            }
+        }
+        lanes.forEach(Lane::start);
+        log.info("dispatching ev events on " + lanes.size() + " lanes: " + lanesByName.keySet());
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        Lane[] subscribed = lanesByEventType.get(event.getClass());
+        if (subscribed != null) {
+            for (Lane lane : subscribed) {
+                lane.add(event);
+            }
+        }
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        flush();
+        lanes.forEach(Lane::stop);
+    }
+
+    /**
+     * Blocks until all events received so far are processed by all lanes. May be called from any thread; the events
+     * still queued in the events manager itself are not waited for.
+     */
+    public void flush() {
+        long[] submitted = new long[lanes.size()];
+        for (int i = 0; i < lanes.size(); i++) {
+            submitted[i] = lanes.get(i).submitBatch();
+        }
+        for (int i = 0; i < lanes.size(); i++) {
+            lanes.get(i).awaitProcessed(submitted[i]);
+        }
+    }
+
+    private record Subscription<E extends Event, H extends EventHandler>(Class<E> eventType, Class<H> handlerType,
+                                                                         BiConsumer<H, E> call) {
+        private Consumer<Event> bindTo(EventHandler handler) {
+            H typedHandler = handlerType.cast(handler);
+            return event -> call.accept(typedHandler, eventType.cast(event));
+        }
+    }
+
+    private static final class Lane implements Runnable {
+        private static final Event[] POISON = new Event[0];
+
+        private final String name;
+        private final Map<Class<? extends Event>, List<Consumer<Event>>> callsByEventType = new HashMap<>();
+        private final BlockingQueue<Event[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicLong processed = new AtomicLong();
+        private final Thread thread;
+
+        // guarded by this: filled by the events thread, submitted by it or by a flush from another thread
+        private Event[] batch = new Event[BATCH_SIZE];
+        private int batchSize = 0;
+        private long submitted = 0;
+        private volatile Throwable failure;
+
+        private Lane(String name) {
+            this.name = name;
+            this.thread = new Thread(this, "ev-events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void addHandler(EventHandler handler) {
+            for (Class<?> handlerInterface : allInterfaces(handler.getClass())) {
+                if (handlerInterface == EventHandler.class || handlerInterface == MobsimScopeEventHandler.class
+                        || !EventHandler.class.isAssignableFrom(handlerInterface)) {
+                    continue;
+                }
+                Subscription<?, ?> subscription = SUBSCRIPTIONS.stream()
+                        .filter(s -> s.handlerType() == handlerInterface)
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException(handlerInterface.getName() + " of "
+                                + handler.getClass().getName() + " is not supported on the ev event lanes"));
+                callsByEventType.computeIfAbsent(subscription.eventType(), type -> new ArrayList<>())
+                        .add(subscription.bindTo(handler));
+            }
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private synchronized void add(Event event) {
+            checkFailure();
+            batch[batchSize++] = event;
+            if (batchSize == BATCH_SIZE) {
+                submitBatch();
+            }
+        }
+
+        /**
+         * @return the number of events submitted so far
+         */
+        private synchronized long submitBatch() {
+            checkFailure();
+            if (batchSize > 0) {
+                Event[] full = batchSize == BATCH_SIZE ? batch : Arrays.copyOf(batch, batchSize);
+                submitted += batchSize;
+                put(full);
+                batch = new Event[BATCH_SIZE];
+                batchSize = 0;
+            }
+            return submitted;
+        }
+
+        /**
+         * Waits for space in the queue only as long as the lane thread is alive, which a failed handler ends.
+         */
+        private void put(Event[] events) {
+            try {
+                while (!queue.offer(events, 10, TimeUnit.MILLISECONDS)) {
+                    checkFailure();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void checkFailure() {
+            if (failure != null) {
+                throw new RuntimeException("exception in ev event lane " + name, failure);
+            }
+        }
+
+        private void awaitProcessed(long count) {
+            while (processed.get() < count && failure == null) {
+                LockSupport.parkNanos(10_000);
+            }
+            checkFailure();
+        }
+
+        private void stop() {
+            checkFailure();
+            put(POISON);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Event[] events = queue.take();
+                    if (events == POISON) {
+                        return;
+                    }
+                    for (Event event : events) {
+                        for (Consumer<Event> call : callsByEventType.get(event.getClass())) {
+                            call.accept(event);
+                        }
+                    }
+                    processed.addAndGet(events.length);
+                }
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+
+    private static Set<Class<?>> allInterfaces(Class<?> type) {
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Class<?> i : c.getInterfaces()) {
+                collectInterfaces(i, interfaces);
+            }
+        }
+        return interfaces;
+    }
+
+    private static void collectInterfaces(Class<?> type, Set<Class<?>> interfaces) {
+        if (interfaces.add(type)) {
+            for (Class<?> i : type.getInterfaces()) {
+                collectInterfaces(i, interfaces);
+            }
+        }
+    }
+}
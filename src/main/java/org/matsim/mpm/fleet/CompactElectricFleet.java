@@ -0,0 +1,178 @@
+package org.matsim.mpm.fleet;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.ev.charging.ChargingPower;
+import org.matsim.contrib.ev.discharging.AuxEnergyConsumption;
+import org.matsim.contrib.ev.discharging.DriveEnergyConsumption;
+import org.matsim.contrib.ev.fleet.Battery;
+import org.matsim.contrib.ev.fleet.ElectricFleet;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.contrib.ev.fleet.ElectricVehicle;
+import org.matsim.contrib.ev.fleet.ElectricVehicleSpecification;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link ElectricFleet} keeping the vehicle state in primitive arrays. The vehicles handed out are flyweight views
+ * (one small object per vehicle, serving as {@link ElectricVehicle} and {@link Battery} at the same time).
+ * <p>
+ * Heap per vehicle, 64-bit JVM with compressed oops, not counting the specification and the map entry, which both
+ * implementations need:
+ * <ul>
+ *     <li>default fleet: vehicle (~40 B), battery (~32 B), drive and aux consumption (~16-24 B each), charging power
+ *     (~24 B), i.e. about 130 B in 5 objects</li>
+ *     <li>this fleet: charge and capacity (16 B), vehicle type index (4 B), view (~24 B), charging power slot (4 B),
+ *     i.e. about 48 B in 1 object. The charging power object (~24 B) is only created for vehicles that actually
+ *     charge.</li>
+ * </ul>
+ * so roughly 80 B and 4 objects less per truck. Drive and aux consumption models are created once per vehicle type
+ * (for the first vehicle of that type), which is fine for {@link org.matsim.mpm.discharging.BetDriveEnergyConsumption}
+ * and the aux consumption at a fixed temperature, but not for models with per-vehicle state.
+ */
+public final class CompactElectricFleet implements ElectricFleet {
+    private final ElectricVehicleSpecification[] specifications;
+    private final double[] charge;
+    private final double[] capacity;
+    private final int[] vehicleTypeIndex;
+    private final AtomicReferenceArray<ChargingPower> chargingPower;
+
+    private final List<ImmutableList<String>> chargerTypes = new ArrayList<>();
+    private final List<DriveEnergyConsumption> driveConsumptions = new ArrayList<>();
+    private final List<AuxEnergyConsumption> auxConsumptions = new ArrayList<>();
+
+    private final ChargingPower.Factory chargingPowerFactory;
+    private final ImmutableMap<Id<Vehicle>, ElectricVehicle> vehicles;
+
+    public CompactElectricFleet(ElectricFleetSpecification fleetSpecification,
+                                DriveEnergyConsumption.Factory driveConsumptionFactory,
+                                AuxEnergyConsumption.Factory auxConsumptionFactory,
+                                ChargingPower.Factory chargingPowerFactory) {
+        this.chargingPowerFactory = chargingPowerFactory;
+        int size = fleetSpecification.getVehicleSpecifications().size();
+        specifications = new ElectricVehicleSpecification[size];
+        charge = new double[size];
+        capacity = new double[size];
+        vehicleTypeIndex = new int[size];
+        chargingPower = new AtomicReferenceArray<>(size);
+
+        Map<Id<VehicleType>, Integer> typeIndices = new HashMap<>();
+        ImmutableMap.Builder<Id<Vehicle>, ElectricVehicle> builder = ImmutableMap.builderWithExpectedSize(size);
+        int i = 0;
+        for (ElectricVehicleSpecification specification : fleetSpecification.getVehicleSpecifications().values()) {
+            specifications[i] = specification;
+            capacity[i] = specification.getBatteryCapacity();
+            charge[i] = specification.getInitialCharge();
+
+            View view = new View(i);
+            vehicleTypeIndex[i] = typeIndices.computeIfAbsent(specification.getMatsimVehicle().getType().getId(), id -> {
+                chargerTypes.add(specification.getChargerTypes());
+                driveConsumptions.add(driveConsumptionFactory.create(view));
+                auxConsumptions.add(auxConsumptionFactory.create(view));
+                return chargerTypes.size() - 1;
+            });
+            builder.put(specification.getId(), view);
+            i++;
+        }
+        vehicles = builder.build();
+    }
+
+    @Override
+    public ImmutableMap<Id<Vehicle>, ElectricVehicle> getElectricVehicles() {
+        return vehicles;
+    }
+
+    private final class View implements ElectricVehicle, Battery {
+        private final int index;
+
+        private View(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Id<Vehicle> getId() {
+            return specifications[index].getId();
+        }
+
+        @Override
+        public DriveEnergyConsumption getDriveEnergyConsumption() {
+            return driveConsumptions.get(vehicleTypeIndex[index]);
+        }
+
+        @Override
+        public AuxEnergyConsumption getAuxEnergyConsumption() {
+            return auxConsumptions.get(vehicleTypeIndex[index]);
+        }
+
+        @Override
+        public ChargingPower getChargingPower() {
+            ChargingPower power = chargingPower.get(index);
+            if (power == null) {
+                // also called from the threads of the parallel charging step; the first one created wins
+                ChargingPower created = chargingPowerFactory.create(this);
+                power = chargingPower.compareAndExchange(index, null, created);
+                if (power == null) {
+                    power = created;
+                }
+            }
+            return power;
+        }
+
+        @Override
+        public Battery getBattery() {
+            return this;
+        }
+
+        @Override
+        public ImmutableList<String> getChargerTypes() {
+            return chargerTypes.get(vehicleTypeIndex[index]);
+        }
+
+        @Override
+        public ElectricVehicleSpecification getVehicleSpecification() {
+            return specifications[index];
+        }
+
+        @Override
+        public double getCapacity() {
+            return capacity[index];
+        }
+
+        @Override
+        public double getCharge() {
+            return charge[index];
+        }
+
+        @Override
+        public void setCharge(double charge) {
+            Preconditions.checkArgument(charge >= 0 && charge <= capacity[index],
+                    "Charge outside allowed range (SOC=%s)", charge / capacity[index]);
+            CompactElectricFleet.this.charge[index] = charge;
+        }
+
+        public double getSoc() {
+            return charge[index] / capacity[index];
+        }
+
+        public void setSoc(double soc) {
+            setCharge(soc * capacity[index]);
+        }
+
+        public void changeCharge(double energy) {
+            setCharge(Math.max(0, Math.min(charge[index] + energy, capacity[index])));
+        }
+
+        @Override
+        public String toString() {
+            return "CompactElectricVehicle[" + getId() + "]";
+        }
+    }
+}
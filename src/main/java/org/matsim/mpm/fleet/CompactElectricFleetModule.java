@@ -0,0 +1,38 @@
+package org.matsim.mpm.fleet;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import org.matsim.contrib.ev.charging.ChargingPower;
+import org.matsim.contrib.ev.discharging.AuxEnergyConsumption;
+import org.matsim.contrib.ev.discharging.DriveEnergyConsumption;
+import org.matsim.contrib.ev.fleet.ElectricFleet;
+import org.matsim.contrib.ev.fleet.ElectricFleetModule;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+
+/**
+ * Replaces the {@link ElectricFleet} bound by the {@link ElectricFleetModule} with a {@link CompactElectricFleet}.
+ * Everything else of the {@link ElectricFleetModule} (specification, soc transfer etc.) is kept, so this is installed
+ * via {@code installOverridingQSimModule}.
+ */
+public final class CompactElectricFleetModule extends AbstractQSimModule {
+    @Override
+    protected void configureQSim() {
+        bind(ElectricFleet.class).toProvider(new Provider<>() {
+            @Inject
+            private ElectricFleetSpecification fleetSpecification;
+            @Inject
+            private DriveEnergyConsumption.Factory driveConsumptionFactory;
+            @Inject
+            private AuxEnergyConsumption.Factory auxConsumptionFactory;
+            @Inject
+            private ChargingPower.Factory chargingPowerFactory;
+
+            @Override
+            public ElectricFleet get() {
+                return new CompactElectricFleet(fleetSpecification, driveConsumptionFactory, auxConsumptionFactory,
+                        chargingPowerFactory);
+            }
+        }).asEagerSingleton();
+    }
+}
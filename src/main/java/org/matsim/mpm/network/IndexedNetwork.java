@@ -0,0 +1,94 @@
+package org.matsim.mpm.network;
+
+import com.google.inject.Inject;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The links and nodes of a network in arrays by {@link Id#index()}, with the allowed modes of every link (and the modes
+ * of the links at every node) as bitmask. {@link #getModeView} gives the single mode networks as {@link ModeNetworkView}
+ * on these arrays, in place of the copies made with the
+ * {@link org.matsim.core.network.algorithms.TransportModeNetworkFilter} and kept in the
+ * {@link org.matsim.core.router.SingleModeNetworksCache}.
+ * <p>
+ * The arrays are filled once in the constructor and not changed afterwards, so the views can be created and used from
+ * any thread. Changes of the underlying network after that (added links, changed allowed modes) are not seen.
+ */
+public final class IndexedNetwork {
+    static final int MAX_MODES = Long.SIZE;
+
+    private final Network network;
+    private final Link[] links;
+    private final long[] linkModes;
+    private final Node[] nodes;
+    private final long[] nodeModes;
+    private final Map<String, Long> modeBits = new HashMap<>();
+    private final ConcurrentMap<String, ModeNetworkView> views = new ConcurrentHashMap<>();
+
+    @Inject
+    public IndexedNetwork(Network network) {
+        this.network = network;
+        links = new Link[Id.getNumberOfIds(Link.class)];
+        linkModes = new long[links.length];
+        nodes = new Node[Id.getNumberOfIds(Node.class)];
+        nodeModes = new long[nodes.length];
+
+        for (Link link : network.getLinks().values()) {
+            long mask = 0;
+            for (String mode : link.getAllowedModes()) {
+                mask |= modeBits.computeIfAbsent(mode, m -> {
+                    if (modeBits.size() == MAX_MODES) {
+                        throw new IllegalStateException("more than " + MAX_MODES + " modes in the network");
+                    }
+                    return 1L << modeBits.size();
+                });
+            }
+            int index = link.getId().index();
+            links[index] = link;
+            linkModes[index] = mask;
+            addNode(link.getFromNode(), mask);
+            addNode(link.getToNode(), mask);
+        }
+    }
+
+    private void addNode(Node node, long mask) {
+        int index = node.getId().index();
+        nodes[index] = node;
+        nodeModes[index] |= mask;
+    }
+
+    /**
+     * Links allowing the mode and their from and to nodes, same as a network filtered for the mode. The view is created
+     * once per mode, so path calculator factories caching their graph per network reuse it.
+     */
+    public ModeNetworkView getModeView(String mode) {
+        return views.computeIfAbsent(mode, m -> new ModeNetworkView(this, m, modeBits.getOrDefault(m, 0L)));
+    }
+
+    Network getNetwork() {
+        return network;
+    }
+
+    Link[] getLinks() {
+        return links;
+    }
+
+    long[] getLinkModes() {
+        return linkModes;
+    }
+
+    Node[] getNodes() {
+        return nodes;
+    }
+
+    long[] getNodeModes() {
+        return nodeModes;
+    }
+}
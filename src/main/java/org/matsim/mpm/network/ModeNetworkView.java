@@ -0,0 +1,211 @@
+package org.matsim.mpm.network;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Identifiable;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+import java.util.*;
+
+/**
+ * Read-only single mode network on an {@link IndexedNetwork}. The links and nodes are those of the full network
+ * (nothing is copied), so {@link Node#getOutLinks()} and {@link Node#getInLinks()} still contain links of other modes.
+ * This is fine for the Speedy path calculators (default in MATSim, they build their graph from {@link #getLinks()})
+ * and for the ev routing; code that walks the graph through the nodes, e.g. the classic Dijkstra, needs a filtered
+ * copy instead.
+ */
+public final class ModeNetworkView implements Network {
+    private final IndexedNetwork indexedNetwork;
+    private final String mode;
+    private final Map<Id<Link>, Link> links;
+    private final Map<Id<Node>, Node> nodes;
+
+    ModeNetworkView(IndexedNetwork indexedNetwork, String mode, long modeBit) {
+        this.indexedNetwork = indexedNetwork;
+        this.mode = mode;
+        this.links = new MaskedMap<>(indexedNetwork.getLinks(), indexedNetwork.getLinkModes(), modeBit);
+        this.nodes = new MaskedMap<>(indexedNetwork.getNodes(), indexedNetwork.getNodeModes(), modeBit);
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    @Override
+    public Map<Id<Node>, ? extends Node> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public Map<Id<Link>, ? extends Link> getLinks() {
+        return links;
+    }
+
+    @Override
+    public NetworkFactory getFactory() {
+        return indexedNetwork.getNetwork().getFactory();
+    }
+
+    @Override
+    public double getCapacityPeriod() {
+        return indexedNetwork.getNetwork().getCapacityPeriod();
+    }
+
+    @Override
+    public double getEffectiveLaneWidth() {
+        return indexedNetwork.getNetwork().getEffectiveLaneWidth();
+    }
+
+    @Override
+    public double getEffectiveCellSize() {
+        return indexedNetwork.getNetwork().getEffectiveCellSize();
+    }
+
+    @Override
+    public String getName() {
+        return indexedNetwork.getNetwork().getName() + " (" + mode + ")";
+    }
+
+    @Override
+    public Attributes getAttributes() {
+        return indexedNetwork.getNetwork().getAttributes();
+    }
+
+    @Override
+    public void addNode(Node nn) {
+        throw new UnsupportedOperationException("mode views are read-only");
+    }
+
+    @Override
+    public void addLink(Link ll) {
+        throw new UnsupportedOperationException("mode views are read-only");
+    }
+
+    @Override
+    public Node removeNode(Id<Node> nodeId) {
+        throw new UnsupportedOperationException("mode views are read-only");
+    }
+
+    @Override
+    public Link removeLink(Id<Link> linkId) {
+        throw new UnsupportedOperationException("mode views are read-only");
+    }
+
+    @Override
+    public void setCapacityPeriod(double capPeriod) {
+        throw new UnsupportedOperationException("mode views are read-only");
+    }
+
+    @Override
+    public void setEffectiveCellSize(double effectiveCellSize) {
+        throw new UnsupportedOperationException("mode views are read-only");
+    }
+
+    @Override
+    public void setEffectiveLaneWidth(double effectiveLaneWidth) {
+        throw new UnsupportedOperationException("mode views are read-only");
+    }
+
+    @Override
+    public void setName(String name) {
+        throw new UnsupportedOperationException("mode views are read-only");
+    }
+
+    @Override
+    public String toString() {
+        return "[ModeNetworkView: mode=" + mode + ", links=" + links.size() + ", nodes=" + nodes.size() + "]";
+    }
+
+    /**
+     * Entries of an array by id index with the mode bit set. Iterates in index order, i.e. in order of id creation.
+     */
+    private static final class MaskedMap<T extends Identifiable<T>> extends AbstractMap<Id<T>, T> {
+        private final T[] elements;
+        private final long[] masks;
+        private final long modeBit;
+        private final int size;
+        private final Set<Entry<Id<T>, T>> entrySet = new EntrySet();
+
+        private MaskedMap(T[] elements, long[] masks, long modeBit) {
+            this.elements = elements;
+            this.masks = masks;
+            this.modeBit = modeBit;
+            int count = 0;
+            for (int i = 0; i < elements.length; i++) {
+                if ((masks[i] & modeBit) != 0) {
+                    count++;
+                }
+            }
+            this.size = count;
+        }
+
+        @Override
+        public T get(Object key) {
+            if (!(key instanceof Id<?> id)) {
+                return null;
+            }
+            int index = id.index();
+            if (index >= elements.length || (masks[index] & modeBit) == 0) {
+                return null;
+            }
+            T element = elements[index];
+            // ids of other types may have the same index
+            return element.getId() == id ? element : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<Id<T>, T>> entrySet() {
+            return entrySet;
+        }
+
+        private final class EntrySet extends AbstractSet<Entry<Id<T>, T>> {
+            @Override
+            public Iterator<Entry<Id<T>, T>> iterator() {
+                return new Iterator<>() {
+                    private int next = advance(0);
+
+                    private int advance(int from) {
+                        int i = from;
+                        while (i < elements.length && (masks[i] & modeBit) == 0) {
+                            i++;
+                        }
+                        return i;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < elements.length;
+                    }
+
+                    @Override
+                    public Entry<Id<T>, T> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        T element = elements[next];
+                        next = advance(next + 1);
+                        return new SimpleImmutableEntry<>(element.getId(), element);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.matsim.mpm.routing;
+
+import com.google.inject.Inject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargerSpecification;
+import org.matsim.core.config.Config;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.stats.ChargerQueuingCollector;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Time-binned forecast of the waiting time at each charger, shared by all routing threads.
+ * <p>
+ * It combines two things: the mean waiting time per arrival observed in the previous mobsim (seeded from the
+ * {@link ChargerQueuingCollector}; arrivals without waiting count with 0), and the charging slots booked by the trips routed since then. Bookings are
+ * atomic increments, so routing threads never block each other. Bookings beyond the plug count add the expected
+ * additional wait. The bookings are cleared whenever a new observation is seeded, since the observation then contains
+ * the load of all trips that kept their plans.
+ */
+public final class ChargerOccupancyForecast {
+    private static final Logger log = LogManager.getLogger(ChargerOccupancyForecast.class);
+
+    private static final double HORIZON = 3 * 24 * 3600;// BET plans go beyond 48:00:00
+
+    private final double binSize;
+    private final int binCount;
+
+    private final Map<Id<Charger>, AtomicIntegerArray> bookings = new ConcurrentHashMap<>();
+    private volatile Map<Id<Charger>, double[]> observedWaits = Map.of();
+
+    @Inject
+    ChargerOccupancyForecast(Config config) {
+        this(MpmEvConfigGroup.get(config).chargerForecastBinSize);
+    }
+
+    ChargerOccupancyForecast(double binSize) {
+        this.binSize = binSize;
+        this.binCount = (int)Math.ceil(HORIZON / binSize);
+    }
+
+    private int bin(double time) {
+        return Math.max(0, Math.min(binCount - 1, (int)(time / binSize)));
+    }
+
+    /**
+     * @return expected waiting time (in seconds) for a vehicle arriving at {@code arrivalTime} and occupying a plug for
+     * {@code duration}
+     */
+    public double getExpectedWaitTime(ChargerSpecification charger, double arrivalTime, double duration) {
+        double[] observed = observedWaits.get(charger.getId());
+        double wait = observed == null ? 0 : observed[bin(arrivalTime)];
+
+        AtomicIntegerArray booked = bookings.get(charger.getId());
+        if (booked != null) {
+            int maxBooked = 0;
+            for (int b = bin(arrivalTime), last = bin(arrivalTime + duration); b <= last; b++) {
+                maxBooked = Math.max(maxBooked, booked.get(b));
+            }
+            int excess = maxBooked + 1 - charger.getPlugCount();
+            if (excess > 0) {
+                wait += excess * duration / charger.getPlugCount();
+            }
+        }
+        return wait;
+    }
+
+    public void book(ChargerSpecification charger, double arrivalTime, double duration) {
+        AtomicIntegerArray booked = bookings.computeIfAbsent(charger.getId(), id -> new AtomicIntegerArray(binCount));
+        for (int b = bin(arrivalTime), last = bin(arrivalTime + duration); b <= last; b++) {
+            booked.incrementAndGet(b);
+        }
+    }
+
+    /**
+     * Replaces the observed waiting times and clears all bookings. Not to be called while routing.
+     */
+    public void seed(List<ChargerQueuingCollector.ChargerVisit> visits) {
+        Map<Id<Charger>, double[]> sums = new HashMap<>();
+        Map<Id<Charger>, int[]> counts = new HashMap<>();
+        for (ChargerQueuingCollector.ChargerVisit visit : visits) {
+            int b = bin(visit.arrivalTime());
+            sums.computeIfAbsent(visit.chargerId(), id -> new double[binCount])[b] += visit.wait();
+            counts.computeIfAbsent(visit.chargerId(), id -> new int[binCount])[b]++;
+        }
+        Map<Id<Charger>, double[]> means = new HashMap<>();
+        sums.forEach((chargerId, sum) -> {
+            int[] count = counts.get(chargerId);
+            double[] mean = new double[binCount];
+            for (int b = 0; b < binCount; b++) {
+                mean[b] = count[b] == 0 ? 0 : sum[b] / count[b];
+            }
+            means.put(chargerId, mean);
+        });
+        observedWaits = means;
+        bookings.clear();
+        log.info("charger forecast seeded with " + visits.size() + " arrivals at " + means.size() + " chargers");
+    }
+}
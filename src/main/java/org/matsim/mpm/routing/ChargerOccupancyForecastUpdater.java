@@ -0,0 +1,25 @@
+package org.matsim.mpm.routing;
+
+import com.google.inject.Inject;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.mpm.stats.ChargerQueuingCollector;
+
+/**
+ * Feeds the waiting times of the mobsim into the {@link ChargerOccupancyForecast} for the next replanning.
+ */
+public class ChargerOccupancyForecastUpdater implements MobsimBeforeCleanupListener {
+    private final ChargerQueuingCollector chargerQueuingCollector;
+    private final ChargerOccupancyForecast forecast;
+
+    @Inject
+    ChargerOccupancyForecastUpdater(ChargerQueuingCollector chargerQueuingCollector, ChargerOccupancyForecast forecast) {
+        this.chargerQueuingCollector = chargerQueuingCollector;
+        this.forecast = forecast;
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        forecast.seed(chargerQueuingCollector.getVisits());
+    }
+}
@@ -0,0 +1,215 @@
+package org.matsim.mpm.routing;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.AbstractRoute;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactory;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * {@link NetworkRoute} keeping the links as {@code int[]} of {@link Id#index()} instead of a list of ids, i.e. 4 bytes
+ * per link instead of a reference plus the list overhead. {@link #getLinkIds()} is a random access view on the array,
+ * as the mobsim looks up the next link by position in every link transition.
+ * <p>
+ * Same route type ({@code links}) and description as the default network route, so plans files do not change. With
+ * {@link #useFor(Scenario)} before the plans are read, the reader, the routers and the replanning create these routes
+ * for the whole run.
+ */
+public final class CompactNetworkRoute extends AbstractRoute implements NetworkRoute {
+    static final String ROUTE_TYPE = "links";
+    private static final int[] NO_LINKS = new int[0];
+
+    private int[] linkIndices = NO_LINKS;
+    private double travelCost = Double.NaN;
+    private Id<Vehicle> vehicleId = null;
+
+    CompactNetworkRoute(Id<Link> startLinkId, Id<Link> endLinkId) {
+        super(startLinkId, endLinkId);
+    }
+
+    /**
+     * Makes the population factory of the scenario create compact routes for {@link NetworkRoute}. Has to be called
+     * before the plans are read.
+     */
+    public static void useFor(Scenario scenario) {
+        scenario.getPopulation().getFactory().getRouteFactories().setRouteFactory(NetworkRoute.class, new Factory());
+    }
+
+    @Override
+    public CompactNetworkRoute clone() {
+        CompactNetworkRoute cloned = (CompactNetworkRoute)super.clone();
+        // the array is never modified, only replaced
+        return cloned;
+    }
+
+    @Override
+    public List<Id<Link>> getLinkIds() {
+        return new LinkIds(linkIndices);
+    }
+
+    @Override
+    public void setLinkIds(Id<Link> startLinkId, List<Id<Link>> linkIds, Id<Link> endLinkId) {
+        int[] indices = new int[linkIds == null ? 0 : linkIds.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = linkIds.get(i).index();
+        }
+        linkIndices = indices;
+        setStartLinkId(startLinkId);
+        setEndLinkId(endLinkId);
+    }
+
+    @Override
+    public NetworkRoute getSubRoute(Id<Link> fromLinkId, Id<Link> toLinkId) {
+        // positions in start, links..., end
+        int last = linkIndices.length + 1;
+        int fromPosition = -1;
+        for (int p = 0; p <= last && fromPosition < 0; p++) {
+            if (linkAt(p) == fromLinkId) {
+                fromPosition = p;
+            }
+        }
+        int toPosition = -1;
+        for (int p = Math.max(fromPosition, 0); p <= last && toPosition < 0; p++) {
+            if (linkAt(p) == toLinkId) {
+                toPosition = p;
+            }
+        }
+        if (fromPosition < 0 || toPosition < 0) {
+            throw new IllegalArgumentException("link " + (fromPosition < 0 ? fromLinkId : toLinkId) + " is not part of the route "
+                    + getRouteDescription());
+        }
+        CompactNetworkRoute subRoute = new CompactNetworkRoute(fromLinkId, toLinkId);
+        if (toPosition > fromPosition + 1) {
+            subRoute.linkIndices = Arrays.copyOfRange(linkIndices, fromPosition, toPosition - 1);
+        }
+        subRoute.vehicleId = vehicleId;
+        return subRoute;
+    }
+
+    private Id<Link> linkAt(int position) {
+        if (position == 0) {
+            return getStartLinkId();
+        }
+        return position <= linkIndices.length ? Id.get(linkIndices[position - 1], Link.class) : getEndLinkId();
+    }
+
+    @Override
+    public double getTravelCost() {
+        return travelCost;
+    }
+
+    @Override
+    public void setTravelCost(double travelCost) {
+        this.travelCost = travelCost;
+    }
+
+    @Override
+    public Id<Vehicle> getVehicleId() {
+        return vehicleId;
+    }
+
+    @Override
+    public void setVehicleId(Id<Vehicle> vehicleId) {
+        this.vehicleId = vehicleId;
+    }
+
+    @Override
+    public String getRouteType() {
+        return ROUTE_TYPE;
+    }
+
+    /**
+     * Start link, links and end link, separated by spaces; the end link is left out for a route without links from a
+     * link to itself. Same as the default network route.
+     */
+    @Override
+    public String getRouteDescription() {
+        StringBuilder description = new StringBuilder(16 * (linkIndices.length + 2));
+        description.append(getStartLinkId());
+        for (int index : linkIndices) {
+            description.append(' ').append(Id.get(index, Link.class));
+        }
+        if (!getEndLinkId().equals(getStartLinkId()) || linkIndices.length > 0) {
+            description.append(' ').append(getEndLinkId());
+        }
+        return description.toString();
+    }
+
+    /**
+     * Parses the ids straight into the index array, without an intermediate list of ids.
+     */
+    @Override
+    public void setRouteDescription(String routeDescription) {
+        int[] indices = new int[16];
+        int count = 0;
+        int length = routeDescription.length();
+        int position = 0;
+        while (position < length) {
+            while (position < length && Character.isWhitespace(routeDescription.charAt(position))) {
+                position++;
+            }
+            int start = position;
+            while (position < length && !Character.isWhitespace(routeDescription.charAt(position))) {
+                position++;
+            }
+            if (position > start) {
+                if (count == indices.length) {
+                    indices = Arrays.copyOf(indices, 2 * count);
+                }
+                indices[count++] = Id.createLinkId(routeDescription.substring(start, position)).index();
+            }
+        }
+        if (count == 0) {
+            linkIndices = NO_LINKS;
+            return;
+        }
+        setStartLinkId(Id.get(indices[0], Link.class));
+        if (count > 1) {
+            setEndLinkId(Id.get(indices[count - 1], Link.class));
+        }
+        linkIndices = count > 2 ? Arrays.copyOfRange(indices, 1, count - 1) : NO_LINKS;
+    }
+
+    @Override
+    public String toString() {
+        return "[CompactNetworkRoute: " + getRouteDescription() + "]";
+    }
+
+    private static final class LinkIds extends AbstractList<Id<Link>> implements RandomAccess {
+        private final int[] indices;
+
+        private LinkIds(int[] indices) {
+            this.indices = indices;
+        }
+
+        @Override
+        public Id<Link> get(int i) {
+            return Id.get(indices[i], Link.class);
+        }
+
+        @Override
+        public int size() {
+            return indices.length;
+        }
+    }
+
+    public static final class Factory implements RouteFactory {
+        @Override
+        public Route createRoute(Id<Link> startLinkId, Id<Link> endLinkId) {
+            return new CompactNetworkRoute(startLinkId, endLinkId);
+        }
+
+        @Override
+        public String getCreatedRouteType() {
+            return ROUTE_TYPE;
+        }
+    }
+}
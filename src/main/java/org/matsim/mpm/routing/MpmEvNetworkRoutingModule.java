@@ -48,7 +48,9 @@ import org.matsim.core.router.RoutingRequest;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.facilities.Facility;
+import org.matsim.mpm.discharging.BulkEnergyConsumption;
 import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
 
 import java.util.*;
 
@@ -62,7 +64,7 @@ import static org.matsim.api.core.v01.TransportMode.car;
  * @author jfbischoff
  */
 
-final class MpmEvNetworkRoutingModule implements RoutingModule {
+public final class MpmEvNetworkRoutingModule implements RoutingModule {
 
     private final String mode;
 
@@ -75,22 +77,32 @@ final class MpmEvNetworkRoutingModule implements RoutingModule {
     private final DriveEnergyConsumption.Factory driveConsumptionFactory;
     private final AuxEnergyConsumption.Factory auxConsumptionFactory;
     private final String stageActivityModePrefix;
-    private final String vehicleSuffix;
     private final EvConfigGroup evConfigGroup;
-    private static final double MIN_SOC = 0.2; // Minimum State of Charge
+    private final boolean shareConsumptionModelsPerVehicleType;
+    private final Map<Id<VehicleType>, ElectricVehicle> pseudoVehiclesByType = new HashMap<>();
+    private final BulkEnergyConsumption.Factory bulkConsumptionFactory; // null: evaluate the consumption link by link
+    private final Map<Id<VehicleType>, Optional<BulkEnergyConsumption>> bulkConsumptionsByType = new HashMap<>();
+    private double[] linkLengths = new double[0];
+    private double[] linkTravelTimes = new double[0];
+    private double[] linkConsumptions = new double[0];
+    private final ChargerOccupancyForecast chargerOccupancyForecast; // null: always take the nearest charger
+    private final int chargerChoiceCandidates;
+    public static final double MIN_SOC = 0.2; // Minimum State of Charge
     private static final double MAX_DRIVE_TIME_WITHOUT_BREAK = 4.5 * 60 * 60; // Maximum driving time without a break in seconds
     private static final double MAX_OVERALL_DRIVE_TIME_PER_TRIP = 6 * 60 * 60; // Maximum overall allowed driving time in one go in seconds
     private static final double MAX_OVERALL_DRIVE_TIME_PER_DAY = 9 * 60 * 60; // Maximum overall allowed driving time per day in seconds
-    private static final double BREAK_DURATION = 45 * 60; // in seconds
+    public static final double BREAK_DURATION = 45 * 60; // in seconds
     private static final double REST_DURATION = 11 * 60 * 60; // in seconds
     private static final double CHARGER_POWER = 640 * 1000; // in Watt
-    private static final double MAX_VEHICLE_SPEED = 18.056; // in m/s (65 km/h)
+    public static final double MAX_VEHICLE_SPEED = 18.056; // in m/s (65 km/h)
 
     MpmEvNetworkRoutingModule(final String mode, final Network network, RoutingModule delegate,
                               ElectricFleetSpecification electricFleet,
                               ChargingInfrastructureSpecification chargingInfrastructureSpecification, TravelTime travelTime,
                               DriveEnergyConsumption.Factory driveConsumptionFactory, AuxEnergyConsumption.Factory auxConsumptionFactory,
-                              EvConfigGroup evConfigGroup) {
+                              EvConfigGroup evConfigGroup, boolean shareConsumptionModelsPerVehicleType,
+                              ChargerOccupancyForecast chargerOccupancyForecast, int chargerChoiceCandidates,
+                              BulkEnergyConsumption.Factory bulkConsumptionFactory) {
         this.travelTime = travelTime;
         Gbl.assertNotNull(network);
         this.delegate = delegate;
@@ -102,7 +114,18 @@ final class MpmEvNetworkRoutingModule implements RoutingModule {
         this.auxConsumptionFactory = auxConsumptionFactory;
         stageActivityModePrefix = mode + VehicleChargingHandler.CHARGING_IDENTIFIER;
         this.evConfigGroup = evConfigGroup;
-        this.vehicleSuffix = mode.equals(car) ? "" : "_" + mode;
+        this.shareConsumptionModelsPerVehicleType = shareConsumptionModelsPerVehicleType;
+        this.chargerOccupancyForecast = chargerOccupancyForecast;
+        this.chargerChoiceCandidates = chargerChoiceCandidates;
+        this.bulkConsumptionFactory = bulkConsumptionFactory;
+    }
+
+    /**
+     * @return the id of the ev the routing looks up for a person: the person id, with {@code _<mode>} appended for
+     * network modes other than car
+     */
+    public static Id<Vehicle> getVehicleId(Id<Person> personId, String mode) {
+        return Id.create(personId + (mode.equals(car) ? "" : "_" + mode), Vehicle.class);
     }
 
     @Override
@@ -113,7 +136,7 @@ final class MpmEvNetworkRoutingModule implements RoutingModule {
         final Person person = request.getPerson();
 
         List<? extends PlanElement> basicRoute = delegate.calcRoute(request);
-        Id<Vehicle> evId = Id.create(person.getId() + vehicleSuffix, Vehicle.class);
+        Id<Vehicle> evId = getVehicleId(person.getId(), mode);
         if (!electricFleet.getVehicleSpecifications().containsKey(evId)) {
             return basicRoute;
         } else {
@@ -317,15 +340,23 @@ final class MpmEvNetworkRoutingModule implements RoutingModule {
             Facility lastFrom = fromFacility;
             double lastArrivaltime = departureTime;
 
-            for (Link stopLocation : stopLocations) {
+            for (int stopIndex = 0; stopIndex < stopLocations.size(); stopIndex++) {
+                Link stopLocation = stopLocations.get(stopIndex);
                 StraightLineKnnFinder<Link, ChargerSpecification> straightLineKnnFinder = new StraightLineKnnFinder<>(
-                        2, Link::getCoord, s -> network.getLinks().get(s.getLinkId()).getCoord());
+                        chargerOccupancyForecast == null ? 2 : chargerChoiceCandidates, Link::getCoord, s -> network.getLinks().get(s.getLinkId()).getCoord());
                 List<ChargerSpecification> nearestChargers = straightLineKnnFinder.findNearest(stopLocation, // Auswahl nächstgelegener Charger
                         chargingInfrastructureSpecification.getChargerSpecifications()
                                 .values()
                                 .stream()
                                 .filter(charger -> ev.getChargerTypes().contains(charger.getChargerType())));
-                ChargerSpecification selectedCharger = nearestChargers.get(random.nextInt(1));
+                ChargerSpecification selectedCharger;
+                if (chargerOccupancyForecast == null) {
+                    selectedCharger = nearestChargers.get(random.nextInt(1));
+                } else {
+                    // rough arrival time at the stop: driving time of the basic route plus the breaks taken before
+                    double expectedArrival = departureTime + driveTimeUntil(estimatedTravelTime, stopLocation) + stopIndex * BREAK_DURATION;
+                    selectedCharger = chooseCharger(nearestChargers, stopLocation, expectedArrival);
+                }
                 Link selectedChargerLink = network.getLinks().get(selectedCharger.getLinkId());
                 Facility nexttoFacility = new LinkWrapperFacility(selectedChargerLink);
                 if (nexttoFacility.getLinkId().equals(lastFrom.getLinkId())) {
@@ -350,6 +381,9 @@ final class MpmEvNetworkRoutingModule implements RoutingModule {
                             selectedChargerLink.getId(), stageActivityModePrefix);
                     chargeAct = PopulationUtils.createActivity(chargeAct);
                     chargeAct.setMaximumDuration(BREAK_DURATION);
+                    if (chargerOccupancyForecast != null) {
+                        chargerOccupancyForecast.book(selectedCharger, lastArrivaltime, BREAK_DURATION);
+                    }
                     lastArrivaltime += chargeAct.getMaximumDuration().seconds();
                     stagedRoute.add(chargeAct);
                     lastFrom = nexttoFacility;
@@ -368,10 +402,29 @@ final class MpmEvNetworkRoutingModule implements RoutingModule {
         Map<Link, Double> consumptions = new LinkedHashMap<>();
         NetworkRoute route = (NetworkRoute)basicLeg.getRoute();
         List<Link> links = NetworkUtils.getLinks(network, route.getLinkIds());
-        ElectricVehicle pseudoVehicle = ElectricFleetUtils.create(ev, driveConsumptionFactory, auxConsumptionFactory,
-                v -> charger -> {
-                    throw new UnsupportedOperationException();
-                } );
+        ElectricVehicle pseudoVehicle = shareConsumptionModelsPerVehicleType ?
+                pseudoVehiclesByType.computeIfAbsent(ev.getMatsimVehicle().getType().getId(), type -> createPseudoVehicle(ev)) :
+                createPseudoVehicle(ev);
+        BulkEnergyConsumption bulkConsumption = getBulkConsumption(ev, pseudoVehicle);
+        if (bulkConsumption != null) {
+            // same as below, but on arrays; the aux consumption of the bulk models does not depend on the time of day
+            int count = links.size();
+            if (linkLengths.length < count) {
+                linkLengths = new double[count];
+                linkTravelTimes = new double[count];
+                linkConsumptions = new double[count];
+            }
+            for (int i = 0; i < count; i++) {
+                Link l = links.get(i);
+                linkLengths[i] = l.getLength();
+                linkTravelTimes[i] = l.getLength() / Math.min(MAX_VEHICLE_SPEED, l.getFreespeed());
+            }
+            bulkConsumption.calcEnergyConsumptions(linkLengths, linkTravelTimes, count, linkConsumptions);
+            for (int i = 0; i < count; i++) {
+                consumptions.put(links.get(i), linkConsumptions[i]);
+            }
+            return consumptions;
+        }
         DriveEnergyConsumption driveEnergyConsumption = pseudoVehicle.getDriveEnergyConsumption();
         AuxEnergyConsumption auxEnergyConsumption = pseudoVehicle.getAuxEnergyConsumption();
         double linkEnterTime = basicLeg.getDepartureTime().seconds();
@@ -388,6 +441,53 @@ final class MpmEvNetworkRoutingModule implements RoutingModule {
         return consumptions;
     }
 
+    /**
+     * Minimizes the detour (there and back, as the crow flies at maximum truck speed) plus the forecast waiting time.
+     */
+    private ChargerSpecification chooseCharger(List<ChargerSpecification> candidates, Link stopLocation, double expectedArrival) {
+        ChargerSpecification best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (ChargerSpecification candidate : candidates) {
+            Link chargerLink = network.getLinks().get(candidate.getLinkId());
+            double detourTime = 2 * NetworkUtils.getEuclideanDistance(stopLocation.getCoord(), chargerLink.getCoord()) / MAX_VEHICLE_SPEED;
+            double cost = detourTime + chargerOccupancyForecast.getExpectedWaitTime(candidate,
+                    expectedArrival + detourTime / 2, BREAK_DURATION);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static double driveTimeUntil(Map<Link, Double> travelTimes, Link link) {
+        double time = 0;
+        for (Map.Entry<Link, Double> e : travelTimes.entrySet()) {
+            time += e.getValue();
+            if (e.getKey().equals(link)) {
+                break;
+            }
+        }
+        return time;
+    }
+
+    private BulkEnergyConsumption getBulkConsumption(ElectricVehicleSpecification ev, ElectricVehicle pseudoVehicle) {
+        if (bulkConsumptionFactory == null) {
+            return null;
+        }
+        return shareConsumptionModelsPerVehicleType ?
+                bulkConsumptionsByType.computeIfAbsent(ev.getMatsimVehicle().getType().getId(),
+                        type -> Optional.ofNullable(bulkConsumptionFactory.create(pseudoVehicle))).orElse(null) :
+                bulkConsumptionFactory.create(pseudoVehicle);
+    }
+
+    private ElectricVehicle createPseudoVehicle(ElectricVehicleSpecification ev) {
+        return ElectricFleetUtils.create(ev, driveConsumptionFactory, auxConsumptionFactory,
+                v -> charger -> {
+                    throw new UnsupportedOperationException();
+                } );
+    }
+
     private Map<Link, Double> estimateTravelTime(Leg basicLeg) {
         NetworkRoute route = (NetworkRoute)basicLeg.getRoute();
         List<Link> links = NetworkUtils.getLinks(network, route.getLinkIds());
@@ -1,12 +1,14 @@
 package org.matsim.mpm.routing;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.api.core.v01.population.PopulationFactory;
 import org.matsim.contrib.ev.EvConfigGroup;
 import org.matsim.contrib.ev.discharging.AuxEnergyConsumption;
@@ -25,6 +27,10 @@ import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 import org.matsim.core.router.util.LeastCostPathCalculator;
 import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
 import org.matsim.core.router.util.TravelTime;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.discharging.BulkEnergyConsumption;
+import org.matsim.mpm.network.IndexedNetwork;
+import org.matsim.mpm.telemetry.EvTelemetry;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -69,6 +75,20 @@ public class MpmEvNetworkRoutingProvider implements Provider<RoutingModule> {
     @Inject
     private AuxEnergyConsumption.Factory auxConsumptionFactory;
 
+    @Inject(optional = true)
+    private ChargerOccupancyForecast chargerOccupancyForecast;
+
+    // only bound (and only to be requested) with MpmEvConfigGroup.telemetry, Guice would create an unscoped one otherwise
+    @Inject
+    private Provider<EvTelemetry> telemetry;
+
+    @Inject(optional = true)
+    private BulkEnergyConsumption.Factory bulkConsumptionFactory;
+
+    // only bound (and only to be requested) with MpmEvConfigGroup.indexedModeNetworks, same as the telemetry
+    @Inject
+    private Provider<IndexedNetwork> indexedNetwork;
+
     /**
      * This is the older (and still more standard) constructor, where the routingMode and the resulting mode were the
      * same.
@@ -101,17 +121,21 @@ public class MpmEvNetworkRoutingProvider implements Provider<RoutingModule> {
         // the network refers to the (transport)mode:
         Network filteredNetwork;
 
-        // Ensure this is not performed concurrently by multiple threads!
-        synchronized (this.singleModeNetworksCache.getSingleModeNetworksCache()) {
-
-            filteredNetwork = this.singleModeNetworksCache.getSingleModeNetworksCache().get(mode);
-            if (filteredNetwork == null) {
-                TransportModeNetworkFilter filter = new TransportModeNetworkFilter(network);
-                Set<String> modes = new HashSet<>();
-                modes.add(mode);
-                filteredNetwork = NetworkUtils.createNetwork(config);
-                filter.filter(filteredNetwork, modes);
-                this.singleModeNetworksCache.getSingleModeNetworksCache().put(mode, filteredNetwork);
+        if (MpmEvConfigGroup.get(config).indexedModeNetworks) {
+            filteredNetwork = indexedNetwork.get().getModeView(mode);
+        } else {
+            // Ensure this is not performed concurrently by multiple threads!
+            synchronized (this.singleModeNetworksCache.getSingleModeNetworksCache()) {
+
+                filteredNetwork = this.singleModeNetworksCache.getSingleModeNetworksCache().get(mode);
+                if (filteredNetwork == null) {
+                    TransportModeNetworkFilter filter = new TransportModeNetworkFilter(network);
+                    Set<String> modes = new HashSet<>();
+                    modes.add(mode);
+                    filteredNetwork = NetworkUtils.createNetwork(config);
+                    filter.filter(filteredNetwork, modes);
+                    this.singleModeNetworksCache.getSingleModeNetworksCache().put(mode, filteredNetwork);
+                }
             }
         }
 
@@ -132,10 +156,22 @@ public class MpmEvNetworkRoutingProvider implements Provider<RoutingModule> {
         if (!routingConfigGroup.getAccessEgressType().equals(AccessEgressType.none)) {
             throw new IllegalArgumentException("Bushwacking is not currently supported by the EV routing module");
         } else {
-            return new MpmEvNetworkRoutingModule(mode, filteredNetwork,
+            RoutingModule routingModule = new MpmEvNetworkRoutingModule(mode, filteredNetwork,
                     DefaultRoutingModules.createPureNetworkRouter(mode, populationFactory, filteredNetwork, routeAlgo),
                     electricFleetSpecification, chargingInfrastructureSpecification, travelTime,
-                    driveConsumptionFactory, auxConsumptionFactory, EvConfigGroup.get(config));
+                    driveConsumptionFactory, auxConsumptionFactory, EvConfigGroup.get(config),
+                    MpmEvConfigGroup.get(config).compactElectricFleet,
+                    MpmEvConfigGroup.get(config).chargerOccupancyForecast ? chargerOccupancyForecast : null,
+                    MpmEvConfigGroup.get(config).chargerChoiceCandidates, bulkConsumptionFactory);
+            if (!MpmEvConfigGroup.get(config).telemetry) {
+                return routingModule;
+            }
+            EvTelemetry evTelemetry = telemetry.get();
+            return request -> {
+                List<? extends PlanElement> trip = routingModule.calcRoute(request);
+                evTelemetry.countRoutedTrip();
+                return trip;
+            };
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+package org.matsim.mpm.routing;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Binary copy of the routing-relevant part of a network (node coordinates, link topology, length, freespeed,
+ * capacity, lanes and allowed modes). Written once by {@link ShardedRouting}; the workers map the file read-only, so
+ * all of them are served from the same pages of the OS page cache and none has to parse the xml network.
+ */
+public final class NetworkSnapshot {
+    private static final int MAGIC = 0x4d45_564e;// "MEVN"
+    private static final int VERSION = 1;
+
+    private NetworkSnapshot() {
+    }
+
+    public static void write(Network network, Path file) {
+        List<String> modes = new ArrayList<>();
+        Map<String, Integer> modeBits = new HashMap<>();
+        for (Link link : network.getLinks().values()) {
+            for (String mode : link.getAllowedModes()) {
+                if (!modeBits.containsKey(mode)) {
+                    if (modes.size() == Integer.SIZE) {
+                        throw new IllegalArgumentException("more than " + Integer.SIZE + " modes in the network");
+                    }
+                    modeBits.put(mode, modes.size());
+                    modes.add(mode);
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(network.getCapacityPeriod());
+            out.writeInt(modes.size());
+            for (String mode : modes) {
+                writeString(out, mode);
+            }
+
+            Map<Id<Node>, Integer> nodeIndices = new HashMap<>();
+            out.writeInt(network.getNodes().size());
+            for (Node node : network.getNodes().values()) {
+                nodeIndices.put(node.getId(), nodeIndices.size());
+                writeString(out, node.getId().toString());
+                out.writeDouble(node.getCoord().getX());
+                out.writeDouble(node.getCoord().getY());
+            }
+
+            out.writeInt(network.getLinks().size());
+            for (Link link : network.getLinks().values()) {
+                writeString(out, link.getId().toString());
+                out.writeInt(nodeIndices.get(link.getFromNode().getId()));
+                out.writeInt(nodeIndices.get(link.getToNode().getId()));
+                out.writeDouble(link.getLength());
+                out.writeDouble(link.getFreespeed());
+                out.writeDouble(link.getCapacity());
+                out.writeDouble(link.getNumberOfLanes());
+                int modeMask = 0;
+                for (String mode : link.getAllowedModes()) {
+                    modeMask |= 1 << modeBits.get(mode);
+                }
+                out.writeInt(modeMask);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static Network read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(file + " is larger than 2 GB");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException(file + " is not a network snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported network snapshot version " + version + " in " + file);
+            }
+
+            Network network = NetworkUtils.createNetwork();
+            network.setCapacityPeriod(buffer.getDouble());
+            NetworkFactory factory = network.getFactory();
+
+            int modeCount = buffer.getInt();
+            String[] modes = new String[modeCount];
+            for (int i = 0; i < modeCount; i++) {
+                modes[i] = readString(buffer);
+            }
+            // links with the same modes share one set
+            Map<Integer, Set<String>> modeSets = new HashMap<>();
+
+            int nodeCount = buffer.getInt();
+            Node[] nodes = new Node[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                Id<Node> id = Id.createNodeId(readString(buffer));
+                nodes[i] = factory.createNode(id, new Coord(buffer.getDouble(), buffer.getDouble()));
+                network.addNode(nodes[i]);
+            }
+
+            int linkCount = buffer.getInt();
+            for (int i = 0; i < linkCount; i++) {
+                Id<Link> id = Id.createLinkId(readString(buffer));
+                Link link = factory.createLink(id, nodes[buffer.getInt()], nodes[buffer.getInt()]);
+                link.setLength(buffer.getDouble());
+                link.setFreespeed(buffer.getDouble());
+                link.setCapacity(buffer.getDouble());
+                link.setNumberOfLanes(buffer.getDouble());
+                link.setAllowedModes(modeSets.computeIfAbsent(buffer.getInt(), mask -> {
+                    Set<String> set = new HashSet<>();
+                    for (int m = 0; m < modeCount; m++) {
+                        if ((mask & (1 << m)) != 0) {
+                            set.add(modes[m]);
+                        }
+                    }
+                    return Collections.unmodifiableSet(set);
+                }));
+                network.addLink(link);
+            }
+            return network;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
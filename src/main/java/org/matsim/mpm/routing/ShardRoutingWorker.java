@@ -0,0 +1,118 @@
+package org.matsim.mpm.routing;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.discharging.AuxEnergyConsumption;
+import org.matsim.contrib.ev.discharging.DriveEnergyConsumption;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecificationImpl;
+import org.matsim.contrib.ev.fleet.ElectricFleetUtils;
+import org.matsim.contrib.ev.infrastructure.ChargerReader;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecification;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecificationDefaultImpl;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.Injector;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
+import org.matsim.core.population.algorithms.ParallelPersonAlgorithmUtils;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.population.io.StreamingPopulationWriter;
+import org.matsim.core.router.DefaultRoutingModules;
+import org.matsim.core.router.PlanRouter;
+import org.matsim.core.router.RoutingModule;
+import org.matsim.core.router.TripRouter;
+import org.matsim.core.router.costcalculators.RandomizingTimeDistanceTravelDisutilityFactory;
+import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.MutableScenario;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.core.utils.timing.TimeInterpretation;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.discharging.BulkEnergyConsumption;
+import org.matsim.mpm.discharging.MpmDischargingModule;
+import org.matsim.vehicles.MatsimVehicleReader;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * Routes one partition of the population for {@link ShardedRouting}, in its own jvm. Uses the same ev routing and
+ * energy consumption models as a run with the {@link org.matsim.mpm.MpmEvModule}, on freespeed travel times as in the
+ * first iteration.
+ * <p>
+ * Usage: {@code ShardRoutingWorker <config> <networkSnapshot> <plans> <vehicles> <outputPlans> <threads>}
+ */
+public final class ShardRoutingWorker {
+    private static final Logger log = LogManager.getLogger(ShardRoutingWorker.class);
+
+    public static void main(String[] args) {
+        Config config = ConfigUtils.loadConfig(args[0], new EvConfigGroup(), new MpmEvConfigGroup());
+        // the routing must only depend on the person, not on the shard
+        config.routing().setRoutingRandomness(0);
+        int threads = Integer.parseInt(args[5]);
+
+        MutableScenario scenario = ScenarioUtils.createMutableScenario(config);
+        scenario.setNetwork(NetworkSnapshot.read(Path.of(args[1])));
+        if (MpmEvConfigGroup.get(config).compactNetworkRoutes) {
+            CompactNetworkRoute.useFor(scenario);
+        }
+        new PopulationReader(scenario).readFile(args[2]);
+        new MatsimVehicleReader(scenario.getVehicles()).readFile(args[3]);
+        ChargingInfrastructureSpecification chargers = new ChargingInfrastructureSpecificationDefaultImpl();
+        new ChargerReader(chargers).readURL(ConfigGroup.getInputFileURL(config.getContext(), EvConfigGroup.get(config).chargersFile));
+
+        route(scenario, chargers, threads);
+        // sorted by id for the merge of the shards
+        StreamingPopulationWriter writer = new StreamingPopulationWriter();
+        writer.startStreaming(args[4]);
+        scenario.getPopulation().getPersons().values().stream()
+                .sorted(Comparator.comparing(Person::getId))
+                .forEach(writer::run);
+        writer.closeStreaming();
+        log.info("routed " + scenario.getPopulation().getPersons().size() + " persons to " + args[4]);
+    }
+
+    static void route(Scenario scenario, ChargingInfrastructureSpecification chargers, int threads) {
+        Config config = scenario.getConfig();
+        com.google.inject.Injector injector = Injector.createInjector(config, new MpmDischargingModule());
+        DriveEnergyConsumption.Factory driveConsumptionFactory = injector.getInstance(DriveEnergyConsumption.Factory.class);
+        AuxEnergyConsumption.Factory auxConsumptionFactory = injector.getInstance(AuxEnergyConsumption.Factory.class);
+        MpmEvConfigGroup mpmEvCfg = MpmEvConfigGroup.get(config);
+        BulkEnergyConsumption.Factory bulkConsumptionFactory = mpmEvCfg.bulkEnergyConsumption ?
+                injector.getInstance(BulkEnergyConsumption.Factory.class) :
+                null;
+
+        ElectricFleetSpecification fleet = new ElectricFleetSpecificationImpl();
+        ElectricFleetUtils.createAndAddVehicleSpecificationsFromMatsimVehicles(fleet, scenario.getVehicles().getVehicles().values());
+
+        Network carNetwork = NetworkUtils.createNetwork(config);
+        new TransportModeNetworkFilter(scenario.getNetwork()).filter(carNetwork, Set.of(TransportMode.car));
+        TravelTime travelTime = new FreeSpeedTravelTime();
+        LeastCostPathCalculatorFactory pathCalculatorFactory = new SpeedyALTFactory();
+        TimeInterpretation timeInterpretation = TimeInterpretation.create(config);
+
+        ParallelPersonAlgorithmUtils.run(scenario.getPopulation(), threads, () -> {
+            TravelDisutility travelDisutility = new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, config)
+                    .createTravelDisutility(travelTime);
+            RoutingModule networkRouter = DefaultRoutingModules.createPureNetworkRouter(TransportMode.car,
+                    scenario.getPopulation().getFactory(), carNetwork,
+                    pathCalculatorFactory.createPathCalculator(carNetwork, travelDisutility, travelTime));
+            RoutingModule evRouter = new MpmEvNetworkRoutingModule(TransportMode.car, carNetwork, networkRouter, fleet,
+                    chargers, travelTime, driveConsumptionFactory, auxConsumptionFactory, EvConfigGroup.get(config),
+                    mpmEvCfg.compactElectricFleet, null, mpmEvCfg.chargerChoiceCandidates, bulkConsumptionFactory);
+            TripRouter tripRouter = new TripRouter.Builder(config).setRoutingModule(TransportMode.car, evRouter).build();
+            return new PlanRouter(tripRouter, scenario.getActivityFacilities(), timeInterpretation);
+        });
+    }
+}
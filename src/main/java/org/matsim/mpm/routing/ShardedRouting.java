@@ -0,0 +1,274 @@
+package org.matsim.mpm.routing;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.io.StreamingPopulationReader;
+import org.matsim.core.population.io.StreamingPopulationWriter;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.vehicles.MatsimVehicleReader;
+import org.matsim.vehicles.MatsimVehicleWriter;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleUtils;
+import org.matsim.vehicles.Vehicles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Routes a BET population in several local worker processes ({@link ShardRoutingWorker}), e.g. one per NUMA node of
+ * a large machine, and merges the staged plans into {@code <workDirectory>/plans_routed.xml.gz}. That file can then be
+ * used as plans file of the actual run; routed legs are not routed again by the PrepareForSim.
+ * <p>
+ * The coordinator never holds the population: the plans are streamed once and dealt round-robin to the shards, and the
+ * routed shards (each sorted by person id by its worker) are combined by a streaming k-way merge. Only the network (until
+ * it is written) and the vehicles are loaded. The workers only communicate through files in the work directory: the
+ * network as {@link NetworkSnapshot} (mapped by all workers), and per shard the plans, vehicles, routed plans and a log.
+ * The merged plans are sorted by id, and the routing of a person does not depend on the shard (routing randomness is
+ * switched off in the workers), so the result is the same for any number of shards.
+ * <p>
+ * Usage: {@code ShardedRouting <config> <shards> <workDirectory> [threadsPerShard] [numaNodes]}. With numaNodes > 0,
+ * worker i is started with {@code numactl --cpunodebind=k --membind=k}, k = i mod numaNodes. The worker heap can be
+ * set with {@code -Dsharding.workerXmx=...}.
+ */
+public final class ShardedRouting {
+    private static final Logger log = LogManager.getLogger(ShardedRouting.class);
+
+    public static final String NETWORK_SNAPSHOT = "network.snapshot";
+    public static final String ROUTED_PLANS = "plans_routed.xml.gz";
+    private static final int MERGE_QUEUE_SIZE = 1024;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("usage: ShardedRouting <config> <shards> <workDirectory> [threadsPerShard] [numaNodes]");
+        }
+        int shards = Integer.parseInt(args[1]);
+        int threadsPerShard = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        int numaNodes = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        run(args[0], shards, Path.of(args[2]), threadsPerShard, numaNodes);
+    }
+
+    public static void run(String configFile, int shards, Path workDirectory, int threadsPerShard, int numaNodes)
+            throws IOException, InterruptedException {
+        Config config = ConfigUtils.loadConfig(configFile, new EvConfigGroup(), new MpmEvConfigGroup());
+        workDirectory.toFile().mkdirs();
+
+        Path snapshot = workDirectory.resolve(NETWORK_SNAPSHOT);
+        writeNetworkSnapshot(config, snapshot);
+        writeShards(config, shards, workDirectory);
+
+        List<Process> workers = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            workers.add(startWorker(configFile, snapshot, shardDirectory(workDirectory, shard), threadsPerShard,
+                    numaNodes > 0 ? shard % numaNodes : -1));
+        }
+
+        List<Integer> failed = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            if (workers.get(shard).waitFor() != 0) {
+                failed.add(shard);
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new RuntimeException("routing failed in shards " + failed + ", see the worker.log in their directories");
+        }
+
+        merge(workDirectory, shards, config);
+    }
+
+    // the network is not kept, the workers read the snapshot
+    private static void writeNetworkSnapshot(Config config, Path snapshot) {
+        Network network = NetworkUtils.createNetwork(config);
+        new MatsimNetworkReader(config.network().getInputCRS(), config.global().getCoordinateSystem(), network)
+                .parse(config.network().getInputFileURL(config.getContext()));
+        NetworkSnapshot.write(network, snapshot);
+    }
+
+    private static Path shardDirectory(Path workDirectory, int shard) {
+        return workDirectory.resolve("shard-" + shard);
+    }
+
+    /**
+     * Streams the plans once, writing person i to shard i mod shards, together with the vehicles the ev routing uses
+     * for it.
+     */
+    private static void writeShards(Config config, int shards, Path workDirectory) {
+        Vehicles allVehicles = VehicleUtils.createVehiclesContainer();
+        new MatsimVehicleReader(allVehicles).readURL(config.vehicles().getVehiclesFileUrl(config.getContext()));
+
+        StreamingPopulationWriter[] writers = new StreamingPopulationWriter[shards];
+        Vehicles[] vehicles = new Vehicles[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            Path directory = shardDirectory(workDirectory, shard);
+            directory.toFile().mkdirs();
+            writers[shard] = new StreamingPopulationWriter();
+            writers[shard].startStreaming(directory.resolve("plans.xml.gz").toString());
+            vehicles[shard] = VehicleUtils.createVehiclesContainer();
+            allVehicles.getVehicleTypes().values().forEach(vehicles[shard]::addVehicleType);
+        }
+
+        Scenario scenario = ScenarioUtils.createScenario(config);
+        StreamingPopulationReader reader = new StreamingPopulationReader(scenario);
+        int[] persons = {0};
+        reader.addAlgorithm(person -> {
+            int shard = persons[0]++ % shards;
+            writers[shard].run(person);
+            for (Leg leg : TripStructureUtils.getLegs(person.getSelectedPlan())) {
+                Id<Vehicle> vehicleId = MpmEvNetworkRoutingModule.getVehicleId(person.getId(), leg.getMode());
+                Vehicle vehicle = allVehicles.getVehicles().get(vehicleId);
+                if (vehicle != null && !vehicles[shard].getVehicles().containsKey(vehicleId)) {
+                    vehicles[shard].addVehicle(vehicle);
+                }
+            }
+        });
+        reader.readURL(config.plans().getInputFileURL(config.getContext()));
+
+        for (int shard = 0; shard < shards; shard++) {
+            writers[shard].closeStreaming();
+            new MatsimVehicleWriter(vehicles[shard])
+                    .writeFile(shardDirectory(workDirectory, shard).resolve("vehicles.xml.gz").toString());
+        }
+        log.info("dealt " + persons[0] + " persons to " + shards + " shards");
+    }
+
+    private static Process startWorker(String configFile, Path snapshot, Path shardDirectory, int threads, int numaNode)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        if (numaNode >= 0) {
+            command.add("numactl");
+            command.add("--cpunodebind=" + numaNode);
+            command.add("--membind=" + numaNode);
+        }
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        String xmx = System.getProperty("sharding.workerXmx");
+        if (xmx != null) {
+            command.add("-Xmx" + xmx);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardRoutingWorker.class.getName());
+        command.add(new File(configFile).getAbsolutePath());
+        command.add(snapshot.toAbsolutePath().toString());
+        command.add(shardDirectory.resolve("plans.xml.gz").toAbsolutePath().toString());
+        command.add(shardDirectory.resolve("vehicles.xml.gz").toAbsolutePath().toString());
+        command.add(shardDirectory.resolve(ROUTED_PLANS).toAbsolutePath().toString());
+        command.add(String.valueOf(threads));
+
+        log.info("starting worker: " + String.join(" ", command));
+        File workerLog = shardDirectory.resolve("worker.log").toFile();
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workerLog)
+                .start();
+    }
+
+    /**
+     * Merges the routed shards, each sorted by person id, into one file sorted by person id. Every shard is read by its
+     * own thread into a small queue, so only a few persons per shard are in memory at any time.
+     */
+    static void merge(Path workDirectory, int shards, Config config) {
+        PriorityQueue<ShardStream> heads = new PriorityQueue<>(
+                Comparator.comparing((ShardStream stream) -> stream.head.getId()));
+        List<ShardStream> streams = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < shards; shard++) {
+                ShardStream stream = new ShardStream(config,
+                        shardDirectory(workDirectory, shard).resolve(ROUTED_PLANS).toString());
+                streams.add(stream);
+                if (stream.advance()) {
+                    heads.add(stream);
+                }
+            }
+
+            String output = workDirectory.resolve(ROUTED_PLANS).toString();
+            StreamingPopulationWriter writer = new StreamingPopulationWriter();
+            writer.startStreaming(output);
+            long persons = 0;
+            while (!heads.isEmpty()) {
+                ShardStream stream = heads.poll();
+                writer.run(stream.head);
+                persons++;
+                if (stream.advance()) {
+                    heads.add(stream);
+                }
+            }
+            writer.closeStreaming();
+            log.info("merged " + persons + " routed persons from " + shards + " shards into " + output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            streams.forEach(stream -> stream.thread.interrupt());
+        }
+    }
+
+    private static final class ShardStream {
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(MERGE_QUEUE_SIZE);
+        private final String file;
+        private final Thread thread;
+        private volatile Throwable failure;
+        private Person head;
+
+        ShardStream(Config config, String file) {
+            this.file = file;
+            // default routes: the persons are only passed through, no need for the network
+            StreamingPopulationReader reader = new StreamingPopulationReader(ScenarioUtils.createScenario(config));
+            reader.addAlgorithm(person -> {
+                try {
+                    queue.put(person);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread = new Thread(() -> {
+                try {
+                    reader.readFile(file);
+                    queue.put(END);
+                } catch (Throwable t) {
+                    failure = t;
+                    // the merge stops here, the persons still queued are not needed
+                    queue.clear();
+                    queue.offer(END);
+                }
+            }, "merge-" + new File(file).getParentFile().getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * @return false at the end of the shard
+         */
+        boolean advance() throws InterruptedException {
+            Object next = queue.take();
+            if (next == END) {
+                if (failure != null) {
+                    throw new RuntimeException("reading " + file + " failed", failure);
+                }
+                head = null;
+                return false;
+            }
+            head = (Person)next;
+            return true;
+        }
+    }
+}
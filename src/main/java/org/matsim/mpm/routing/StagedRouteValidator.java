@@ -0,0 +1,173 @@
+package org.matsim.mpm.routing;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.*;
+import org.matsim.contrib.ev.charging.VehicleChargingHandler;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.contrib.ev.fleet.ElectricVehicleSpecification;
+import org.matsim.contrib.ev.infrastructure.ChargerSpecification;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecification;
+import org.matsim.core.controler.events.StartupEvent;
+import org.matsim.core.controler.listener.StartupListener;
+import org.matsim.core.population.algorithms.ParallelPersonAlgorithmUtils;
+import org.matsim.core.population.algorithms.PersonAlgorithm;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.TripRouter;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.router.TripStructureUtils.Trip;
+import org.matsim.core.utils.timing.TimeInterpretation;
+import org.matsim.core.utils.timing.TimeTracker;
+import org.matsim.facilities.FacilitiesUtils;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Warm start from the output plans of an earlier run: checks the routed trips before the first iteration and only
+ * routes again the trips that are no longer valid, so that the PrepareForSim does not have to route anything.
+ * <p>
+ * A trip is valid if all its legs have a route, the network routes consist of existing links allowing the leg mode that
+ * connect to each other and lead from the origin to the destination activity, and every charging activity is where the
+ * truck arrives and at a charger of a type the vehicle can use. Invalid trips are routed in the same way as by the {@link org.matsim.core.router.PlanRouter},
+ * including the departure time from the plan up to the trip.
+ */
+public class StagedRouteValidator implements StartupListener {
+    private static final Logger log = LogManager.getLogger(StagedRouteValidator.class);
+
+    private final Scenario scenario;
+    private final Provider<TripRouter> tripRouterProvider;
+    private final TimeInterpretation timeInterpretation;
+    private final ElectricFleetSpecification fleet;
+    private final Map<Id<Link>, Set<String>> chargerTypesByLink = new HashMap<>();
+
+    private final LongAdder trips = new LongAdder();
+    private final LongAdder reroutedTrips = new LongAdder();
+
+    @Inject
+    StagedRouteValidator(Scenario scenario, Provider<TripRouter> tripRouterProvider, TimeInterpretation timeInterpretation,
+                         ElectricFleetSpecification fleet, ChargingInfrastructureSpecification chargers) {
+        this.scenario = scenario;
+        this.tripRouterProvider = tripRouterProvider;
+        this.timeInterpretation = timeInterpretation;
+        this.fleet = fleet;
+        for (ChargerSpecification charger : chargers.getChargerSpecifications().values()) {
+            chargerTypesByLink.computeIfAbsent(charger.getLinkId(), id -> new HashSet<>()).add(charger.getChargerType());
+        }
+    }
+
+    @Override
+    public void notifyStartup(StartupEvent event) {
+        ParallelPersonAlgorithmUtils.run(scenario.getPopulation(), scenario.getConfig().global().getNumberOfThreads(),
+                () -> new PlanValidator(tripRouterProvider.get()));
+        log.info("warm start: " + reroutedTrips.sum() + " of " + trips.sum() + " trips routed again");
+    }
+
+    long getReroutedTrips() {
+        return reroutedTrips.sum();
+    }
+
+    private final class PlanValidator implements PersonAlgorithm {
+        private final TripRouter tripRouter;
+
+        private PlanValidator(TripRouter tripRouter) {
+            this.tripRouter = tripRouter;
+        }
+
+        @Override
+        public void run(Person person) {
+            for (Plan plan : person.getPlans()) {
+                run(plan);
+            }
+        }
+
+        private void run(Plan plan) {
+            TimeTracker timeTracker = new TimeTracker(timeInterpretation);
+            for (Trip trip : TripStructureUtils.getTrips(plan)) {
+                trips.increment();
+                timeTracker.addActivity(trip.getOriginActivity());
+                if (isValid(plan.getPerson(), trip)) {
+                    timeTracker.addElements(trip.getTripElements());
+                    continue;
+                }
+                reroutedTrips.increment();
+                String routingMode = TripStructureUtils.getRoutingMode(trip.getLegsOnly().get(0));
+                if (routingMode == null) {
+                    routingMode = TripStructureUtils.identifyMainMode(trip.getTripElements());
+                }
+                List<? extends PlanElement> newTrip = tripRouter.calcRoute(routingMode,
+                        FacilitiesUtils.toFacility(trip.getOriginActivity(), scenario.getActivityFacilities()),
+                        FacilitiesUtils.toFacility(trip.getDestinationActivity(), scenario.getActivityFacilities()),
+                        timeTracker.getTime().seconds(), plan.getPerson(), trip.getTripAttributes());
+                TripRouter.insertTrip(plan, trip.getOriginActivity(), newTrip, trip.getDestinationActivity());
+                timeTracker.addElements(newTrip);
+            }
+        }
+    }
+
+    private boolean isValid(Person person, Trip trip) {
+        Network network = scenario.getNetwork();
+        Id<Link> previousLinkId = trip.getOriginActivity().getLinkId();
+        for (PlanElement element : trip.getTripElements()) {
+            if (element instanceof Activity activity) {
+                // only the charging stops have to be where the truck is, the ev routing puts rest stops at the
+                // stop location but lets the truck drive to the charger next to it
+                if (!isChargingPossible(person, activity, previousLinkId)) {
+                    return false;
+                }
+            } else {
+                Leg leg = (Leg)element;
+                Route route = leg.getRoute();
+                if (route == null || !route.getStartLinkId().equals(previousLinkId)) {
+                    return false;
+                }
+                if (route instanceof NetworkRoute networkRoute && !isConnected(network, leg.getMode(), networkRoute)) {
+                    return false;
+                }
+                previousLinkId = route.getEndLinkId();
+            }
+        }
+        return previousLinkId.equals(trip.getDestinationActivity().getLinkId());
+    }
+
+    private static boolean isConnected(Network network, String mode, NetworkRoute route) {
+        Link previous = network.getLinks().get(route.getStartLinkId());
+        if (previous == null || !previous.getAllowedModes().contains(mode)) {
+            return false;
+        }
+        List<Id<Link>> linkIds = route.getLinkIds();
+        if (linkIds.isEmpty() && route.getEndLinkId().equals(route.getStartLinkId())) {
+            return true;
+        }
+        for (int i = 0; i <= linkIds.size(); i++) {
+            Link link = network.getLinks().get(i < linkIds.size() ? linkIds.get(i) : route.getEndLinkId());
+            if (link == null || !link.getAllowedModes().contains(mode) || link.getFromNode() != previous.getToNode()) {
+                return false;
+            }
+            previous = link;
+        }
+        return true;
+    }
+
+    private boolean isChargingPossible(Person person, Activity activity, Id<Link> vehicleLinkId) {
+        String type = activity.getType();
+        if (!type.endsWith(VehicleChargingHandler.CHARGING_INTERACTION)) {
+            return true;
+        }
+        if (!activity.getLinkId().equals(vehicleLinkId)) {
+            return false;
+        }
+        // "<mode> charging interaction"
+        String mode = type.substring(0, type.indexOf(VehicleChargingHandler.CHARGING_IDENTIFIER));
+        ElectricVehicleSpecification ev = fleet.getVehicleSpecifications()
+                .get(MpmEvNetworkRoutingModule.getVehicleId(person.getId(), mode));
+        Set<String> chargerTypes = chargerTypesByLink.get(activity.getLinkId());
+        return ev != null && chargerTypes != null && !Collections.disjoint(chargerTypes, ev.getChargerTypes());
+    }
+}
@@ -0,0 +1,188 @@
+package org.matsim.mpm.run;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.Config;
+import org.matsim.core.population.io.PopulationReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Reads a plans file in a pipeline of threads: the file is inflated by a {@link ReadAheadInputStream}, split into
+ * chunks of persons on the calling thread, and the chunks are parsed into persons and plans by a pool of threads, each
+ * chunk by its own {@link PopulationReader}. The persons are added to the population chunk by chunk, in file order.
+ * <p>
+ * Every chunk is parsed as a document of its own: the header of the file (xml declaration, doctype, root element and
+ * population attributes) followed by the persons of the chunk. So each chunk is read as the whole file would be,
+ * including the coordinate transformation. Comments containing person tags between the persons are not supported.
+ */
+final class ParallelPopulationReader {
+    private static final int PERSONS_PER_CHUNK = 1000;
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;// bounds the memory of the parsed but not yet added chunks
+    private static final byte[] PERSON_START = "<person".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PERSON_END = "</person>".getBytes(StandardCharsets.US_ASCII);
+
+    private final Config config;
+    private final Scenario scenario;
+    private final Supplier<Scenario> chunkScenarios;
+    private final int threads;
+
+    private byte[] header;
+    private byte[] rootEnd;
+    private boolean first = true;
+
+    /**
+     * @param chunkScenarios empty scenarios to parse the chunks into, with the same route factories as the scenario
+     */
+    ParallelPopulationReader(Config config, Scenario scenario, Supplier<Scenario> chunkScenarios, int threads) {
+        this.config = config;
+        this.scenario = scenario;
+        this.chunkScenarios = chunkScenarios;
+        this.threads = threads;
+    }
+
+    void read(URL url) throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "plans-parser-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Population>> parsing = new ArrayDeque<>();
+        try (InputStream in = new ReadAheadInputStream(url)) {
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            ByteArrayOutputStream chunk = null;// null while reading the header
+            int startMatched = 0;
+            int endMatched = 0;
+            int persons = 0;
+            byte[] buffer = new byte[1 << 16];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                int from = 0;
+                for (int i = 0; i < length; i++) {
+                    byte b = buffer[i];
+                    if (chunk == null) {
+                        if (startMatched == PERSON_START.length && isTagNameEnd(b)) {
+                            headerBytes.write(buffer, from, i - from);
+                            byte[] all = headerBytes.toByteArray();
+                            header = Arrays.copyOf(all, all.length - PERSON_START.length);
+                            rootEnd = ("</" + rootElementName(header) + ">").getBytes(StandardCharsets.US_ASCII);
+                            chunk = new ByteArrayOutputStream();
+                            chunk.write(PERSON_START);
+                            from = i;
+                        } else {
+                            startMatched = match(PERSON_START, startMatched, b);
+                        }
+                    } else {
+                        endMatched = match(PERSON_END, endMatched, b);
+                        if (endMatched == PERSON_END.length) {
+                            endMatched = 0;
+                            if (++persons == PERSONS_PER_CHUNK) {
+                                chunk.write(buffer, from, i + 1 - from);
+                                from = i + 1;
+                                submit(executor, parsing, chunk.toByteArray(), false);
+                                chunk = new ByteArrayOutputStream();
+                                persons = 0;
+                            }
+                        }
+                    }
+                }
+                (chunk == null ? headerBytes : chunk).write(buffer, from, length - from);
+            }
+
+            if (chunk == null) {
+                // no persons
+                new PopulationReader(config.plans().getInputCRS(), config.global().getCoordinateSystem(), scenario)
+                        .parse(new ByteArrayInputStream(headerBytes.toByteArray()));
+                return;
+            }
+            // the last chunk ends with the end of the root element
+            submit(executor, parsing, chunk.toByteArray(), true);
+            while (!parsing.isEmpty()) {
+                addPersons(parsing.poll());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submit(ExecutorService executor, Deque<Future<Population>> parsing, byte[] persons, boolean last) {
+        ByteArrayOutputStream document = new ByteArrayOutputStream(header.length + persons.length + rootEnd.length);
+        document.write(header, 0, header.length);
+        document.write(persons, 0, persons.length);
+        if (!last) {
+            document.write(rootEnd, 0, rootEnd.length);
+        }
+        byte[] bytes = document.toByteArray();
+        parsing.add(executor.submit(() -> {
+            Scenario chunkScenario = chunkScenarios.get();
+            new PopulationReader(config.plans().getInputCRS(), config.global().getCoordinateSystem(), chunkScenario)
+                    .parse(new ByteArrayInputStream(bytes));
+            return chunkScenario.getPopulation();
+        }));
+        while (parsing.size() > CHUNKS_AHEAD_PER_THREAD * threads) {
+            addPersons(parsing.poll());
+        }
+    }
+
+    private void addPersons(Future<Population> parsed) {
+        Population chunkPopulation;
+        try {
+            chunkPopulation = parsed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("parsing the plans failed", e.getCause());
+        }
+        if (first) {
+            // the population attributes are in the header, i.e. in every chunk
+            chunkPopulation.getAttributes().getAsMap().forEach(scenario.getPopulation().getAttributes()::putAttribute);
+            first = false;
+        }
+        for (Person person : chunkPopulation.getPersons().values()) {
+            scenario.getPopulation().addPerson(person);
+        }
+    }
+
+    /**
+     * The patterns start with their only '<'.
+     */
+    private static int match(byte[] pattern, int matched, byte b) {
+        if (matched < pattern.length && b == pattern[matched]) {
+            return matched + 1;
+        }
+        return b == pattern[0] ? 1 : 0;
+    }
+
+    private static boolean isTagNameEnd(int c) {
+        return c == '>' || c == '/' || Character.isWhitespace(c);
+    }
+
+    private static String rootElementName(byte[] header) {
+        String text = new String(header, StandardCharsets.ISO_8859_1);
+        for (int i = text.indexOf('<'); i >= 0 && i + 1 < text.length(); i = text.indexOf('<', i + 1)) {
+            char next = text.charAt(i + 1);
+            if (next != '?' && next != '!') {
+                int end = i + 1;
+                while (end < text.length() && !isTagNameEnd(text.charAt(end))) {
+                    end++;
+                }
+                return text.substring(i + 1, end);
+            }
+        }
+        throw new IllegalArgumentException("no root element before the first person");
+    }
+}
@@ -0,0 +1,153 @@
+package org.matsim.mpm.run;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.infrastructure.ChargerReader;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecification;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecificationDefaultImpl;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.core.network.NetworkChangeEvent;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.network.io.NetworkChangeEventsParser;
+import org.matsim.core.scenario.MutableScenario;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.MatsimXmlParser;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.routing.CompactNetworkRoute;
+import org.matsim.vehicles.MatsimVehicleReader;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Loads the inputs of a BET scenario (network, plans, vehicles and chargers) concurrently instead of one after the
+ * other as {@link ScenarioUtils#loadScenario(Config)} does. Each file is inflated on a separate read-ahead thread, so
+ * decompression and parsing are pipelined as well. The plans are in addition parsed by several threads, see
+ * {@link ParallelPopulationReader}; the load time is then bound by the largest of the other files or the plans parsed
+ * with {@code global.numberOfThreads} threads. The network change events of a time variant network are read once the
+ * network is loaded.
+ * <p>
+ * Only covers what the BET scenarios use. Configs with facilities, transit schedules, lanes or households have to be
+ * loaded with {@link ScenarioUtils#loadScenario(Config)}.
+ */
+public final class ParallelScenarioLoader {
+    private static final Logger log = LogManager.getLogger(ParallelScenarioLoader.class);
+
+    private final Config config;
+    private final MutableScenario scenario;
+    private ChargingInfrastructureSpecification chargingInfrastructureSpecification;
+    private boolean sharedNetwork = false;
+
+    public ParallelScenarioLoader(Config config) {
+        this.config = config;
+        this.scenario = ScenarioUtils.createMutableScenario(config);
+        if (MpmEvConfigGroup.get(config).compactNetworkRoutes) {
+            CompactNetworkRoute.useFor(scenario);
+        }
+    }
+
+    /**
+     * Uses an already loaded network instead of reading the network file, e.g. to share one network between the
+     * variants of a {@link RunBetSweep}. The network must not be modified afterwards, so it cannot be time variant.
+     */
+    public ParallelScenarioLoader(Config config, Network network) {
+        this(config);
+        this.scenario.setNetwork(network);
+        this.sharedNetwork = true;
+    }
+
+    private MutableScenario createPlansScenario() {
+        MutableScenario plansScenario = ScenarioUtils.createMutableScenario(config);
+        if (MpmEvConfigGroup.get(config).compactNetworkRoutes) {
+            CompactNetworkRoute.useFor(plansScenario);
+        }
+        return plansScenario;
+    }
+
+    public Scenario loadScenario() {
+        if (config.facilities().getInputFile() != null || config.transit().isUseTransit()
+                || config.households().getInputFile() != null || config.network().getLaneDefinitionsFile() != null) {
+            throw new IllegalArgumentException("ParallelScenarioLoader only supports network, plans, vehicles and"
+                    + " chargers; use ScenarioUtils.loadScenario(config) for this config");
+        }
+        if (sharedNetwork && config.network().isTimeVariantNetwork()) {
+            throw new IllegalArgumentException("a shared network cannot take the network change events of one variant;"
+                    + " load time variant networks per variant");
+        }
+
+        URL context = config.getContext();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        if (!sharedNetwork && config.network().getInputFile() != null) {
+            tasks.add(read(config.network().getInputFileURL(context), new MatsimNetworkReader(
+                    config.network().getInputCRS(), config.global().getCoordinateSystem(), scenario.getNetwork())));
+        }
+        if (config.plans().getInputFile() != null) {
+            URL plans = config.plans().getInputFileURL(context);
+            ParallelPopulationReader reader = new ParallelPopulationReader(config, scenario, this::createPlansScenario,
+                    Math.max(1, config.global().getNumberOfThreads()));
+            tasks.add(() -> {
+                long start = System.currentTimeMillis();
+                reader.read(plans);
+                log.info("read " + plans + " in " + (System.currentTimeMillis() - start) / 1000. + " s");
+                return null;
+            });
+        }
+        if (config.vehicles().getVehiclesFile() != null) {
+            tasks.add(read(config.vehicles().getVehiclesFileUrl(context), new MatsimVehicleReader(scenario.getVehicles())));
+        }
+        EvConfigGroup evCfg = (EvConfigGroup)config.getModules().get(EvConfigGroup.GROUP_NAME);
+        if (evCfg != null && evCfg.chargersFile != null) {
+            ChargingInfrastructureSpecificationDefaultImpl chargers = new ChargingInfrastructureSpecificationDefaultImpl();
+            tasks.add(read(ConfigGroup.getInputFileURL(context, evCfg.chargersFile), new ChargerReader(chargers)));
+            chargingInfrastructureSpecification = chargers;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, tasks.size()));
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("loading the scenario failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (config.network().isTimeVariantNetwork() && config.network().getChangeEventsInputFile() != null) {
+            List<NetworkChangeEvent> changeEvents = new ArrayList<>();
+            new NetworkChangeEventsParser(scenario.getNetwork(), changeEvents)
+                    .parse(config.network().getChangeEventsInputFileUrl(context));
+            NetworkUtils.setNetworkChangeEvents(scenario.getNetwork(), changeEvents);
+        }
+        return scenario;
+    }
+
+    /**
+     * @return the chargers read by {@link #loadScenario()}, or null if no chargers file is configured
+     */
+    public ChargingInfrastructureSpecification getChargingInfrastructureSpecification() {
+        return chargingInfrastructureSpecification;
+    }
+
+    private static Callable<Void> read(URL url, MatsimXmlParser parser) {
+        return () -> {
+            long start = System.currentTimeMillis();
+            try (InputStream in = new ReadAheadInputStream(url)) {
+                parser.parse(in);
+            }
+            log.info("read " + url + " in " + (System.currentTimeMillis() - start) / 1000. + " s");
+            return null;
+        };
+    }
+}
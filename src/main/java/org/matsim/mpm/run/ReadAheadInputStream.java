@@ -0,0 +1,125 @@
+package org.matsim.mpm.run;
+
+import org.matsim.core.utils.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads (and thereby decompresses) a file on its own thread into a bounded queue of chunks, so that inflating and
+ * xml parsing of large gz files run in parallel.
+ */
+final class ReadAheadInputStream extends InputStream {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread reader;
+    private volatile Throwable failure;
+
+    private byte[] current;
+    private int currentLength;
+    private int position;
+    private boolean ended = false;
+
+    ReadAheadInputStream(URL url) {
+        reader = new Thread(() -> {
+            try (InputStream in = IOUtils.getInputStream(url)) {
+                while (true) {
+                    byte[] chunk = new byte[CHUNK_SIZE];
+                    int length = in.readNBytes(chunk, 0, CHUNK_SIZE);
+                    if (length == 0) {
+                        break;
+                    }
+                    chunks.put(length == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, length));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (UncheckedIOException e) {
+                failure = e.getCause();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                putEnd();
+            }
+        }, "read-ahead-" + url.getFile());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Always called by the reader thread when it is done, otherwise the consumer would wait forever.
+     */
+    private void putEnd() {
+        if (Thread.currentThread().isInterrupted()) {
+            // closed: nobody takes the remaining chunks any more
+            chunks.clear();
+            chunks.offer(END);
+            return;
+        }
+        try {
+            chunks.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            chunks.clear();
+            chunks.offer(END);
+        }
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (ended) {
+            return false;
+        }
+        try {
+            current = chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        if (current == END) {
+            ended = true;
+            if (failure instanceof IOException e) {
+                throw e;
+            } else if (failure != null) {
+                throw new IOException("reading ahead failed", failure);
+            }
+            return false;
+        }
+        currentLength = current.length;
+        position = 0;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if ((current == null || position == currentLength) && !nextChunk()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if ((current == null || position == currentLength) && !nextChunk()) {
+            return -1;
+        }
+        int n = Math.min(len, currentLength - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        reader.interrupt();
+    }
+}
@@ -20,13 +20,19 @@ package org.matsim.mpm.run;
 
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecification;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
 import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.mpm.MpmEvConfigGroup;
 import org.matsim.mpm.MpmEvModule;
+import org.matsim.mpm.checkpoint.EvStateCheckpoint;
+import org.matsim.mpm.checkpoint.EvStateRestoreModule;
+import org.matsim.mpm.routing.CompactNetworkRoute;
 import org.matsim.mpm.routing.MpmEvNetworkRoutingProvider;
 
 /**
@@ -50,14 +56,46 @@ public class RunBetScenario {
 		config.addModule(new org.matsim.contrib.ev.EvConfigGroup());
 
 
-		Scenario scenario = ScenarioUtils.loadScenario(config) ;
+		Scenario scenario;
+		ChargingInfrastructureSpecification chargers = null;
+		if ( MpmEvConfigGroup.get( config ).parallelScenarioLoading ){
+			ParallelScenarioLoader loader = new ParallelScenarioLoader( config );
+			scenario = loader.loadScenario();
+			chargers = loader.getChargingInfrastructureSpecification();
+		} else {
+			scenario = ScenarioUtils.createScenario( config );
+			if ( MpmEvConfigGroup.get( config ).compactNetworkRoutes ){
+				// before the plans are read
+				CompactNetworkRoute.useFor( scenario );
+			}
+			ScenarioUtils.loadScenario( scenario );
+		}
 
 		// possibly modify scenario here
 		// ---
 		
-		Controler controler = new Controler( scenario ) ;
-		
+		Controler controler = createControler( scenario, chargers ) ;
+
 		// possibly modify controler here
+		
+		controler.run();
+	}
+
+	/**
+	 * @param preloadedChargers chargers already read together with the scenario, or null if the chargers file is to
+	 *                          be read by the ev modules
+	 */
+	public static Controler createControler( Scenario scenario, ChargingInfrastructureSpecification preloadedChargers ){
+		Controler controler = new Controler( scenario ) ;
+
+		String checkpointFile = MpmEvConfigGroup.get( scenario.getConfig() ).evCheckpointFile;
+		if ( checkpointFile!=null ){
+			EvStateCheckpoint checkpoint = EvStateCheckpoint.read( ConfigGroup.getInputFileURL( scenario.getConfig().getContext(), checkpointFile ) );
+			// before the ev modules build the fleet specification from the vehicles
+			checkpoint.restoreInitialSoc( scenario.getVehicles() );
+			controler.addOverridingModule( new EvStateRestoreModule( checkpoint ) );
+		}
+
 		controler.addOverridingModule(new AbstractModule(){
 
 			@Override public void install(){
@@ -65,8 +103,15 @@ public class RunBetScenario {
 				addRoutingModuleBinding(TransportMode.car).toProvider(new MpmEvNetworkRoutingProvider(TransportMode.car));
 			}
 		} );
-		
-		controler.run();
+		if ( preloadedChargers!=null ){
+			// already read by the ParallelScenarioLoader, do not read the chargers file again
+			controler.addOverridingModule( new AbstractModule(){
+				@Override public void install(){
+					bind( ChargingInfrastructureSpecification.class ).toInstance( preloadedChargers );
+				}
+			} );
+		}
+		return controler;
 	}
 	
 }
@@ -0,0 +1,183 @@
+package org.matsim.mpm.run;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.SingleModeNetworksCache;
+import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several variants of a BET scenario (e.g. different chargers files or ev settings) in one JVM. The network is
+ * read once and shared read-only, as are the mode-filtered networks and the routing graphs (and landmarks) built on
+ * them. Population, vehicles and chargers are read per variant, so every variant works on its own copies.
+ * <p>
+ * Usage: {@code RunBetSweep <threadBudget> <parallelVariants> <variantConfig>...}. All variant configs have to refer
+ * to the same network file. Each variant writes to {@code <outputDirectory>/<index>_<config file name>}. The thread
+ * budget is split evenly between the variants running at the same time.
+ * <p>
+ * MATSim keeps some state in static fields: the log file of every variant also contains the log messages of the
+ * variants running at the same time, and {@code MatsimRandom} is shared, so runs are not reproducible one by one.
+ * Use separate {@link RunBetScenario} processes when this matters.
+ */
+public final class RunBetSweep {
+    private static final Logger log = LogManager.getLogger(RunBetSweep.class);
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("usage: RunBetSweep <threadBudget> <parallelVariants> <variantConfig>...");
+        }
+        int threadBudget = Integer.parseInt(args[0]);
+        int parallelVariants = Integer.parseInt(args[1]);
+
+        List<Config> configs = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            Config config = ConfigUtils.loadConfig(args[i]);
+            config.addModule(new EvConfigGroup());
+            String name = (i - 2) + "_" + new File(args[i]).getName().replaceFirst("\\.xml(\\.gz)?$", "");
+            config.controller().setOutputDirectory(config.controller().getOutputDirectory() + "/" + name);
+            config.controller().setOverwriteFileSetting(OverwriteFileSetting.deleteDirectoryIfExists);
+            configs.add(config);
+        }
+        run(configs, threadBudget, parallelVariants);
+    }
+
+    public static void run(List<Config> configs, int threadBudget, int parallelVariants) throws InterruptedException {
+        int parallel = Math.max(1, Math.min(parallelVariants, configs.size()));
+        int threadsPerVariant = Math.max(1, threadBudget / parallel);
+        log.info("running " + configs.size() + " variants, " + parallel + " at a time with " + threadsPerVariant
+                + " threads each");
+
+        Network network = loadSharedNetwork(configs);
+        SingleModeNetworksCache singleModeNetworksCache = new SingleModeNetworksCache();
+        List<LeastCostPathCalculatorFactory> pathCalculatorFactories = createSharedPathCalculatorFactories(configs);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallel);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int i = 0; i < configs.size(); i++) {
+                Config config = configs.get(i);
+                LeastCostPathCalculatorFactory pathCalculatorFactory = pathCalculatorFactories.get(i);
+                config.global().setNumberOfThreads(threadsPerVariant);
+                config.qsim().setNumberOfThreads(threadsPerVariant);
+                runs.add(executor.submit(() -> runVariant(config, network, singleModeNetworksCache, pathCalculatorFactory)));
+            }
+            List<String> failed = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i++) {
+                try {
+                    runs.get(i).get();
+                } catch (ExecutionException e) {
+                    log.error("variant " + configs.get(i).controller().getOutputDirectory() + " failed", e.getCause());
+                    failed.add(configs.get(i).controller().getOutputDirectory());
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new RuntimeException("failed variants: " + failed);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void runVariant(Config config, Network network, SingleModeNetworksCache singleModeNetworksCache,
+                                   LeastCostPathCalculatorFactory pathCalculatorFactory) {
+        ParallelScenarioLoader loader = new ParallelScenarioLoader(config, network);
+        Scenario scenario = loader.loadScenario();
+
+        Controler controler = RunBetScenario.createControler(scenario, loader.getChargingInfrastructureSpecification());
+        controler.addOverridingModule(new AbstractModule() {
+            @Override
+            public void install() {
+                bind(SingleModeNetworksCache.class).toInstance(singleModeNetworksCache);
+                if (pathCalculatorFactory != null) {
+                    bind(LeastCostPathCalculatorFactory.class).toInstance(pathCalculatorFactory);
+                }
+            }
+        });
+        controler.run();
+    }
+
+    private static Network loadSharedNetwork(List<Config> configs) {
+        Config first = configs.get(0);
+        URL url = first.network().getInputFileURL(first.getContext());
+        for (Config config : configs) {
+            if (!url.equals(config.network().getInputFileURL(config.getContext()))) {
+                throw new IllegalArgumentException("all variants have to use the same network, but "
+                        + config.controller().getOutputDirectory() + " uses " + config.network().getInputFile());
+            }
+        }
+        Network network = NetworkUtils.createNetwork(first);
+        new MatsimNetworkReader(first.network().getInputCRS(), first.global().getCoordinateSystem(), network).readURL(url);
+        return network;
+    }
+
+    /**
+     * The speedy ALT factory caches its graph and landmarks per network, so with the shared filtered networks one
+     * instance can serve several variants. The landmarks are computed with the travel disutility of the first variant
+     * using them, so a factory is only shared between variants with the same scoring, routing and travel time
+     * parameters. Variants with other routing algorithms get none (null) and create their own.
+     */
+    private static List<LeastCostPathCalculatorFactory> createSharedPathCalculatorFactories(List<Config> configs) {
+        Map<String, LeastCostPathCalculatorFactory> factoriesByDisutilityParams = new HashMap<>();
+        List<LeastCostPathCalculatorFactory> factories = new ArrayList<>();
+        for (Config config : configs) {
+            if (!config.routing().getRoutingAlgorithmType().name().equals("SpeedyALT")) {
+                factories.add(null);
+                continue;
+            }
+            String disutilityParams = describe(config.scoring()) + describe(config.routing())
+                    + describe(config.travelTimeCalculator());
+            factories.add(factoriesByDisutilityParams.computeIfAbsent(disutilityParams,
+                    params -> createSynchronizedSpeedyALTFactory()));
+        }
+        log.info(factoriesByDisutilityParams.size() + " shared SpeedyALT factories for " + configs.size() + " variants");
+        return factories;
+    }
+
+    private static LeastCostPathCalculatorFactory createSynchronizedSpeedyALTFactory() {
+        SpeedyALTFactory delegate = new SpeedyALTFactory();
+        return new LeastCostPathCalculatorFactory() {
+            // path calculators are created rarely (once per routing module), the lock only protects the caches
+            @Override
+            public synchronized LeastCostPathCalculator createPathCalculator(Network network,
+                    TravelDisutility travelCosts, TravelTime travelTimes) {
+                return delegate.createPathCalculator(network, travelCosts, travelTimes);
+            }
+        };
+    }
+
+    private static String describe(ConfigGroup group) {
+        StringBuilder description = new StringBuilder(group.getName()).append(new TreeMap<>(group.getParams()));
+        group.getParameterSets().forEach((type, sets) -> {
+            for (ConfigGroup set : sets) {
+                description.append(describe(set));
+            }
+        });
+        return description.toString();
+    }
+}
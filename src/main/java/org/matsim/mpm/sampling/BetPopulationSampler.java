@@ -0,0 +1,209 @@
+package org.matsim.mpm.sampling;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationWriter;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.infrastructure.*;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.routing.MpmEvNetworkRoutingModule;
+import org.matsim.vehicles.MatsimVehicleReader;
+import org.matsim.vehicles.MatsimVehicleWriter;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.File;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Draws a stratified sample of a BET scenario and scales the supply side to it, so that a 5-10 % run has the same
+ * charger utilisation and road load as the full population.
+ * <p>
+ * Strata are the combinations of origin region (square grid cell of the first activity), distance class (beeline
+ * between first and last activity) and vehicle type. Every stratum contributes {@code fraction} of its trucks, with
+ * random rounding so that small strata are represented without bias. The sample is written together with
+ * <ul>
+ * <li>the vehicles of the sampled trucks,</li>
+ * <li>the chargers with {@code plug_count} scaled by the fraction, rounded and at least one plug; chargers with only a
+ * few plugs thus keep more than their share (a single plug charger keeps its plug),</li>
+ * <li>a config with flow and storage capacity factors and {@code mpmEv.populationSampleFraction} multiplied by the
+ * fraction.</li>
+ * </ul>
+ * The queuing of such a run can be extrapolated back to full scale with
+ * {@link org.matsim.mpm.stats.ChargerQueueUpscaler}.
+ * <p>
+ * Usage: {@code BetPopulationSampler <config> <fraction> <outputDirectory> [seed] [regionCellSize]}
+ */
+public final class BetPopulationSampler {
+    private static final Logger log = LogManager.getLogger(BetPopulationSampler.class);
+
+    public static final double[] DISTANCE_CLASS_LIMITS = {100_000, 300_000, 500_000};
+    public static final double DEFAULT_REGION_CELL_SIZE = 100_000;
+
+    private final double fraction;
+    private final double regionCellSize;
+    private final Random random;
+
+    public BetPopulationSampler(double fraction, long seed, double regionCellSize) {
+        if (fraction <= 0 || fraction > 1) {
+            throw new IllegalArgumentException("fraction must be in (0, 1], but is " + fraction);
+        }
+        this.fraction = fraction;
+        this.regionCellSize = regionCellSize;
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("usage: BetPopulationSampler <config> <fraction> <outputDirectory> [seed] [regionCellSize]");
+        }
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 4711;
+        double cellSize = args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_REGION_CELL_SIZE;
+        new BetPopulationSampler(Double.parseDouble(args[1]), seed, cellSize).run(args[0], args[2]);
+    }
+
+    public void run(String configFile, String outputDirectory) {
+        Config config = ConfigUtils.loadConfig(configFile, new EvConfigGroup(), new MpmEvConfigGroup());
+        Scenario scenario = ScenarioUtils.createScenario(config);
+        new PopulationReader(scenario).readURL(config.plans().getInputFileURL(config.getContext()));
+        new MatsimVehicleReader(scenario.getVehicles()).readURL(config.vehicles().getVehiclesFileUrl(config.getContext()));
+        ChargingInfrastructureSpecification chargers = new ChargingInfrastructureSpecificationDefaultImpl();
+        new ChargerReader(chargers).readURL(ConfigGroup.getInputFileURL(config.getContext(), EvConfigGroup.get(config).chargersFile));
+
+        Set<Id<Person>> sample = drawSample(scenario);
+        log.info("sampled " + sample.size() + " of " + scenario.getPopulation().getPersons().size() + " trucks");
+        retainSample(scenario, sample);
+
+        new File(outputDirectory).mkdirs();
+        new PopulationWriter(scenario.getPopulation()).write(outputDirectory + "/plans.xml.gz");
+        new MatsimVehicleWriter(scenario.getVehicles()).writeFile(outputDirectory + "/vehicles.xml.gz");
+        new ChargerWriter(scaleChargers(chargers).getChargerSpecifications().values().stream())
+                .write(outputDirectory + "/chargers.xml");
+
+        // the network stays where it is
+        config.network().setInputFile(config.network().getInputFileURL(config.getContext()).toString());
+        config.plans().setInputFile("plans.xml.gz");
+        config.vehicles().setVehiclesFile("vehicles.xml.gz");
+        EvConfigGroup.get(config).chargersFile = "chargers.xml";
+        scaleCapacities(config);
+        ConfigUtils.writeConfig(config, outputDirectory + "/config.xml");
+    }
+
+    /**
+     * @return ids of the sampled persons
+     */
+    public Set<Id<Person>> drawSample(Scenario scenario) {
+        Map<String, List<Id<Person>>> strata = new TreeMap<>();
+        for (Person person : scenario.getPopulation().getPersons().values()) {
+            strata.computeIfAbsent(stratum(scenario, person), s -> new ArrayList<>()).add(person.getId());
+        }
+        Set<Id<Person>> sample = new HashSet<>();
+        for (Map.Entry<String, List<Id<Person>>> stratum : strata.entrySet()) {
+            List<Id<Person>> persons = stratum.getValue();
+            // sort before shuffling: the sample must only depend on the seed, not on the input order
+            persons.sort(Comparator.naturalOrder());
+            Collections.shuffle(persons, random);
+            double expected = persons.size() * fraction;
+            int count = (int)expected + (random.nextDouble() < expected - (int)expected ? 1 : 0);
+            sample.addAll(persons.subList(0, count));
+            log.debug("stratum " + stratum.getKey() + ": " + count + " of " + persons.size());
+        }
+        return sample;
+    }
+
+    /**
+     * Removes the persons not in the sample, and all vehicles that are not used by a sampled person.
+     */
+    public static void retainSample(Scenario scenario, Set<Id<Person>> sample) {
+        scenario.getPopulation().getPersons().keySet().stream()
+                .filter(id -> !sample.contains(id))
+                .toList()
+                .forEach(scenario.getPopulation()::removePerson);
+        Set<Id<Vehicle>> sampleVehicles = new HashSet<>();
+        for (Person person : scenario.getPopulation().getPersons().values()) {
+            sampleVehicles.addAll(getVehicleIds(person));
+        }
+        scenario.getVehicles().getVehicles().keySet().stream()
+                .filter(id -> !sampleVehicles.contains(id))
+                .toList()
+                .forEach(scenario.getVehicles()::removeVehicle);
+    }
+
+    /**
+     * @return the ids of the vehicles the ev routing looks up for the legs of the selected plan, see
+     * {@link MpmEvNetworkRoutingModule#getVehicleId}
+     */
+    static Set<Id<Vehicle>> getVehicleIds(Person person) {
+        Set<Id<Vehicle>> vehicleIds = new TreeSet<>();
+        for (Leg leg : TripStructureUtils.getLegs(person.getSelectedPlan())) {
+            vehicleIds.add(MpmEvNetworkRoutingModule.getVehicleId(person.getId(), leg.getMode()));
+        }
+        return vehicleIds;
+    }
+
+    String stratum(Scenario scenario, Person person) {
+        Plan plan = person.getSelectedPlan();
+        List<PlanElement> elements = plan.getPlanElements();
+        Coord origin = ((Activity)elements.get(0)).getCoord();
+        Coord destination = ((Activity)elements.get(elements.size() - 1)).getCoord();
+
+        String region = (int)Math.floor(origin.getX() / regionCellSize) + "_" + (int)Math.floor(origin.getY() / regionCellSize);
+        double distance = CoordUtils.calcEuclideanDistance(origin, destination);
+        int distanceClass = 0;
+        while (distanceClass < DISTANCE_CLASS_LIMITS.length && distance >= DISTANCE_CLASS_LIMITS[distanceClass]) {
+            distanceClass++;
+        }
+        String vehicleTypes = getVehicleIds(person).stream()
+                .map(scenario.getVehicles().getVehicles()::get)
+                .filter(Objects::nonNull)
+                .map(vehicle -> vehicle.getType().getId().toString())
+                .distinct()
+                .collect(Collectors.joining(","));
+        return region + "|" + distanceClass + "|" + (vehicleTypes.isEmpty() ? "none" : vehicleTypes);
+    }
+
+    public ChargingInfrastructureSpecification scaleChargers(ChargingInfrastructureSpecification chargers) {
+        ChargingInfrastructureSpecification scaled = new ChargingInfrastructureSpecificationDefaultImpl();
+        int keptOnePlug = 0;
+        for (ChargerSpecification charger : chargers.getChargerSpecifications().values()) {
+            int plugCount = (int)Math.round(charger.getPlugCount() * fraction);
+            if (plugCount < 1) {
+                plugCount = 1;// without plugs, the charger would never serve the trucks routed to it
+                keptOnePlug++;
+            }
+            scaled.addChargerSpecification(ImmutableChargerSpecification.newBuilder()
+                    .id(charger.getId())
+                    .linkId(charger.getLinkId())
+                    .chargerType(charger.getChargerType())
+                    .plugPower(charger.getPlugPower())
+                    .plugCount(plugCount)
+                    .build());
+        }
+        if (keptOnePlug > 0) {
+            log.warn(keptOnePlug + " of " + chargers.getChargerSpecifications().size() + " chargers keep one plug,"
+                    + " more than their share; their upscaled queuing is rather on the low side");
+        }
+        return scaled;
+    }
+
+    public void scaleCapacities(Config config) {
+        config.qsim().setFlowCapFactor(config.qsim().getFlowCapFactor() * fraction);
+        config.qsim().setStorageCapFactor(config.qsim().getStorageCapFactor() * fraction);
+        MpmEvConfigGroup.get(config).populationSampleFraction *= fraction;
+    }
+}
@@ -0,0 +1,240 @@
+package org.matsim.mpm.stats;
+
+import com.google.inject.Inject;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.ev.charging.*;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructure;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.MatsimServices;
+import org.matsim.core.events.MobsimScopeEventHandler;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.qsim.interfaces.MobsimTimer;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregates the number of charging and queued vehicles into a fixed grid of square cells and time bins. The counts
+ * are integrated over time whenever they change, so the result is the mean number of vehicles per cell and time bin;
+ * memory and output size depend on the grid (only cells containing chargers are stored) and not on the number of
+ * chargers or samples.
+ * <p>
+ * Written at the end of the mobsim, by the {@link EvOutputPipeline} if it is bound, to
+ * {@code <it>.ev_charger_occupancy_raster.bin.gz} (big endian):
+ * <pre>
+ * int magic, int version
+ * double minX, double minY, double cellSize, int columns, int rows
+ * double timeBinSize, int timeBins
+ * int cellCount, then per cell with chargers: long cellIndex (row * columns + column),
+ *     float[timeBins] mean charging vehicles, float[timeBins] mean queued vehicles
+ * </pre>
+ * Times after the last bin are added to the last bin, whose mean is then taken over the whole time it covers (up to the
+ * end of the mobsim) instead of over {@code timeBinSize}.
+ */
+public class ChargerOccupancyRasterCollector implements ChargingStartEventHandler, ChargingEndEventHandler,
+        QueuedAtChargerEventHandler, QuitQueueAtChargerEventHandler, MobsimScopeEventHandler,
+        MobsimBeforeCleanupListener {
+    public static final String FILE_NAME = "ev_charger_occupancy_raster.bin.gz";
+    private static final int MAGIC = 0x4d45_5652;// "MEVR"
+    private static final int VERSION = 2;
+    private static final double DEFAULT_HORIZON = 72 * 3600;
+
+    private final MatsimServices matsimServices;
+    private final MobsimTimer timer;
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final double timeBinSize;
+    private final int timeBins;
+
+    // cells are numbered densely over the cells containing chargers
+    private final Map<Id<Charger>, Integer> chargerCells = new HashMap<>();
+    private final long[] gridIndices;
+    private final Map<Id<Vehicle>, Integer> queuedVehicleCells = new HashMap<>();
+
+    // per cell
+    private final int[] charging;
+    private final int[] queued;
+    private final double[] lastChange;
+    // per cell and time bin, vehicle seconds
+    private final double[] chargingSeconds;
+    private final double[] queuedSeconds;
+    private double endTime;
+
+    @Inject(optional = true)
+    private EvOutputPipeline pipeline;
+
+    @Inject
+    ChargerOccupancyRasterCollector(ChargingInfrastructure chargingInfrastructure, Config config,
+                                    MatsimServices matsimServices, MobsimTimer timer) {
+        this.matsimServices = matsimServices;
+        this.timer = timer;
+        MpmEvConfigGroup mpmEvCfg = MpmEvConfigGroup.get(config);
+        this.cellSize = mpmEvCfg.chargerRasterCellSize;
+        this.timeBinSize = mpmEvCfg.chargerRasterTimeBinSize;
+        double horizon = config.qsim().getEndTime().orElse(DEFAULT_HORIZON);
+        this.timeBins = Math.max(1, (int)Math.ceil(horizon / timeBinSize));
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Charger charger : chargingInfrastructure.getChargers().values()) {
+            Coord coord = charger.getCoord();
+            minX = Math.min(minX, coord.getX());
+            minY = Math.min(minY, coord.getY());
+            maxX = Math.max(maxX, coord.getX());
+            maxY = Math.max(maxY, coord.getY());
+        }
+        if (chargingInfrastructure.getChargers().isEmpty()) {
+            minX = minY = maxX = maxY = 0;
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = (int)((maxX - minX) / cellSize) + 1;
+        this.rows = (int)((maxY - minY) / cellSize) + 1;
+        Map<Long, Integer> cellsByGridIndex = new HashMap<>();
+        for (Charger charger : chargingInfrastructure.getChargers().values()) {
+            Coord coord = charger.getCoord();
+            int column = (int)((coord.getX() - minX) / cellSize);
+            int row = (int)((coord.getY() - minY) / cellSize);
+            int cell = cellsByGridIndex.computeIfAbsent((long)row * columns + column, i -> cellsByGridIndex.size());
+            chargerCells.put(charger.getId(), cell);
+        }
+        this.gridIndices = new long[cellsByGridIndex.size()];
+        cellsByGridIndex.forEach((gridIndex, cell) -> gridIndices[cell] = gridIndex);
+
+        int cells = gridIndices.length;
+        this.charging = new int[cells];
+        this.queued = new int[cells];
+        this.lastChange = new double[cells];
+        this.chargingSeconds = new double[cells * timeBins];
+        this.queuedSeconds = new double[cells * timeBins];
+    }
+
+    @Override
+    public void handleEvent(ChargingStartEvent event) {
+        leaveQueue(event.getVehicleId(), event.getTime());
+        int cell = chargerCells.get(event.getChargerId());
+        advance(cell, event.getTime());
+        charging[cell]++;
+    }
+
+    @Override
+    public void handleEvent(ChargingEndEvent event) {
+        int cell = chargerCells.get(event.getChargerId());
+        advance(cell, event.getTime());
+        charging[cell]--;
+    }
+
+    @Override
+    public void handleEvent(QueuedAtChargerEvent event) {
+        int cell = chargerCells.get(event.getChargerId());
+        advance(cell, event.getTime());
+        queued[cell]++;
+        queuedVehicleCells.put(event.getVehicleId(), cell);
+    }
+
+    @Override
+    public void handleEvent(QuitQueueAtChargerEvent event) {
+        leaveQueue(event.getVehicleId(), event.getTime());
+    }
+
+    // a queued vehicle leaves the queue either by quitting or by being plugged, count it once
+    private void leaveQueue(Id<Vehicle> vehicleId, double time) {
+        Integer cell = queuedVehicleCells.remove(vehicleId);
+        if (cell != null) {
+            advance(cell, time);
+            queued[cell]--;
+        }
+    }
+
+    /**
+     * Adds the vehicle seconds of the current counts since their last change to the time bins up to {@code time}.
+     */
+    private void advance(int cell, double time) {
+        double from = lastChange[cell];
+        lastChange[cell] = time;
+        if (charging[cell] == 0 && queued[cell] == 0) {
+            return;
+        }
+        int offset = cell * timeBins;
+        while (from < time) {
+            int bin = Math.min((int)(from / timeBinSize), timeBins - 1);
+            double binEnd = bin == timeBins - 1 ? time : Math.min(time, (bin + 1) * timeBinSize);
+            double duration = binEnd - from;
+            chargingSeconds[offset + bin] += charging[cell] * duration;
+            queuedSeconds[offset + bin] += queued[cell] * duration;
+            from = binEnd;
+        }
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        finish(timer.getTimeOfDay());
+        String filename = matsimServices.getControlerIO().getIterationFilename(matsimServices.getIterationNumber(), FILE_NAME);
+        if (pipeline != null) {
+            // snapshot, late events may still be handled while writing
+            double[] chargingSnapshot = chargingSeconds.clone();
+            double[] queuedSnapshot = queuedSeconds.clone();
+            double endTimeSnapshot = endTime;
+            pipeline.submit(filename, () -> write(filename, chargingSnapshot, queuedSnapshot, endTimeSnapshot));
+        } else {
+            write(filename);
+        }
+    }
+
+    void finish(double endTime) {
+        for (int cell = 0; cell < charging.length; cell++) {
+            advance(cell, endTime);
+        }
+        this.endTime = endTime;
+    }
+
+    void write(String filename) {
+        write(filename, chargingSeconds, queuedSeconds, endTime);
+    }
+
+    private void write(String filename, double[] chargingSeconds, double[] queuedSeconds, double endTime) {
+        double lastBinStart = (timeBins - 1) * timeBinSize;
+        double lastBinDuration = Math.max(timeBinSize, endTime - lastBinStart);
+        try (DataOutputStream out = new DataOutputStream(IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(minX);
+            out.writeDouble(minY);
+            out.writeDouble(cellSize);
+            out.writeInt(columns);
+            out.writeInt(rows);
+            out.writeDouble(timeBinSize);
+            out.writeInt(timeBins);
+            out.writeInt(gridIndices.length);
+            for (int cell = 0; cell < gridIndices.length; cell++) {
+                out.writeLong(gridIndices[cell]);
+                int offset = cell * timeBins;
+                for (int bin = 0; bin < timeBins; bin++) {
+                    out.writeFloat((float)(chargingSeconds[offset + bin] / binDuration(bin, lastBinDuration)));
+                }
+                for (int bin = 0; bin < timeBins; bin++) {
+                    out.writeFloat((float)(queuedSeconds[offset + bin] / binDuration(bin, lastBinDuration)));
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private double binDuration(int bin, double lastBinDuration) {
+        return bin == timeBins - 1 ? lastBinDuration : timeBinSize;
+    }
+}
@@ -0,0 +1,116 @@
+package org.matsim.mpm.stats;
+
+import com.google.inject.Inject;
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.MatsimServices;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.mpm.MpmEvConfigGroup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Extrapolates the queuing of a run with a population sample (see
+ * {@link org.matsim.mpm.sampling.BetPopulationSampler}) to the full population, per charger, with 95 % sampling
+ * bands. Written at the end of the mobsim to {@code <it>.ev_charger_queuing_upscaled.csv.gz} if
+ * {@code mpmEv.populationSampleFraction} is below 1.
+ * <p>
+ * Every arrival at a charger with a wait (until plugged in or given up, see
+ * {@link ChargerQueuingCollector#getVisits()}) counts as a queuing truck. Each truck of the full population is taken to
+ * be in the sample with probability {@code f}. The number of queuing trucks and the total waiting time are then
+ * estimated as sample value / f, with variance sum(x^2) (1 - f) / f^2 (x = 1 for counts, the waiting time for the
+ * total). The mean waiting time is taken over as is, with the standard error of the sample mean. The bands are the
+ * normal approximation of the sampling noise, +-1.96 standard errors; they are no proper confidence intervals for
+ * chargers with only a few queued trucks in the sample.
+ * <p>
+ * They also do not cover anything but the sampling noise. The plug counts of the sample run are rounded and kept at
+ * one plug at least, so they are only roughly proportional: a single plug charger keeps its plug at any fraction and
+ * queues far less than at full scale, its estimates are on the low side. Chargers with many plugs are scaled about
+ * proportionally, but a charger with fewer plugs queues more at the same utilisation, so their estimates are rather on
+ * the high side for small fractions.
+ */
+public class ChargerQueueUpscaler implements MobsimBeforeCleanupListener {
+    public static final String FILE_NAME = "ev_charger_queuing_upscaled.csv.gz";
+    private static final double Z_95 = 1.96;
+
+    public record UpscaledQueuing(Id<Charger> chargerId, int sampleCount, double count, double countBandLower,
+                                  double countBandUpper, double meanWait, double meanWaitBandLower,
+                                  double meanWaitBandUpper, double totalWait, double totalWaitBandLower,
+                                  double totalWaitBandUpper) {
+        @Override
+        public String toString() {
+            return chargerId + ";" + sampleCount + ";" + count + ";" + countBandLower + ";" + countBandUpper + ";"
+                    + meanWait + ";" + meanWaitBandLower + ";" + meanWaitBandUpper + ";" + totalWait + ";"
+                    + totalWaitBandLower + ";" + totalWaitBandUpper;
+        }
+    }
+
+    private final ChargerQueuingCollector chargerQueuingCollector;
+    private final MatsimServices matsimServices;
+    private final double fraction;
+
+    @Inject
+    ChargerQueueUpscaler(ChargerQueuingCollector chargerQueuingCollector, MatsimServices matsimServices, Config config) {
+        this.chargerQueuingCollector = chargerQueuingCollector;
+        this.matsimServices = matsimServices;
+        this.fraction = MpmEvConfigGroup.get(config).populationSampleFraction;
+    }
+
+    public static List<UpscaledQueuing> upscale(List<ChargerQueuingCollector.ChargerVisit> visits, double fraction) {
+        Map<Id<Charger>, List<Double>> waits = new TreeMap<>();
+        for (ChargerQueuingCollector.ChargerVisit visit : visits) {
+            if (visit.wait() > 0) {
+                waits.computeIfAbsent(visit.chargerId(), id -> new ArrayList<>()).add(visit.wait());
+            }
+        }
+
+        List<UpscaledQueuing> result = new ArrayList<>();
+        waits.forEach((chargerId, chargerWaits) -> {
+            int n = chargerWaits.size();
+            double sum = 0;
+            double sumOfSquares = 0;
+            for (double wait : chargerWaits) {
+                sum += wait;
+                sumOfSquares += wait * wait;
+            }
+
+            double count = n / fraction;
+            double countError = Z_95 * Math.sqrt(n * (1 - fraction)) / fraction;
+
+            double mean = sum / n;
+            double variance = n > 1 ? (sumOfSquares - n * mean * mean) / (n - 1) : 0;
+            double meanError = Z_95 * Math.sqrt(Math.max(variance, 0) / n);
+
+            double total = sum / fraction;
+            double totalError = Z_95 * Math.sqrt(sumOfSquares * (1 - fraction)) / fraction;
+
+            result.add(new UpscaledQueuing(chargerId, n, count, Math.max(n, count - countError), count + countError,
+                    mean, Math.max(0, mean - meanError), mean + meanError,
+                    total, Math.max(sum, total - totalError), total + totalError));
+        });
+        return result;
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        String filename = matsimServices.getControlerIO().getIterationFilename(matsimServices.getIterationNumber(), FILE_NAME);
+        try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+            writer.write("chargerId;sampleQueuedVehicles;queuedVehicles;queuedVehiclesNormalBandLower;"
+                    + "queuedVehiclesNormalBandUpper;meanWait;meanWaitNormalBandLower;meanWaitNormalBandUpper;totalWait;"
+                    + "totalWaitNormalBandLower;totalWaitNormalBandUpper");
+            writer.newLine();
+            for (UpscaledQueuing queuing : upscale(chargerQueuingCollector.getVisits(), fraction)) {
+                writer.write(queuing.toString());
+                writer.newLine();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -3,12 +3,13 @@ package org.matsim.mpm.stats;
 import com.google.inject.Inject;
 import org.matsim.api.core.v01.Id;
 
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.ChargingStartEventHandler;
 import org.matsim.contrib.ev.charging.QueuedAtChargerEvent;
 import org.matsim.contrib.ev.charging.QueuedAtChargerEventHandler;
 import org.matsim.contrib.ev.charging.QuitQueueAtChargerEvent;
 import org.matsim.contrib.ev.charging.QuitQueueAtChargerEventHandler;
 import org.matsim.contrib.ev.fleet.ElectricFleet;
-import org.matsim.contrib.ev.fleet.ElectricVehicle;
 import org.matsim.contrib.ev.infrastructure.Charger;
 import org.matsim.contrib.ev.infrastructure.ChargingInfrastructure;
 import org.matsim.core.events.MobsimScopeEventHandler;
@@ -21,17 +22,29 @@ import java.util.List;
 import java.util.Map;
 
 
-public class ChargerQueuingCollector implements QueuedAtChargerEventHandler, QuitQueueAtChargerEventHandler, MobsimScopeEventHandler {
+public class ChargerQueuingCollector implements QueuedAtChargerEventHandler, QuitQueueAtChargerEventHandler,
+        ChargingStartEventHandler, MobsimScopeEventHandler {
     private final ChargingInfrastructure chargingInfrastructure;
     private final ElectricFleet fleet;
 
-    private record TimeQueue(double time, double queue) {
+    // no battery charge here: on an ev event lane, the battery may already be charged further than at the event
+    private record TimeQueue(double time) {
     }
 
     private final Map<Id<Vehicle>, TimeQueue> queueBeginQueue = new HashMap<>();
 
     private final List<QueuingLogEntry> logList = new ArrayList<>();
 
+    /**
+     * One arrival of a vehicle at a charger, with the time it waited until it was plugged in or gave up (0 if it was
+     * plugged in right away).
+     */
+    public record ChargerVisit(Id<Charger> chargerId, double arrivalTime, double wait) {
+    }
+
+    private final List<ChargerVisit> visits = new ArrayList<>();
+    private final Map<Id<Vehicle>, Double> queueQuits = new HashMap<>();
+
     @Inject
     public ChargerQueuingCollector(ChargingInfrastructure chargingInfrastructure, ElectricFleet fleet) {
         this.fleet = fleet;
@@ -47,6 +60,8 @@ public class ChargerQueuingCollector implements QueuedAtChargerEventHandler, Qui
                     event.getVehicleId()
             );
             logList.add(loge);
+            visits.add(new ChargerVisit(event.getChargerId(), queuingStart.time, event.getTime() - queuingStart.time));
+            queueQuits.put(event.getVehicleId(), event.getTime());
         }else
             throw new NullPointerException(event.getVehicleId().toString() +
                     " has never started queuing");
@@ -54,17 +69,34 @@ public class ChargerQueuingCollector implements QueuedAtChargerEventHandler, Qui
 
     @Override
     public void handleEvent(QueuedAtChargerEvent event) {
-        ElectricVehicle ev = this.fleet.getElectricVehicles().get(event.getVehicleId());
-        if (ev != null) {
-            this.queueBeginQueue.put(event.getVehicleId(),
-                    new TimeQueue(event.getTime(), ev.getBattery().getCharge())
-            );
+        if (this.fleet.getElectricVehicles().containsKey(event.getVehicleId())) {
+            this.queueBeginQueue.put(event.getVehicleId(), new TimeQueue(event.getTime()));
         } else
             throw new NullPointerException(event.getVehicleId().toString() + " is not in list");
     }
 
+    @Override
+    public void handleEvent(ChargingStartEvent event) {
+        TimeQueue queuingStart = queueBeginQueue.remove(event.getVehicleId());
+        Double queueQuit = queueQuits.remove(event.getVehicleId());
+        if (queuingStart != null) {
+            // taken from the queue without a QuitQueueAtChargerEvent
+            visits.add(new ChargerVisit(event.getChargerId(), queuingStart.time, event.getTime() - queuingStart.time));
+        } else if (queueQuit == null || queueQuit < event.getTime()) {
+            // plugged in right away (a quit at the same time is the promotion from the queue, already counted)
+            visits.add(new ChargerVisit(event.getChargerId(), event.getTime(), 0));
+        }
+    }
+
     public List<QueuingLogEntry> getLogList(){ return logList;}
 
+    /**
+     * @return all arrivals at chargers whose waiting has ended, including those without waiting
+     */
+    public List<ChargerVisit> getVisits() {
+        return visits;
+    }
+
     public static class QueuingLogEntry implements Comparable<QueuingLogEntry> {
         private final double queueStart;
         private final double queueEnd;
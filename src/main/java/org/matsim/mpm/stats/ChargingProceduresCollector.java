@@ -0,0 +1,78 @@
+package org.matsim.mpm.stats;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.ev.charging.*;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.core.events.MobsimScopeEventHandler;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects one immutable {@link ChargingProcedure} per completed plug-in, including the queuing before it (NaN if the
+ * vehicle was plugged in right away). Unlike the
+ * {@link ChargingEventSequenceCollector} it lives in mobsim scope, so its results can be written while the next
+ * iteration is already running.
+ */
+public class ChargingProceduresCollector implements QueuedAtChargerEventHandler, QuitQueueAtChargerEventHandler,
+        ChargingStartEventHandler, ChargingEndEventHandler, MobsimScopeEventHandler {
+
+    public record ChargingProcedure(Id<Vehicle> vehicleId, Id<Charger> chargerId, double queueStart,
+                                    double chargingStart, double chargingEnd, double startCharge, double endCharge) {
+        public String toString() {
+            return vehicleId + ";" + chargerId + ";" + (Double.isNaN(queueStart) ? "" : Time.writeTime(queueStart))
+                    + ";" + Time.writeTime(chargingStart) + ";" + Time.writeTime(chargingEnd)
+                    + ";" + startCharge + ";" + endCharge;
+        }
+    }
+
+    private record OngoingCharging(double queueStart, double chargingStart, double startCharge) {
+    }
+
+    private final Map<Id<Vehicle>, Double> queueStarts = new HashMap<>();
+    private final Map<Id<Vehicle>, Double> queueQuits = new HashMap<>();
+    private final Map<Id<Vehicle>, OngoingCharging> ongoing = new HashMap<>();
+    private final List<ChargingProcedure> procedures = new ArrayList<>();
+
+    @Override
+    public void handleEvent(QueuedAtChargerEvent event) {
+        queueStarts.put(event.getVehicleId(), event.getTime());
+        queueQuits.remove(event.getVehicleId());
+    }
+
+    @Override
+    public void handleEvent(QuitQueueAtChargerEvent event) {
+        queueQuits.put(event.getVehicleId(), event.getTime());
+    }
+
+    @Override
+    public void handleEvent(ChargingStartEvent event) {
+        Double queueStart = queueStarts.remove(event.getVehicleId());
+        Double queueQuit = queueQuits.remove(event.getVehicleId());
+        if (queueQuit != null && queueQuit < event.getTime()) {
+            queueStart = null;// gave up queuing earlier, this is a new plug-in
+        }
+        ongoing.put(event.getVehicleId(), new OngoingCharging(queueStart == null ? Double.NaN : queueStart,
+                event.getTime(), event.getCharge()));
+    }
+
+    @Override
+    public void handleEvent(ChargingEndEvent event) {
+        OngoingCharging start = ongoing.remove(event.getVehicleId());
+        if (start != null) {
+            procedures.add(new ChargingProcedure(event.getVehicleId(), event.getChargerId(), start.queueStart(),
+                    start.chargingStart(), event.getTime(), start.startCharge(), event.getCharge()));
+        }
+    }
+
+    /**
+     * @return a copy that stays valid after the mobsim
+     */
+    public List<ChargingProcedure> snapshot() {
+        return List.copyOf(procedures);
+    }
+}
@@ -0,0 +1,109 @@
+package org.matsim.mpm.stats;
+
+import com.google.inject.Inject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.mpm.MpmEvConfigGroup;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded background executor for the ev outputs. Writers hand in tasks that only touch immutable snapshots. If the
+ * queue is full, the submitting thread writes itself, which keeps the number of snapshots in memory bounded.
+ * <p>
+ * All pending outputs are written before the controler shuts down; failures are rethrown there. Tasks submitted after
+ * the shutdown are written by the submitting thread. Outputs submitted with {@link #submitBeforeIterationEnd} are
+ * awaited at the end of their iteration.
+ */
+public final class EvOutputPipeline implements IterationEndsListener, ShutdownListener {
+    private static final Logger log = LogManager.getLogger(EvOutputPipeline.class);
+
+    private final ThreadPoolExecutor executor;
+    private final Queue<Future<?>> iterationOutputs = new ConcurrentLinkedQueue<>();
+    private volatile Throwable failure;
+
+    @Inject
+    EvOutputPipeline(Config config) {
+        MpmEvConfigGroup mpmEvCfg = MpmEvConfigGroup.get(config);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(mpmEvCfg.evOutputThreads, mpmEvCfg.evOutputThreads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(mpmEvCfg.evOutputQueueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "ev-output-" + threadCounter.getAndIncrement());
+            thread.setDaemon(false);// make sure the outputs are written even if the main thread dies
+            return thread;
+        }, (runnable, executor) -> runnable.run());// unlike the CallerRunsPolicy, this also runs after shutdown
+    }
+
+    public void submit(String description, Runnable task) {
+        if (failure != null) {
+            throw new RuntimeException("writing ev outputs failed", failure);
+        }
+        if (executor.isShutdown()) {
+            // e.g. outputs of a cleanup listener running after the controler shutdown: write right away, failures go
+            // to the caller because nobody waits for the pipeline any more
+            task.run();
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.error("writing " + description + " failed", t);
+                failure = t;
+            }
+        });
+    }
+
+    /**
+     * For writers that look up the iteration (e.g. of their output file) only when writing: the output is written
+     * before the iteration ends, i.e. while the rest of the iteration end (scoring, replanning, events and plans
+     * outputs) goes on.
+     */
+    public void submitBeforeIterationEnd(String description, Runnable task) {
+        if (executor.isShutdown()) {
+            submit(description, task);
+            return;
+        }
+        FutureTask<Void> output = new FutureTask<>(task, null);
+        iterationOutputs.add(output);
+        submit(description, output);
+    }
+
+    @Override
+    public void notifyIterationEnds(IterationEndsEvent event) {
+        Future<?> output;
+        while ((output = iterationOutputs.poll()) != null) {
+            try {
+                output.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("writing ev outputs failed", e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void notifyShutdown(ShutdownEvent event) {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("waiting for " + (executor.getQueue().size() + executor.getActiveCount()) + " ev outputs to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (failure != null) {
+            throw new RuntimeException("writing ev outputs failed", failure);
+        }
+    }
+}
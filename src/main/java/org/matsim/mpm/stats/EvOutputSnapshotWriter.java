@@ -0,0 +1,68 @@
+package org.matsim.mpm.stats;
+
+import com.google.inject.Inject;
+import org.matsim.core.controler.MatsimServices;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.utils.io.IOUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Takes snapshots of the ev collectors at the end of the mobsim and hands the writing over to the
+ * {@link EvOutputPipeline}.
+ */
+public class EvOutputSnapshotWriter implements MobsimBeforeCleanupListener {
+    public static final String CHARGING_PROCEDURES_FILE = "ev_charging_procedures.csv.gz";
+    public static final String CHARGER_QUEUING_FILE = "ev_charger_queuing.csv.gz";
+
+    private final ChargingProceduresCollector chargingProceduresCollector;
+    private final ChargerQueuingCollector chargerQueuingCollector;
+    private final EvOutputPipeline pipeline;
+    private final MatsimServices matsimServices;
+
+    @Inject
+    EvOutputSnapshotWriter(ChargingProceduresCollector chargingProceduresCollector,
+                           ChargerQueuingCollector chargerQueuingCollector, EvOutputPipeline pipeline,
+                           MatsimServices matsimServices) {
+        this.chargingProceduresCollector = chargingProceduresCollector;
+        this.chargerQueuingCollector = chargerQueuingCollector;
+        this.pipeline = pipeline;
+        this.matsimServices = matsimServices;
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        int iteration = matsimServices.getIterationNumber();
+
+        List<ChargingProceduresCollector.ChargingProcedure> procedures = chargingProceduresCollector.snapshot();
+        String proceduresFile = matsimServices.getControlerIO().getIterationFilename(iteration, CHARGING_PROCEDURES_FILE);
+        pipeline.submit(proceduresFile, () -> write(proceduresFile,
+                "vehicleId;chargerId;queueStart;chargingStart;chargingEnd;startCharge;endCharge", procedures));
+
+        List<ChargerQueuingCollector.QueuingLogEntry> queuing = new ArrayList<>(chargerQueuingCollector.getLogList());
+        String queuingFile = matsimServices.getControlerIO().getIterationFilename(iteration, CHARGER_QUEUING_FILE);
+        pipeline.submit(queuingFile, () -> {
+            Collections.sort(queuing);
+            write(queuingFile, "chargerId;queueStart;queueEnd;queueDuration;x;y;vehicleId", queuing);
+        });
+    }
+
+    private static void write(String filename, String header, List<?> lines) {
+        try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+            writer.write(header);
+            writer.newLine();
+            for (Object line : lines) {
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
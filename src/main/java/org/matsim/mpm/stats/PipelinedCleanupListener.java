@@ -0,0 +1,88 @@
+package org.matsim.mpm.stats;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimListener;
+
+import java.util.function.Function;
+
+/**
+ * Hands the cleanup of a mobsim listener over to the {@link EvOutputPipeline}, for the collectors of the ev contrib
+ * (time profiles, charger occupancy xy data) that sample during the mobsim and write their outputs at cleanup. The
+ * other notifications are passed on right away.
+ * <p>
+ * These collectors look up the iteration of their output files only when writing, so their outputs are written before
+ * the iteration ends. At cleanup, they must only write what they have sampled.
+ */
+public final class PipelinedCleanupListener implements MobsimInitializedListener, MobsimBeforeSimStepListener,
+        MobsimAfterSimStepListener, MobsimBeforeCleanupListener {
+    private final String description;
+    private final MobsimListener delegate;
+    private final EvOutputPipeline pipeline;
+
+    PipelinedCleanupListener(String description, MobsimListener delegate, EvOutputPipeline pipeline) {
+        this.description = description;
+        this.delegate = delegate;
+        this.pipeline = pipeline;
+    }
+
+    @Override
+    public void notifyMobsimInitialized(MobsimInitializedEvent e) {
+        if (delegate instanceof MobsimInitializedListener listener) {
+            listener.notifyMobsimInitialized(e);
+        }
+    }
+
+    @Override
+    public void notifyMobsimBeforeSimStep(MobsimBeforeSimStepEvent e) {
+        if (delegate instanceof MobsimBeforeSimStepListener listener) {
+            listener.notifyMobsimBeforeSimStep(e);
+        }
+    }
+
+    @Override
+    public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
+        if (delegate instanceof MobsimAfterSimStepListener listener) {
+            listener.notifyMobsimAfterSimStep(e);
+        }
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        if (delegate instanceof MobsimBeforeCleanupListener listener) {
+            pipeline.submitBeforeIterationEnd(description, () -> listener.notifyMobsimBeforeCleanup(e));
+        }
+    }
+
+    /**
+     * To be bound as a qsim component; a new provider is needed for every qsim injector.
+     */
+    public static final class PipelinedCleanupProvider implements Provider<MobsimListener> {
+        private final String description;
+        private final Function<Injector, MobsimListener> delegateFactory;
+
+        @Inject
+        private Injector injector;
+        @Inject
+        private EvOutputPipeline pipeline;
+
+        public PipelinedCleanupProvider(String description, Function<Injector, MobsimListener> delegateFactory) {
+            this.description = description;
+            this.delegateFactory = delegateFactory;
+        }
+
+        @Override
+        public MobsimListener get() {
+            return new PipelinedCleanupListener(description, delegateFactory.apply(injector), pipeline);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.matsim.mpm.telemetry;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.events.StartupEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.controler.listener.StartupListener;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters behind the {@link EvTelemetryMXBean}. They are written by the mobsim handlers ({@link EvTelemetryCollector},
+ * {@link SocTelemetryCollector}) and the routing, and read by the JMX thread, so they are all atomics or volatile; rates
+ * are computed when they are read.
+ * <p>
+ * Only bound if {@code mpmEv.telemetry} is switched on, otherwise nothing of this is created or called.
+ */
+public final class EvTelemetry implements EvTelemetryMXBean, StartupListener, IterationStartsListener, ShutdownListener {
+    private static final Logger log = LogManager.getLogger(EvTelemetry.class);
+
+    public static final String OBJECT_NAME = "org.matsim.mpm:type=EvTelemetry";
+    public static final int SOC_BIN_PERCENT = 10;
+    private static final int SOC_BINS = 100 / SOC_BIN_PERCENT;
+
+    private volatile int iteration = -1;
+    private volatile double simTime = Double.NaN;
+    private volatile double mobsimStartSimTime = Double.NaN;
+    private volatile long mobsimStartNanos;
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder routedTrips = new LongAdder();
+    private final AtomicLongArray socHistogram = new AtomicLongArray(SOC_BINS);
+    private final Map<Id<Charger>, ChargerCounts> chargerCounts = new ConcurrentHashMap<>();
+
+    private final Rate eventRate = new Rate();
+    private final Rate routingRate = new Rate();
+    private ObjectName objectName;
+
+    static final class ChargerCounts {
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger charging = new AtomicInteger();
+    }
+
+    @Override
+    public void notifyStartup(StartupEvent event) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName)) {
+                // e.g. several RunBetSweep variants in one jvm: only the first one is visible
+                log.warn(OBJECT_NAME + " is already registered, telemetry of this run is not exposed");
+                objectName = null;
+                return;
+            }
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void notifyIterationStarts(IterationStartsEvent event) {
+        iteration = event.getIteration();
+    }
+
+    @Override
+    public void notifyShutdown(ShutdownEvent event) {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.warn("could not unregister " + OBJECT_NAME, e);
+            }
+        }
+    }
+
+    // ----- updates (mobsim and routing threads) -----
+
+    void mobsimStarted(double now) {
+        mobsimStartSimTime = now;
+        mobsimStartNanos = System.nanoTime();
+        simTime = now;
+        chargerCounts.clear();
+    }
+
+    void resetSocHistogram() {
+        for (int i = 0; i < SOC_BINS; i++) {
+            socHistogram.set(i, 0);
+        }
+    }
+
+    void setSimTime(double now) {
+        simTime = now;
+    }
+
+    void countEvent() {
+        events.increment();
+    }
+
+    ChargerCounts getChargerCounts(Id<Charger> chargerId) {
+        return chargerCounts.computeIfAbsent(chargerId, id -> new ChargerCounts());
+    }
+
+    static int socBin(double soc) {
+        return Math.max(0, Math.min(SOC_BINS - 1, (int)(soc * SOC_BINS)));
+    }
+
+    void moveSoc(int fromBin, int toBin) {
+        if (fromBin != toBin) {
+            if (fromBin >= 0) {
+                socHistogram.decrementAndGet(fromBin);
+            }
+            socHistogram.incrementAndGet(toBin);
+        }
+    }
+
+    /**
+     * Called by the ev routing for every routed trip.
+     */
+    public void countRoutedTrip() {
+        routedTrips.increment();
+    }
+
+    // ----- EvTelemetryMXBean (JMX thread) -----
+
+    @Override
+    public int getIteration() {
+        return iteration;
+    }
+
+    @Override
+    public double getSimTime() {
+        return simTime;
+    }
+
+    @Override
+    public double getRealTimeFactor() {
+        double wallSeconds = (System.nanoTime() - mobsimStartNanos) / 1e9;
+        return Double.isNaN(mobsimStartSimTime) || wallSeconds <= 0 ? Double.NaN : (simTime - mobsimStartSimTime) / wallSeconds;
+    }
+
+    @Override
+    public double getEventsPerSecond() {
+        return eventRate.update(events.sum());
+    }
+
+    @Override
+    public long getEventCount() {
+        return events.sum();
+    }
+
+    @Override
+    public long[] getSocHistogram() {
+        long[] histogram = new long[SOC_BINS];
+        for (int i = 0; i < SOC_BINS; i++) {
+            histogram[i] = socHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    @Override
+    public Map<String, Integer> getQueuedVehiclesPerCharger() {
+        Map<String, Integer> queued = new TreeMap<>();
+        chargerCounts.forEach((id, counts) -> {
+            if (counts.queued.get() > 0) {
+                queued.put(id.toString(), counts.queued.get());
+            }
+        });
+        return queued;
+    }
+
+    @Override
+    public Map<String, Integer> getChargingVehiclesPerCharger() {
+        Map<String, Integer> charging = new TreeMap<>();
+        chargerCounts.forEach((id, counts) -> {
+            if (counts.charging.get() > 0) {
+                charging.put(id.toString(), counts.charging.get());
+            }
+        });
+        return charging;
+    }
+
+    @Override
+    public long getRoutedTrips() {
+        return routedTrips.sum();
+    }
+
+    @Override
+    public double getRoutedTripsPerSecond() {
+        return routingRate.update(routedTrips.sum());
+    }
+
+    private static final class Rate {
+        private long lastCount;
+        private long lastNanos = System.nanoTime();
+
+        synchronized double update(long count) {
+            long now = System.nanoTime();
+            double rate = (count - lastCount) / ((now - lastNanos) / 1e9);
+            lastCount = count;
+            lastNanos = now;
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.matsim.mpm.telemetry;
+
+import com.google.inject.Inject;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.contrib.ev.charging.ChargingEndEvent;
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.QueuedAtChargerEvent;
+import org.matsim.contrib.ev.charging.QuitQueueAtChargerEvent;
+import org.matsim.core.events.MobsimScopeEventHandler;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.interfaces.MobsimTimer;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Feeds sim time, event count and charger occupancy into the {@link EvTelemetry}.
+ * <p>
+ * A queued vehicle leaves the queue either with a {@link QuitQueueAtChargerEvent} or (with the contrib's charging
+ * logic) directly with its {@link ChargingStartEvent}, so the queued vehicles are tracked here to count each of them
+ * once.
+ */
+public class EvTelemetryCollector implements BasicEventHandler, MobsimScopeEventHandler, MobsimInitializedListener,
+        MobsimAfterSimStepListener {
+    private final EvTelemetry telemetry;
+    private final MobsimTimer timer;
+    private final Map<Id<Vehicle>, EvTelemetry.ChargerCounts> queuedVehicles = new HashMap<>();
+
+    @Inject
+    EvTelemetryCollector(EvTelemetry telemetry, MobsimTimer timer) {
+        this.telemetry = telemetry;
+        this.timer = timer;
+    }
+
+    @Override
+    public void notifyMobsimInitialized(MobsimInitializedEvent e) {
+        telemetry.mobsimStarted(timer.getTimeOfDay());
+    }
+
+    @Override
+    public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
+        telemetry.setSimTime(e.getSimulationTime());
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        telemetry.countEvent();
+        if (event instanceof QueuedAtChargerEvent queued) {
+            EvTelemetry.ChargerCounts counts = telemetry.getChargerCounts(queued.getChargerId());
+            counts.queued.incrementAndGet();
+            queuedVehicles.put(queued.getVehicleId(), counts);
+        } else if (event instanceof QuitQueueAtChargerEvent quit) {
+            leaveQueue(quit.getVehicleId());
+        } else if (event instanceof ChargingStartEvent start) {
+            leaveQueue(start.getVehicleId());
+            telemetry.getChargerCounts(start.getChargerId()).charging.incrementAndGet();
+        } else if (event instanceof ChargingEndEvent end) {
+            telemetry.getChargerCounts(end.getChargerId()).charging.decrementAndGet();
+        }
+    }
+
+    private void leaveQueue(Id<Vehicle> vehicleId) {
+        EvTelemetry.ChargerCounts counts = queuedVehicles.remove(vehicleId);
+        if (counts != null) {
+            counts.queued.decrementAndGet();
+        }
+    }
+}
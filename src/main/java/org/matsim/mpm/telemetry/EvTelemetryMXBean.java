@@ -0,0 +1,42 @@
+package org.matsim.mpm.telemetry;
+
+import java.util.Map;
+
+/**
+ * Live view on a running ev simulation, registered as {@value EvTelemetry#OBJECT_NAME} (e.g. for jconsole or
+ * VisualVM).
+ */
+public interface EvTelemetryMXBean {
+    int getIteration();
+
+    double getSimTime();
+
+    /**
+     * @return sim seconds per wall clock second since the start of the current mobsim
+     */
+    double getRealTimeFactor();
+
+    /**
+     * @return events per wall clock second since the previous call
+     */
+    double getEventsPerSecond();
+
+    long getEventCount();
+
+    /**
+     * @return number of vehicles per soc bin of {@value EvTelemetry#SOC_BIN_PERCENT} percent, the last bin includes
+     * full batteries
+     */
+    long[] getSocHistogram();
+
+    Map<String, Integer> getQueuedVehiclesPerCharger();
+
+    Map<String, Integer> getChargingVehiclesPerCharger();
+
+    long getRoutedTrips();
+
+    /**
+     * @return routed trips per wall clock second since the previous call
+     */
+    double getRoutedTripsPerSecond();
+}
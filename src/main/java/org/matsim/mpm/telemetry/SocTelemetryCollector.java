@@ -0,0 +1,58 @@
+package org.matsim.mpm.telemetry;
+
+import com.google.inject.Inject;
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.ev.charging.ChargingEndEvent;
+import org.matsim.contrib.ev.charging.ChargingEndEventHandler;
+import org.matsim.contrib.ev.discharging.DrivingEnergyConsumptionEvent;
+import org.matsim.contrib.ev.discharging.DrivingEnergyConsumptionEventHandler;
+import org.matsim.contrib.ev.fleet.ElectricFleet;
+import org.matsim.contrib.ev.fleet.ElectricVehicle;
+import org.matsim.core.events.MobsimScopeEventHandler;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the soc histogram of the {@link EvTelemetry} up to date. Only a change of the soc bin of a vehicle touches the
+ * shared counters.
+ */
+public class SocTelemetryCollector implements DrivingEnergyConsumptionEventHandler, ChargingEndEventHandler,
+        MobsimScopeEventHandler, MobsimInitializedListener {
+    private final EvTelemetry telemetry;
+    private final ElectricFleet fleet;
+    private final Map<Id<Vehicle>, Integer> socBins = new HashMap<>();
+
+    @Inject
+    SocTelemetryCollector(EvTelemetry telemetry, ElectricFleet fleet) {
+        this.telemetry = telemetry;
+        this.fleet = fleet;
+    }
+
+    @Override
+    public void notifyMobsimInitialized(MobsimInitializedEvent e) {
+        telemetry.resetSocHistogram();
+        for (ElectricVehicle ev : fleet.getElectricVehicles().values()) {
+            update(ev);
+        }
+    }
+
+    @Override
+    public void handleEvent(DrivingEnergyConsumptionEvent event) {
+        update(fleet.getElectricVehicles().get(event.getVehicleId()));
+    }
+
+    @Override
+    public void handleEvent(ChargingEndEvent event) {
+        update(fleet.getElectricVehicles().get(event.getVehicleId()));
+    }
+
+    private void update(ElectricVehicle ev) {
+        int bin = EvTelemetry.socBin(ev.getBattery().getSoc());
+        Integer previous = socBins.put(ev.getId(), bin);
+        telemetry.moveSoc(previous == null ? -1 : previous, bin);
+    }
+}
@@ -0,0 +1,157 @@
+package org.matsim.mpm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecification;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.router.DefaultRoutingRequest;
+import org.matsim.core.router.LinkWrapperFacility;
+import org.matsim.core.router.RoutingModule;
+import org.matsim.mpm.routing.BetCorridorFixture;
+import org.matsim.mpm.run.RunBetScenario;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.*;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Performance tier: measures routing and mobsim throughput on the {@link BetCorridorFixture} and fails if it drops
+ * below the stored baseline by more than {@code -Dperformance.tolerance} (default 0.2, i.e. 20 %).
+ * <p>
+ * Not part of the default build; run with {@code mvn test -Pperformance}. The baseline depends on the machine, record
+ * it there with {@code -Dperformance.recordBaseline=true}. Metrics without a recorded baseline (as shipped) are only
+ * logged and the test is skipped, so the tier passes until the baseline of the machine is recorded.
+ */
+@Tag("performance")
+public class EvPerformanceTest {
+	private static final Logger log = LogManager.getLogger(EvPerformanceTest.class);
+
+	private static final int ROUTING_TRUCKS = 200;
+	private static final int ROUTING_WARMUP_ROUNDS = 5;
+	private static final int ROUTING_ROUNDS = 20;
+	private static final int MOBSIM_TRUCKS = 500;
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils() ;
+
+	@Test
+	void testRoutingThroughput() {
+		Scenario scenario = BetCorridorFixture.createScenario(ConfigUtils.createConfig(new EvConfigGroup()), ROUTING_TRUCKS);
+		RoutingModule routingModule = BetCorridorFixture.createRoutingModule(scenario, BetCorridorFixture.createChargers());
+
+		for (int i = 0; i < ROUTING_WARMUP_ROUNDS; i++) {
+			routeAll(scenario, routingModule);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUTING_ROUNDS; i++) {
+			routeAll(scenario, routingModule);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		check("routing.tripsPerSecond", ROUTING_ROUNDS * ROUTING_TRUCKS / seconds);
+	}
+
+	private static void routeAll(Scenario scenario, RoutingModule routingModule) {
+		var from = new LinkWrapperFacility(scenario.getNetwork().getLinks().get(BetCorridorFixture.forward(1)));
+		var to = new LinkWrapperFacility(scenario.getNetwork().getLinks().get(BetCorridorFixture.forward(BetCorridorFixture.SEGMENTS)));
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			routingModule.calcRoute(DefaultRoutingRequest.withoutAttributes(from, to, 7.5 * 3600, person));
+		}
+	}
+
+	@Test
+	void testMobsimThroughput() {
+		Config config = BetCorridorFixture.createMobsimConfig(utils.getOutputDirectory());
+
+		Scenario scenario = BetCorridorFixture.createScenario(config, MOBSIM_TRUCKS);
+		ChargingInfrastructureSpecification chargers = BetCorridorFixture.createChargers();
+		Controler controler = RunBetScenario.createControler(scenario, chargers);
+
+		MobsimTimer timer = new MobsimTimer();
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				addEventHandlerBinding().toInstance(timer);
+				addControlerListenerBinding().toInstance(timer);
+			}
+		});
+		controler.run();
+
+		assertTrue(timer.events > 0);
+		check("mobsim.eventsPerSecond", timer.events / timer.seconds);
+	}
+
+	private static final class MobsimTimer implements BasicEventHandler, BeforeMobsimListener, AfterMobsimListener {
+		private long start;
+		private long events;
+		private double seconds;
+
+		@Override
+		public void notifyBeforeMobsim(BeforeMobsimEvent event) {
+			start = System.nanoTime();
+		}
+
+		@Override
+		public void notifyAfterMobsim(AfterMobsimEvent event) {
+			seconds = (System.nanoTime() - start) / 1e9;
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+			events++;
+		}
+
+		@Override
+		public void reset(int iteration) {
+			events = 0;
+		}
+	}
+
+	private void check(String key, double measured) {
+		File baselineFile = new File(utils.getClassInputDirectory(), "baseline.properties");
+		Properties baseline = new Properties();
+		try (Reader reader = new FileReader(baselineFile)) {
+			baseline.load(reader);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (Boolean.getBoolean("performance.recordBaseline")) {
+			baseline.setProperty(key, String.valueOf(Math.round(measured)));
+			try (Writer writer = new FileWriter(baselineFile)) {
+				baseline.store(writer, "Throughput baseline of EvPerformanceTest, see the class for how to record it");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			log.info("recorded " + key + "=" + measured);
+			return;
+		}
+
+		String recorded = baseline.getProperty(key);
+		log.info(key + ": measured " + measured);
+		assumeTrue(recorded != null, "no baseline recorded for " + key + " (measured " + measured
+				+ "), record it with -Dperformance.recordBaseline=true");
+		double expected = Double.parseDouble(recorded);
+		double tolerance = Double.parseDouble(System.getProperty("performance.tolerance", "0.2"));
+		log.info(key + ": baseline " + expected + ", tolerance " + tolerance);
+		assertTrue(measured >= expected * (1 - tolerance),
+				key + " dropped to " + measured + ", baseline is " + expected + " (tolerance " + tolerance + ")");
+	}
+}
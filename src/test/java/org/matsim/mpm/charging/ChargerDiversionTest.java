@@ -0,0 +1,243 @@
+package org.matsim.mpm.charging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.EvModule;
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.VehicleChargingHandler;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecification;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecificationDefaultImpl;
+import org.matsim.contrib.ev.infrastructure.ImmutableChargerSpecification;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.config.groups.ScoringConfigGroup;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.agents.WithinDayAgentUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.run.RunBetScenario;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.MatsimVehicleReader;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargerDiversionTest {
+	// one plug per charger: the trucks arrive a minute apart at the same charger, from the fourth one on the expected
+	// wait there is longer than the detour to the next charger
+	private static final int TRUCKS = 6;
+	private static final String BET_VEHICLES = "scenarios/BETs/10_BETs_Test/10_BETs_Test_Vehicles.xml.gz";
+	// a straight motorway of 100 links of 10 km, a charger every 100 km
+	private static final int SEGMENTS = 100;
+	private static final double SEGMENT_LENGTH = 10_000;
+	private static final Id<Link> DESTINATION = forward(SEGMENTS);
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	void testTruckIsDivertedFromSaturatedCharger() {
+		Config config = createConfig();
+		MpmEvConfigGroup mpmEvCfg = MpmEvConfigGroup.get(config);
+		mpmEvCfg.chargerDiversion = true;
+		// the chargers are 100 km apart
+		mpmEvCfg.chargerDiversionMaxDistance = 150_000;
+		Scenario scenario = createScenario(config);
+		Controler controler = RunBetScenario.createControler(scenario, createChargers());
+
+		Map<Id<Vehicle>, Set<Id<Charger>>> chargedAt = new HashMap<>();
+		Set<Id<Person>> arrived = new HashSet<>();
+		Map<Id<Person>, Plan> executedPlans = new HashMap<>();
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				addEventHandlerBinding().toInstance((BasicEventHandler)event -> {
+					if (event instanceof ChargingStartEvent start) {
+						chargedAt.computeIfAbsent(start.getVehicleId(), id -> new HashSet<>()).add(start.getChargerId());
+					} else if (event instanceof ActivityStartEvent activityStart
+							&& activityStart.getLinkId().equals(DESTINATION)) {
+						arrived.add(activityStart.getPersonId());
+					}
+				});
+			}
+		});
+		controler.addOverridingQSimModule(new AbstractQSimModule() {
+			@Override
+			protected void configureQSim() {
+				addQSimComponentBinding(EvModule.EV_COMPONENT).toInstance((MobsimBeforeCleanupListener)e -> {
+					for (MobsimAgent agent : ((QSim)e.getQueueSimulation()).getAgents().values()) {
+						executedPlans.put(agent.getId(), WithinDayAgentUtils.getModifiablePlan(agent));
+					}
+				});
+			}
+		});
+		controler.run();
+
+		// the diversion adds a charging activity and a leg to the plan the truck executes
+		int diverted = 0;
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			Plan routed = person.getSelectedPlan();
+			Plan executed = executedPlans.get(person.getId());
+			if (executed.getPlanElements().size() == routed.getPlanElements().size()) {
+				continue;
+			}
+			diverted++;
+			assertEquals(routed.getPlanElements().size() + 2, executed.getPlanElements().size());
+			assertConsistent(executed);
+			assertTrue(arrived.contains(person.getId()), person.getId() + " did not arrive");
+
+			Set<Id<Link>> newChargingLinks = chargingLinks(executed);
+			newChargingLinks.removeAll(chargingLinks(routed));
+			assertEquals(1, newChargingLinks.size());
+			Id<Link> newChargerLink = newChargingLinks.iterator().next();
+			Id<Charger> newCharger = Id.create("c" + newChargerLink.toString().substring(1), Charger.class);
+			assertTrue(chargedAt.getOrDefault(Id.createVehicleId(person.getId()), Set.of()).contains(newCharger),
+					person.getId() + " did not charge at " + newCharger);
+		}
+		assertTrue(diverted > 0, "no truck diverted");
+	}
+
+	private static Id<Link> forward(int i) {
+		return Id.createLinkId("f" + i);
+	}
+
+	/**
+	 * Single iteration, without outputs except the ev ones.
+	 */
+	private Config createConfig() {
+		Config config = ConfigUtils.createConfig(new EvConfigGroup());
+		EvConfigGroup.get(config).chargersFile = "unused.xml";// the chargers are passed to the controler
+		config.controller().setOutputDirectory(utils.getOutputDirectory());
+		config.controller().setOverwriteFileSetting(OutputDirectoryHierarchy.OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controller().setLastIteration(0);
+		config.controller().setCreateGraphs(false);
+		config.controller().setWriteEventsInterval(0);
+		config.controller().setWritePlansInterval(0);
+		config.qsim().setEndTime(72 * 3600);
+		config.qsim().setSimStarttimeInterpretation(QSimConfigGroup.StarttimeInterpretation.onlyUseStarttime);
+		config.qsim().setVehiclesSource(QSimConfigGroup.VehiclesSource.fromVehiclesData);
+		for (String type : new String[]{"loaded", "car charging interaction", "resting interaction"}) {
+			ScoringConfigGroup.ActivityParams params = new ScoringConfigGroup.ActivityParams(type);
+			params.setTypicalDuration(3600);
+			params.setScoringThisActivityAtAll(false);
+			config.scoring().addActivityParams(params);
+		}
+		return config;
+	}
+
+	/**
+	 * Links {@code f1} to {@code f100} east, {@code b1} to {@code b100} back west; BET trucks with full batteries
+	 * driving from {@code f1} to {@code f100}, departing one per minute from 7:30.
+	 */
+	private static Scenario createScenario(Config config) {
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = scenario.getNetwork();
+		Node previous = null;
+		for (int i = 0; i <= SEGMENTS; i++) {
+			Node node = NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(i * SEGMENT_LENGTH, 0));
+			if (previous != null) {
+				NetworkUtils.createAndAddLink(network, forward(i), previous, node, SEGMENT_LENGTH, 80 / 3.6, 4000, 2);
+				NetworkUtils.createAndAddLink(network, Id.createLinkId("b" + i), node, previous, SEGMENT_LENGTH, 80 / 3.6,
+						4000, 2);
+			}
+			previous = node;
+		}
+
+		new MatsimVehicleReader(scenario.getVehicles()).readFile(BET_VEHICLES);
+		scenario.getVehicles().getVehicles().keySet().stream().toList().forEach(scenario.getVehicles()::removeVehicle);
+		VehicleType type = scenario.getVehicles().getVehicleTypes().get(Id.create("600kWh_eTruck", VehicleType.class));
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		for (int i = 0; i < TRUCKS; i++) {
+			Vehicle vehicle = VehicleUtils.createVehicle(Id.createVehicleId(i), type);
+			vehicle.getAttributes().putAttribute("initialSoc", 1.0);
+			scenario.getVehicles().addVehicle(vehicle);
+
+			Person person = factory.createPerson(Id.createPersonId(i));
+			VehicleUtils.insertVehicleIdsIntoPersonAttributes(person, Map.of(TransportMode.car, vehicle.getId()));
+			Plan plan = factory.createPlan();
+			Activity start = factory.createActivityFromLinkId("loaded", forward(1));
+			start.setCoord(network.getLinks().get(forward(1)).getCoord());
+			start.setEndTime(7.5 * 3600 + i * 60);
+			plan.addActivity(start);
+			plan.addLeg(factory.createLeg(TransportMode.car));
+			Activity end = factory.createActivityFromLinkId("loaded", DESTINATION);
+			end.setCoord(network.getLinks().get(DESTINATION).getCoord());
+			plan.addActivity(end);
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
+
+	/**
+	 * A DC charger with one plug on {@code f10}, {@code f20}, ..., {@code f90}.
+	 */
+	private static ChargingInfrastructureSpecification createChargers() {
+		ChargingInfrastructureSpecification chargers = new ChargingInfrastructureSpecificationDefaultImpl();
+		for (int i = 10; i < SEGMENTS; i += 10) {
+			chargers.addChargerSpecification(ImmutableChargerSpecification.newBuilder()
+					.id(Id.create("c" + i, Charger.class))
+					.linkId(forward(i))
+					.chargerType("DC")
+					.plugPower(720_000)
+					.plugCount(1)
+					.build());
+		}
+		return chargers;
+	}
+
+	private static Set<Id<Link>> chargingLinks(Plan plan) {
+		Set<Id<Link>> links = new HashSet<>();
+		for (PlanElement element : plan.getPlanElements()) {
+			if (element instanceof Activity activity
+					&& activity.getType().endsWith(VehicleChargingHandler.CHARGING_INTERACTION)) {
+				links.add(activity.getLinkId());
+			}
+		}
+		return links;
+	}
+
+	/**
+	 * Every leg starts where the previous activity is and ends where the next one is.
+	 */
+	private static void assertConsistent(Plan plan) {
+		List<PlanElement> elements = plan.getPlanElements();
+		for (int i = 1; i < elements.size() - 1; i++) {
+			if (elements.get(i) instanceof Leg leg) {
+				assertEquals(((Activity)elements.get(i - 1)).getLinkId(), leg.getRoute().getStartLinkId(), "leg " + i);
+				assertEquals(((Activity)elements.get(i + 1)).getLinkId(), leg.getRoute().getEndLinkId(), "leg " + i);
+			}
+		}
+		Activity last = (Activity)elements.get(elements.size() - 1);
+		assertEquals(DESTINATION, last.getLinkId());
+	}
+}
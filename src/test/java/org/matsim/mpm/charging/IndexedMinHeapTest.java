@@ -0,0 +1,55 @@
+package org.matsim.mpm.charging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexedMinHeapTest {
+
+	private static class Item extends IndexedMinHeap.Entry {
+	}
+
+	@Test
+	void testRemoveAndUpdateKeepOrder() {
+		IndexedMinHeap<Item> heap = new IndexedMinHeap<>();
+		List<Item> items = new ArrayList<>();
+		Random random = new Random(4711);
+		for (int i = 0; i < 1000; i++) {
+			Item item = new Item();
+			items.add(item);
+			heap.add(item, random.nextInt(100));
+		}
+		for (int i = 0; i < 300; i++) {
+			heap.remove(items.get(i));
+			assertFalse(items.get(i).isInHeap());
+		}
+		for (int i = 300; i < 600; i++) {
+			heap.updateKey(items.get(i), random.nextInt(100));
+		}
+
+		double lastKey = Double.NEGATIVE_INFINITY;
+		int count = 0;
+		while (!heap.isEmpty()) {
+			Item item = heap.poll();
+			assertTrue(item.getKey() >= lastKey);
+			lastKey = item.getKey();
+			count++;
+		}
+		assertEquals(700, count);
+	}
+
+	@Test
+	void testTiesInInsertionOrder() {
+		IndexedMinHeap<Item> heap = new IndexedMinHeap<>();
+		Item first = new Item();
+		Item second = new Item();
+		heap.add(first, 10);
+		heap.add(second, 10);
+		assertSame(first, heap.poll());
+		assertSame(second, heap.poll());
+	}
+}
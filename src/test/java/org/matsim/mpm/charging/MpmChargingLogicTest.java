@@ -0,0 +1,239 @@
+package org.matsim.mpm.charging;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.charging.ChargeUpToMaxSocStrategy;
+import org.matsim.contrib.ev.charging.ChargingEndEvent;
+import org.matsim.contrib.ev.charging.ChargingLogic;
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.ChargingWithQueueingLogic;
+import org.matsim.contrib.ev.charging.FixedSpeedCharging;
+import org.matsim.contrib.ev.charging.QueuedAtChargerEvent;
+import org.matsim.contrib.ev.charging.QuitQueueAtChargerEvent;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecificationImpl;
+import org.matsim.contrib.ev.fleet.ElectricFleetUtils;
+import org.matsim.contrib.ev.fleet.ElectricVehicle;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargerSpecification;
+import org.matsim.contrib.ev.infrastructure.ImmutableChargerSpecification;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.mpm.discharging.BetDriveEnergyConsumption;
+import org.matsim.mpm.fleet.CompactElectricFleet;
+import org.matsim.mpm.routing.BetCorridorFixture;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MpmChargingLogicTest {
+	private static final double CHARGE_PERIOD = 15;
+	private static final double INITIAL_SOC = 0.3;
+
+	private final ChargerSpecification charger = ImmutableChargerSpecification.newBuilder()
+			.id(Id.create("c", Charger.class))
+			.linkId(BetCorridorFixture.forward(10))
+			.chargerType("DC")
+			.plugPower(720_000)
+			.plugCount(1)
+			.build();
+	private final List<Event> events = new ArrayList<>();
+	private EventsManager eventsManager;
+	private ElectricVehicle first;
+	private ElectricVehicle second;
+
+	@BeforeEach
+	void setUp() {
+		List<ElectricVehicle> vehicles = createVehicles(INITIAL_SOC, INITIAL_SOC);
+		first = vehicles.get(0);
+		second = vehicles.get(1);
+		eventsManager = createEventsManager(events);
+	}
+
+	private static List<ElectricVehicle> createVehicles(double... socs) {
+		Scenario scenario = BetCorridorFixture.createScenario(ConfigUtils.createConfig(new EvConfigGroup()), socs.length);
+		ElectricFleetSpecification fleetSpecification = new ElectricFleetSpecificationImpl();
+		ElectricFleetUtils.createAndAddVehicleSpecificationsFromMatsimVehicles(fleetSpecification,
+				scenario.getVehicles().getVehicles().values());
+		CompactElectricFleet fleet = new CompactElectricFleet(fleetSpecification, ev -> new BetDriveEnergyConsumption(),
+				ev -> (beginTime, duration, linkId) -> 0, ev -> new FixedSpeedCharging(ev, 1));
+		List<ElectricVehicle> vehicles = new ArrayList<>();
+		for (int i = 0; i < socs.length; i++) {
+			ElectricVehicle ev = fleet.getElectricVehicles().get(Id.createVehicleId(String.valueOf(i)));
+			ev.getBattery().setCharge(socs[i] * ev.getBattery().getCapacity());
+			vehicles.add(ev);
+		}
+		return vehicles;
+	}
+
+	private static EventsManager createEventsManager(List<Event> events) {
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler((BasicEventHandler)events::add);
+		eventsManager.initProcessing();
+		return eventsManager;
+	}
+
+	@Test
+	void testSameChargeAsStepByStepCharging() {
+		MpmChargingLogic logic = new MpmChargingLogic(charger, new ChargeUpToMaxSocStrategy(charger, 1.), eventsManager,
+				CHARGE_PERIOD, false);
+		logic.addVehicle(first, 0);
+		logic.addVehicle(second, 0);
+
+		double capacity = first.getBattery().getCapacity();
+		double energyPerStep = first.getChargingPower().calcChargingPower(charger) * CHARGE_PERIOD;
+		double expectedCharge = INITIAL_SOC * capacity;
+		double lastRead = expectedCharge;
+		double now = 0;
+		while (expectedCharge < capacity) {
+			now += CHARGE_PERIOD;
+			expectedCharge = Math.min(expectedCharge + energyPerStep, capacity);
+			logic.chargeVehicles(CHARGE_PERIOD, now);
+			if (expectedCharge < capacity) {
+				if (expectedCharge + energyPerStep >= capacity) {
+					lastRead = expectedCharge;// checked one step early, see expectedEnd()
+				}
+				// not written between the completion checks, but up to date when the plugged vehicles are read
+				assertEquals(lastRead, first.getBattery().getCharge(), 1e-3);
+				if (now % (10 * CHARGE_PERIOD) == 0) {
+					assertTrue(logic.getPluggedVehicles().contains(first));
+					assertEquals(expectedCharge, first.getBattery().getCharge(), 1e-3);
+					lastRead = expectedCharge;
+				}
+			}
+		}
+
+		assertEquals(capacity, first.getBattery().getCharge(), 1e-3);
+		ChargingEndEvent end = (ChargingEndEvent)events.stream()
+				.filter(event -> event instanceof ChargingEndEvent)
+				.findFirst()
+				.orElseThrow();
+		assertEquals(now, end.getTime());
+		assertEquals(first.getId(), end.getVehicleId());
+		assertEquals(List.of(second), List.copyOf(logic.getPluggedVehicles()));
+		assertTrue(events.stream().noneMatch(event -> event instanceof QuitQueueAtChargerEvent));
+
+		// unplugging in between also writes the charge
+		logic.chargeVehicles(CHARGE_PERIOD, now + CHARGE_PERIOD);
+		logic.removeVehicle(second, now + CHARGE_PERIOD);
+		assertEquals(INITIAL_SOC * capacity + energyPerStep, second.getBattery().getCharge(), 1e-3);
+	}
+
+	@Test
+	void testSameEventsAsChargingWithQueueingLogic() {
+		// plugged and queued in between the steps, with different remaining charging times
+		double[] socs = {0.3, 0.55, 0.8, 0.42};
+		double[] addTimes = {4, 22, 37, 38};
+
+		List<Event> expected = new ArrayList<>();
+		EventsManager expectedEventsManager = createEventsManager(expected);
+		chargeWithPlugInsBetweenSteps(new ChargingWithQueueingLogic(charger, new ChargeUpToMaxSocStrategy(charger, 1.),
+				expectedEventsManager), createVehicles(socs), addTimes, expected);
+
+		List<Event> actual = new ArrayList<>();
+		EventsManager actualEventsManager = createEventsManager(actual);
+		chargeWithPlugInsBetweenSteps(new MpmChargingLogic(charger, new ChargeUpToMaxSocStrategy(charger, 1.),
+				actualEventsManager, CHARGE_PERIOD, false), createVehicles(socs), addTimes, actual);
+
+		expected.removeIf(event -> vehicleId(event) == null);
+		actual.removeIf(event -> vehicleId(event) == null);
+		assertEquals(socs.length, expected.stream().filter(event -> event instanceof ChargingEndEvent).count());
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Event expectedEvent = expected.get(i);
+			Event actualEvent = actual.get(i);
+			assertEquals(expectedEvent.getClass(), actualEvent.getClass(), expectedEvent.toString());
+			assertEquals(expectedEvent.getTime(), actualEvent.getTime(), expectedEvent.toString());
+			assertEquals(vehicleId(expectedEvent), vehicleId(actualEvent), expectedEvent.toString());
+			if (expectedEvent instanceof ChargingEndEvent expectedEnd) {
+				assertEquals(expectedEnd.getCharge(), ((ChargingEndEvent)actualEvent).getCharge(), 1e-3);
+			}
+		}
+	}
+
+	private static Id<Vehicle> vehicleId(Event event) {
+		if (event instanceof ChargingStartEvent start) {
+			return start.getVehicleId();
+		} else if (event instanceof ChargingEndEvent end) {
+			return end.getVehicleId();
+		} else if (event instanceof QueuedAtChargerEvent queued) {
+			return queued.getVehicleId();
+		} else if (event instanceof QuitQueueAtChargerEvent quit) {
+			return quit.getVehicleId();
+		}
+		return null;
+	}
+
+	/**
+	 * Steps at multiples of CHARGE_PERIOD, as the MpmChargingHandler does, until all vehicles are charged.
+	 */
+	private static void chargeWithPlugInsBetweenSteps(ChargingLogic logic, List<ElectricVehicle> vehicles,
+			double[] addTimes, List<Event> events) {
+		int added = 0;
+		for (double now = CHARGE_PERIOD; events.stream().filter(event -> event instanceof ChargingEndEvent).count() < vehicles
+				.size(); now += CHARGE_PERIOD) {
+			while (added < vehicles.size() && addTimes[added] <= now) {
+				logic.addVehicle(vehicles.get(added), addTimes[added]);
+				added++;
+			}
+			logic.chargeVehicles(CHARGE_PERIOD, now);
+		}
+	}
+
+	@Test
+	void testDeferredStepIsHiddenUntilItsCallsAreRun() {
+		MpmChargingLogic logic = new MpmChargingLogic(charger, new ChargeUpToMaxSocStrategy(charger, 1.), eventsManager,
+				CHARGE_PERIOD, false);
+		logic.addVehicle(first, 0);
+		logic.addVehicle(second, 0);
+
+		double capacity = first.getBattery().getCapacity();
+		double energyPerStep = first.getChargingPower().calcChargingPower(charger) * CHARGE_PERIOD;
+		long stepsToFull = (long)Math.ceil((1 - INITIAL_SOC) * capacity / energyPerStep);
+		double now = 0;
+		for (long step = 1; step < stepsToFull; step++) {
+			now += CHARGE_PERIOD;
+			logic.chargeVehicles(CHARGE_PERIOD, now);
+		}
+		assertTrue(events.stream().noneMatch(event -> event instanceof ChargingEndEvent));
+
+		// first is done and second is plugged, but nothing of that is visible until the calls are run
+		double chargeBeforeStep = first.getBattery().getCharge();
+		List<Runnable> deferredCalls = new ArrayList<>();
+		logic.chargeVehicles(CHARGE_PERIOD, now + CHARGE_PERIOD, deferredCalls);
+		assertEquals(chargeBeforeStep, first.getBattery().getCharge());
+		assertTrue(events.stream().noneMatch(event -> event instanceof ChargingEndEvent));
+		assertThrows(IllegalStateException.class, logic::getPluggedVehicles);
+		assertThrows(IllegalStateException.class, () -> logic.removeVehicle(second, 0));
+
+		deferredCalls.forEach(Runnable::run);
+		assertEquals(capacity, first.getBattery().getCharge(), 1e-3);
+		assertTrue(events.stream().anyMatch(event -> event instanceof ChargingEndEvent));
+		assertEquals(List.of(second), List.copyOf(logic.getPluggedVehicles()));
+	}
+
+	@Test
+	void testQuitQueueEventOnPlugIn() {
+		MpmChargingLogic logic = new MpmChargingLogic(charger, new ChargeUpToMaxSocStrategy(charger, 1.), eventsManager,
+				CHARGE_PERIOD, true);
+		logic.addVehicle(first, 0);
+		logic.addVehicle(second, 0);
+		logic.removeVehicle(first, 100);
+
+		QuitQueueAtChargerEvent quit = (QuitQueueAtChargerEvent)events.stream()
+				.filter(event -> event instanceof QuitQueueAtChargerEvent)
+				.findFirst()
+				.orElseThrow();
+		assertEquals(second.getId(), quit.getVehicleId());
+		assertEquals(100, quit.getTime());
+	}
+}
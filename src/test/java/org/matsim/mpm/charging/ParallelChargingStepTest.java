@@ -0,0 +1,76 @@
+package org.matsim.mpm.charging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.contrib.ev.charging.ChargingEndEvent;
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.QueuedAtChargerEvent;
+import org.matsim.contrib.ev.charging.QuitQueueAtChargerEvent;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.routing.BetCorridorFixture;
+import org.matsim.mpm.run.RunBetScenario;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * The sharded charging step must produce the same charging events (including the soc in them) as the serial step, for
+ * any number of threads.
+ */
+public class ParallelChargingStepTest {
+	private static final int TRUCKS = 60;
+	private static final int PLUGS = 4;// so that trucks queue
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	void testSameEventsForAnyThreadCount() {
+		List<String> serial = runMobsim(0);
+		List<String> singleThread = runMobsim(1);
+		List<String> threeThreads = runMobsim(3);
+
+		assertFalse(serial.isEmpty());
+		assertEquals(serial, singleThread);
+		assertEquals(serial, threeThreads);
+	}
+
+	private List<String> runMobsim(int chargingThreads) {
+		Config config = BetCorridorFixture.createMobsimConfig(utils.getOutputDirectory() + chargingThreads);
+		MpmEvConfigGroup.get(config).heapChargingLogic = true;
+		MpmEvConfigGroup.get(config).chargingThreads = chargingThreads;
+		Scenario scenario = BetCorridorFixture.createScenario(config, TRUCKS);
+		Controler controler = RunBetScenario.createControler(scenario, BetCorridorFixture.createChargers(PLUGS));
+
+		List<String> chargingEvents = new ArrayList<>();
+		Set<String> types = Set.of(ChargingStartEvent.EVENT_TYPE, ChargingEndEvent.EVENT_TYPE,
+				QueuedAtChargerEvent.EVENT_TYPE, QuitQueueAtChargerEvent.EVENT_TYPE);
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				addEventHandlerBinding().toInstance((BasicEventHandler)event -> {
+					if (types.contains(event.getEventType())) {
+						chargingEvents.add(toString(event));
+					}
+				});
+			}
+		});
+		controler.run();
+		return chargingEvents;
+	}
+
+	private static String toString(Event event) {
+		return event.getAttributes().toString();
+	}
+}
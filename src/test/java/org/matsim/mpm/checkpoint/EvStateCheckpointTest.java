@@ -0,0 +1,106 @@
+package org.matsim.mpm.checkpoint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.QueuedAtChargerEvent;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecificationImpl;
+import org.matsim.contrib.ev.fleet.ElectricFleetUtils;
+import org.matsim.contrib.ev.fleet.ElectricVehicleSpecification;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.routing.BetCorridorFixture;
+import org.matsim.mpm.run.RunBetScenario;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvStateCheckpointTest {
+	private static final Id<Charger> CHARGER = Id.create("c10", Charger.class);
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	private static EvStateCheckpoint createCheckpoint() {
+		Map<Id<Vehicle>, Double> socs = new LinkedHashMap<>();
+		socs.put(Id.createVehicleId("0"), 0.5);
+		socs.put(Id.createVehicleId("1"), 0.4);
+		socs.put(Id.createVehicleId("2"), 0.3);
+		List<EvStateCheckpoint.ChargerState> chargers = List.of(new EvStateCheckpoint.ChargerState(CHARGER,
+				List.of(Id.createVehicleId("0")), List.of(Id.createVehicleId("1"))));
+		return new EvStateCheckpoint(30 * 3600, socs, chargers);
+	}
+
+	@Test
+	void testWriteReadRoundTrip() throws MalformedURLException {
+		EvStateCheckpoint written = createCheckpoint();
+		String file = utils.getOutputDirectory() + EvStateCheckpoint.FILE_NAME;
+		written.write(file);
+
+		EvStateCheckpoint read = EvStateCheckpoint.read(new File(file).toURI().toURL());
+		assertEquals(written.getTime(), read.getTime());
+		assertEquals(List.copyOf(written.getSocs().entrySet()), List.copyOf(read.getSocs().entrySet()));
+		assertEquals(written.getChargers(), read.getChargers());
+	}
+
+	@Test
+	void testRestoreSocAndChargers() {
+		String file = utils.getOutputDirectory() + EvStateCheckpoint.FILE_NAME;
+		createCheckpoint().write(file);
+
+		Config config = BetCorridorFixture.createMobsimConfig(utils.getOutputDirectory() + "run");
+		MpmEvConfigGroup.get(config).evCheckpointFile = new File(file).getAbsolutePath();
+		Scenario scenario = BetCorridorFixture.createScenario(config, 3);
+		Controler controler = RunBetScenario.createControler(scenario, BetCorridorFixture.createChargers(1));
+
+		List<Event> chargingEvents = new ArrayList<>();
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				addEventHandlerBinding().toInstance((BasicEventHandler)event -> {
+					if (event instanceof ChargingStartEvent || event instanceof QueuedAtChargerEvent) {
+						chargingEvents.add(event);
+					}
+				});
+			}
+		});
+		controler.run();
+
+		// soc: through the initialSoc of the vehicles
+		ElectricFleetSpecification fleet = new ElectricFleetSpecificationImpl();
+		ElectricFleetUtils.createAndAddVehicleSpecificationsFromMatsimVehicles(fleet,
+				scenario.getVehicles().getVehicles().values());
+		ElectricVehicleSpecification first = fleet.getVehicleSpecifications().get(Id.createVehicleId("0"));
+		assertEquals(0.5 * first.getBatteryCapacity(), first.getInitialCharge(), 1e-6);
+		assertEquals(0.3, (double)scenario.getVehicles().getVehicles().get(Id.createVehicleId("2"))
+				.getAttributes().getAttribute(EvStateCheckpoint.INITIAL_SOC), 1e-9);
+
+		// chargers: plugged and queued at the start of the mobsim, not at the time of the checkpoint
+		ChargingStartEvent plugged = (ChargingStartEvent)chargingEvents.get(0);
+		assertEquals(Id.createVehicleId("0"), plugged.getVehicleId());
+		assertEquals(CHARGER, plugged.getChargerId());
+		assertEquals(0, plugged.getTime());
+		assertEquals(first.getInitialCharge(), plugged.getCharge(), 1e-6);
+
+		QueuedAtChargerEvent queued = (QueuedAtChargerEvent)chargingEvents.get(1);
+		assertEquals(Id.createVehicleId("1"), queued.getVehicleId());
+		assertEquals(CHARGER, queued.getChargerId());
+		assertEquals(0, queued.getTime());
+	}
+}
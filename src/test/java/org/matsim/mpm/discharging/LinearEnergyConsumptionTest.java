@@ -0,0 +1,65 @@
+package org.matsim.mpm.discharging;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.charging.FixedSpeedCharging;
+import org.matsim.contrib.ev.discharging.AuxEnergyConsumption;
+import org.matsim.contrib.ev.discharging.DriveEnergyConsumption;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecificationImpl;
+import org.matsim.contrib.ev.fleet.ElectricFleetUtils;
+import org.matsim.contrib.ev.fleet.ElectricVehicle;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.Injector;
+import org.matsim.mpm.fleet.CompactElectricFleet;
+import org.matsim.mpm.routing.BetCorridorFixture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LinearEnergyConsumptionTest {
+
+	@Test
+	void testSameAsPerLinkModels() {
+		Config config = ConfigUtils.createConfig(new EvConfigGroup());
+		Scenario scenario = BetCorridorFixture.createScenario(config, 1);
+		// the models as bound for the simulation: BET drive and Ohde-Slaski aux consumption at 15 degC
+		com.google.inject.Injector injector = Injector.createInjector(config, new MpmDischargingModule());
+		DriveEnergyConsumption.Factory driveFactory = injector.getInstance(DriveEnergyConsumption.Factory.class);
+		AuxEnergyConsumption.Factory auxFactory = injector.getInstance(AuxEnergyConsumption.Factory.class);
+		BulkEnergyConsumption.Factory bulkFactory = injector.getInstance(BulkEnergyConsumption.Factory.class);
+
+		ElectricFleetSpecification fleetSpecification = new ElectricFleetSpecificationImpl();
+		ElectricFleetUtils.createAndAddVehicleSpecificationsFromMatsimVehicles(fleetSpecification,
+				scenario.getVehicles().getVehicles().values());
+		ElectricVehicle ev = new CompactElectricFleet(fleetSpecification, driveFactory, auxFactory,
+				vehicle -> new FixedSpeedCharging(vehicle, 1)).getElectricVehicles().get(Id.createVehicleId("0"));
+		BulkEnergyConsumption bulk = bulkFactory.create(ev);
+		assertNotNull(bulk);
+
+		// links passed at freespeed, slower, and in no time (e.g. the first link of a leg)
+		int count = 30;
+		double[] lengths = new double[count];
+		double[] travelTimes = new double[count];
+		Link[] links = new Link[count];
+		for (int i = 0; i < count; i++) {
+			links[i] = scenario.getNetwork().getLinks().get(BetCorridorFixture.forward(i + 1));
+			lengths[i] = links[i].getLength();
+			travelTimes[i] = i % 3 == 0 ? 0 : links[i].getLength() / links[i].getFreespeed() * (i % 3);
+		}
+		double[] consumptions = new double[count];
+		bulk.calcEnergyConsumptions(lengths, travelTimes, count, consumptions);
+
+		double time = 8 * 3600;
+		for (int i = 0; i < count; i++) {
+			double expected = ev.getDriveEnergyConsumption().calcEnergyConsumption(links[i], travelTimes[i], time)
+					+ ev.getAuxEnergyConsumption().calcEnergyConsumption(time, travelTimes[i], links[i].getId());
+			assertEquals(expected, consumptions[i], 1e-9 * Math.max(1, expected), "link " + i);
+			time += travelTimes[i];
+		}
+		assertEquals(0, consumptions[0]);
+	}
+}
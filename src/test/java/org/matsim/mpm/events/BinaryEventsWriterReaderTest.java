@@ -0,0 +1,63 @@
+package org.matsim.mpm.events;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryEventsWriterReaderTest {
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	void testRoundTrip() {
+		List<Event> written = new ArrayList<>();
+		written.add(new ActivityEndEvent(21600., Id.createPersonId("1"), Id.createLinkId("2944234920002f"), null,
+				"loaded", new Coord(692318.269263, 5334733.571428)));
+		written.add(new LinkEnterEvent(21601., Id.createVehicleId("1"), Id.createLinkId("2944234920002f")));
+		written.add(new LinkEnterEvent(21650.5, Id.createVehicleId("1"), Id.createLinkId("2662513710009f")));
+		GenericEvent generic = new GenericEvent("someCustomEvent", 21600.);
+		generic.getAttributes().put("charge", "3.6E9");
+		generic.getAttributes().put("id", "42");
+		generic.getAttributes().put("empty", "");
+		generic.getAttributes().put("missing", null);
+		written.add(generic);
+
+		String file = utils.getOutputDirectory() + "test.events.bin";
+		BinaryEventsWriter writer = new BinaryEventsWriter(file);
+		written.forEach(writer::handleEvent);
+		writer.closeFile();
+
+		List<Event> read = new ArrayList<>();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler((BasicEventHandler)read::add);
+		events.initProcessing();
+		new BinaryEventsReader(events).readFile(file);
+		events.finishProcessing();
+
+		assertEquals(written.size(), read.size());
+		assertTrue(read.get(1) instanceof LinkEnterEvent);
+		for (int i = 0; i < written.size(); i++) {
+			assertEquals(written.get(i).getAttributes(), read.get(i).getAttributes());
+		}
+		assertTrue(read.get(3).getAttributes().containsKey("missing"));
+		assertNull(read.get(3).getAttributes().get("missing"));
+		assertEquals("", read.get(3).getAttributes().get("empty"));
+	}
+}
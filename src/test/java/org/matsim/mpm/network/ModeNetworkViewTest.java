@@ -0,0 +1,84 @@
+package org.matsim.mpm.network;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The views must contain the same links and nodes as the networks filtered with the {@link TransportModeNetworkFilter},
+ * and the Speedy routers must not use links of other modes.
+ */
+public class ModeNetworkViewTest {
+
+	/**
+	 * 1 -> 2 -> 3 for trucks and cars; a short cut 1 -> 3 only for cars.
+	 */
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId("mnv1"), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId("mnv2"), new Coord(1000, 1000));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.createNodeId("mnv3"), new Coord(2000, 0));
+		Node n4 = NetworkUtils.createAndAddNode(network, Id.createNodeId("mnv4"), new Coord(3000, 0));
+		addLink(network, "mnv12", n1, n2, Set.of(TransportMode.car, TransportMode.truck));
+		addLink(network, "mnv23", n2, n3, Set.of(TransportMode.car, TransportMode.truck));
+		addLink(network, "mnv13", n1, n3, Set.of(TransportMode.car));
+		addLink(network, "mnv34", n3, n4, Set.of(TransportMode.bike));
+		return network;
+	}
+
+	private static void addLink(Network network, String id, Node from, Node to, Set<String> modes) {
+		Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId(id), from, to,
+				NetworkUtils.getEuclideanDistance(from.getCoord(), to.getCoord()), 20, 1000, 1);
+		link.setAllowedModes(modes);
+	}
+
+	@Test
+	void testViewMatchesFilteredNetwork() {
+		Network network = createNetwork();
+		IndexedNetwork indexedNetwork = new IndexedNetwork(network);
+
+		for (String mode : Set.of(TransportMode.car, TransportMode.truck, TransportMode.bike, TransportMode.walk)) {
+			Network filtered = NetworkUtils.createNetwork();
+			new TransportModeNetworkFilter(network).filter(filtered, Set.of(mode));
+			ModeNetworkView view = indexedNetwork.getModeView(mode);
+
+			assertEquals(filtered.getLinks().keySet(), view.getLinks().keySet(), mode);
+			assertEquals(filtered.getNodes().keySet(), view.getNodes().keySet(), mode);
+			for (Id<Link> linkId : filtered.getLinks().keySet()) {
+				assertSame(network.getLinks().get(linkId), view.getLinks().get(linkId));
+			}
+			assertSame(view, indexedNetwork.getModeView(mode));
+		}
+		// a node id with the index of a link id is not a link
+		assertNull(indexedNetwork.getModeView(TransportMode.car).getLinks().get(Id.createNodeId("mnv1")));
+	}
+
+	@Test
+	void testSpeedyRoutingStaysOnModeLinks() {
+		Network network = createNetwork();
+		ModeNetworkView trucks = new IndexedNetwork(network).getModeView(TransportMode.truck);
+		FreeSpeedTravelTime travelTime = new FreeSpeedTravelTime();
+		LeastCostPathCalculator router = new SpeedyALTFactory().createPathCalculator(trucks,
+				new OnlyTimeDependentTravelDisutility(travelTime), travelTime);
+
+		LeastCostPathCalculator.Path path = router.calcLeastCostPath(network.getNodes().get(Id.createNodeId("mnv1")),
+				network.getNodes().get(Id.createNodeId("mnv3")), 0, null, null);
+
+		assertEquals(Set.of("mnv12", "mnv23"), path.links.stream().map(l -> l.getId().toString()).collect(Collectors.toSet()));
+	}
+}
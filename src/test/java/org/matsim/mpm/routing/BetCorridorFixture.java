@@ -0,0 +1,195 @@
+package org.matsim.mpm.routing;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecificationImpl;
+import org.matsim.contrib.ev.fleet.ElectricFleetUtils;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecification;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecificationDefaultImpl;
+import org.matsim.contrib.ev.infrastructure.ImmutableChargerSpecification;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.config.groups.ScoringConfigGroup;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.router.DefaultRoutingModules;
+import org.matsim.core.router.RoutingModule;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.mpm.discharging.BetDriveEnergyConsumption;
+import org.matsim.mpm.discharging.BulkEnergyConsumption;
+import org.matsim.vehicles.MatsimVehicleReader;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+import java.util.Map;
+
+/**
+ * A straight 1000 km motorway with a DC charger every 100 km and the BET truck type of
+ * {@code scenarios/BETs/10_BETs_Test}, small enough for unit tests but long enough for all breaks of the ev routing.
+ * <p>
+ * Links {@code f1} to {@code f100} run east, {@code b1} to {@code b100} back west, each 10 km long; the chargers are on
+ * {@code f10}, {@code f20}, ..., {@code f90}.
+ */
+public final class BetCorridorFixture {
+	public static final String BET_VEHICLES = "scenarios/BETs/10_BETs_Test/10_BETs_Test_Vehicles.xml.gz";
+	public static final Id<VehicleType> BET_TYPE = Id.create("600kWh_eTruck", VehicleType.class);
+	public static final int SEGMENTS = 100;
+	public static final double SEGMENT_LENGTH = 10_000;
+	public static final double FREESPEED = 80 / 3.6;
+
+	private BetCorridorFixture() {
+	}
+
+	public static Id<Link> forward(int i) {
+		return Id.createLinkId("f" + i);
+	}
+
+	private static void createNetwork(Network network) {
+		NetworkFactory factory = network.getFactory();
+		Node previous = null;
+		for (int i = 0; i <= SEGMENTS; i++) {
+			Node node = factory.createNode(Id.createNodeId(i), new Coord(i * SEGMENT_LENGTH, 0));
+			network.addNode(node);
+			if (previous != null) {
+				addLink(network, "f" + i, previous, node);
+				addLink(network, "b" + i, node, previous);
+			}
+			previous = node;
+		}
+	}
+
+	private static void addLink(Network network, String id, Node from, Node to) {
+		Link link = network.getFactory().createLink(Id.createLinkId(id), from, to);
+		link.setLength(SEGMENT_LENGTH);
+		link.setFreespeed(FREESPEED);
+		link.setCapacity(4000);
+		link.setNumberOfLanes(2);
+		network.addLink(link);
+	}
+
+	public static ChargingInfrastructureSpecification createChargers() {
+		return createChargers(100);
+	}
+
+	public static ChargingInfrastructureSpecification createChargers(int plugCount) {
+		ChargingInfrastructureSpecification chargers = new ChargingInfrastructureSpecificationDefaultImpl();
+		for (int i = 10; i < SEGMENTS; i += 10) {
+			chargers.addChargerSpecification(ImmutableChargerSpecification.newBuilder()
+					.id(Id.create("c" + i, Charger.class))
+					.linkId(forward(i))
+					.chargerType("DC")
+					.plugPower(720_000)
+					.plugCount(plugCount)
+					.build());
+		}
+		return chargers;
+	}
+
+	/**
+	 * Adds {@code count} BET trucks (ids {@code 0 ... count-1}, full battery) and persons with the same ids driving
+	 * from {@code f1} to {@code f100}, departing one per minute from 7:30.
+	 */
+	public static void addTrucks(Scenario scenario, int count) {
+		new MatsimVehicleReader(scenario.getVehicles()).readFile(BET_VEHICLES);
+		scenario.getVehicles().getVehicles().keySet().stream().toList().forEach(scenario.getVehicles()::removeVehicle);
+		VehicleType type = scenario.getVehicles().getVehicleTypes().get(BET_TYPE);
+
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Network network = scenario.getNetwork();
+		for (int i = 0; i < count; i++) {
+			Vehicle vehicle = VehicleUtils.createVehicle(Id.createVehicleId(i), type);
+			vehicle.getAttributes().putAttribute("initialSoc", 1.0);
+			scenario.getVehicles().addVehicle(vehicle);
+
+			Person person = factory.createPerson(Id.createPersonId(i));
+			VehicleUtils.insertVehicleIdsIntoPersonAttributes(person, Map.of(TransportMode.car, vehicle.getId()));
+			Plan plan = factory.createPlan();
+			Activity start = factory.createActivityFromLinkId("loaded", forward(1));
+			start.setCoord(network.getLinks().get(forward(1)).getCoord());
+			start.setEndTime(7.5 * 3600 + i * 60);
+			plan.addActivity(start);
+			plan.addLeg(factory.createLeg(TransportMode.car));
+			Activity end = factory.createActivityFromLinkId("loaded", forward(SEGMENTS));
+			end.setCoord(network.getLinks().get(forward(SEGMENTS)).getCoord());
+			plan.addActivity(end);
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+	}
+
+	/**
+	 * Single iteration of the mobsim on the corridor, without outputs except the ev ones. The chargers file is not read,
+	 * pass the chargers to {@link org.matsim.mpm.run.RunBetScenario#createControler}.
+	 */
+	public static Config createMobsimConfig(String outputDirectory) {
+		Config config = ConfigUtils.createConfig(new EvConfigGroup());
+		EvConfigGroup.get(config).chargersFile = "unused.xml";
+		config.controller().setOutputDirectory(outputDirectory);
+		config.controller().setOverwriteFileSetting(OutputDirectoryHierarchy.OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controller().setLastIteration(0);
+		config.controller().setCreateGraphs(false);
+		config.controller().setWriteEventsInterval(0);
+		config.controller().setWritePlansInterval(0);
+		config.qsim().setEndTime(72 * 3600);
+		config.qsim().setSimStarttimeInterpretation(QSimConfigGroup.StarttimeInterpretation.onlyUseStarttime);
+		config.qsim().setVehiclesSource(QSimConfigGroup.VehiclesSource.fromVehiclesData);
+		for (String type : new String[]{"loaded", "car charging interaction", "resting interaction"}) {
+			ScoringConfigGroup.ActivityParams params = new ScoringConfigGroup.ActivityParams(type);
+			params.setTypicalDuration(3600);
+			params.setScoringThisActivityAtAll(false);
+			config.scoring().addActivityParams(params);
+		}
+		return config;
+	}
+
+	public static Scenario createScenario(Config config, int trucks) {
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		createNetwork(scenario.getNetwork());
+		addTrucks(scenario, trucks);
+		return scenario;
+	}
+
+	/**
+	 * The ev routing module as bound by the {@link MpmEvNetworkRoutingProvider}, with freespeed routing and without
+	 * aux consumption.
+	 */
+	public static RoutingModule createRoutingModule(Scenario scenario, ChargingInfrastructureSpecification chargers) {
+		return createRoutingModule(scenario, chargers, null);
+	}
+
+	public static RoutingModule createRoutingModule(Scenario scenario, ChargingInfrastructureSpecification chargers,
+			BulkEnergyConsumption.Factory bulkConsumptionFactory) {
+		Network network = scenario.getNetwork();
+		ElectricFleetSpecification fleet = new ElectricFleetSpecificationImpl();
+		ElectricFleetUtils.createAndAddVehicleSpecificationsFromMatsimVehicles(fleet,
+				scenario.getVehicles().getVehicles().values());
+
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		LeastCostPathCalculator router = new SpeedyALTFactory().createPathCalculator(network,
+				new OnlyTimeDependentTravelDisutility(travelTime), travelTime);
+		RoutingModule delegate = DefaultRoutingModules.createPureNetworkRouter(TransportMode.car,
+				scenario.getPopulation().getFactory(), network, router);
+		return new MpmEvNetworkRoutingModule(TransportMode.car, network, delegate, fleet, chargers, travelTime,
+				ev -> new BetDriveEnergyConsumption(), ev -> (beginTime, duration, linkId) -> 0,
+				new EvConfigGroup(), true, null, 1, bulkConsumptionFactory);
+	}
+}
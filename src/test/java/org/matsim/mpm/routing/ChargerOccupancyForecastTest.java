@@ -0,0 +1,60 @@
+package org.matsim.mpm.routing;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargerSpecification;
+import org.matsim.contrib.ev.infrastructure.ImmutableChargerSpecification;
+import org.matsim.mpm.stats.ChargerQueuingCollector.ChargerVisit;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChargerOccupancyForecastTest {
+	private static final ChargerSpecification BUSY = charger("busy");
+	private static final ChargerSpecification IDLE = charger("idle");
+
+	private static ChargerSpecification charger(String id) {
+		return ImmutableChargerSpecification.newBuilder()
+				.id(Id.create(id, Charger.class))
+				.linkId(BetCorridorFixture.forward(10))
+				.chargerType("DC")
+				.plugPower(720_000)
+				.plugCount(2)
+				.build();
+	}
+
+	@Test
+	void testObservedWaitIsMeanOverAllArrivals() {
+		ChargerOccupancyForecast forecast = new ChargerOccupancyForecast(900);
+		forecast.seed(List.of(
+				new ChargerVisit(BUSY.getId(), 100, 600),
+				new ChargerVisit(BUSY.getId(), 200, 0),
+				new ChargerVisit(BUSY.getId(), 300, 0),
+				new ChargerVisit(BUSY.getId(), 1000, 0)));
+
+		assertEquals(200, forecast.getExpectedWaitTime(BUSY, 150, 600), 1e-9);
+		assertEquals(0, forecast.getExpectedWaitTime(BUSY, 1000, 600), 1e-9);
+		assertEquals(0, forecast.getExpectedWaitTime(IDLE, 150, 600), 1e-9);
+	}
+
+	@Test
+	void testBookingsBeyondPlugCountAddWait() {
+		ChargerOccupancyForecast forecast = new ChargerOccupancyForecast(900);
+		forecast.book(BUSY, 1000, 1800);
+		assertEquals(0, forecast.getExpectedWaitTime(BUSY, 1000, 1800), 1e-9);
+
+		forecast.book(BUSY, 1000, 1800);
+		// both plugs booked: one more vehicle waits for half of the duration on average
+		assertEquals(900, forecast.getExpectedWaitTime(BUSY, 1000, 1800), 1e-9);
+		// overlapping with the last booked bin only
+		assertEquals(50, forecast.getExpectedWaitTime(BUSY, 2800, 100), 1e-9);
+		assertEquals(0, forecast.getExpectedWaitTime(BUSY, 5000, 100), 1e-9);
+		assertEquals(0, forecast.getExpectedWaitTime(IDLE, 1000, 1800), 1e-9);
+
+		// a new observation replaces the bookings
+		forecast.seed(List.of());
+		assertEquals(0, forecast.getExpectedWaitTime(BUSY, 1000, 1800), 1e-9);
+	}
+}
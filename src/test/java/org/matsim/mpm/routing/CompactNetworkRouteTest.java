@@ -0,0 +1,88 @@
+package org.matsim.mpm.routing;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.DefaultRoutingRequest;
+import org.matsim.core.router.LinkWrapperFacility;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.matsim.mpm.routing.BetCorridorFixture.forward;
+
+public class CompactNetworkRouteTest {
+
+	private static NetworkRoute createRoute(String description) {
+		NetworkRoute route = (NetworkRoute)new CompactNetworkRoute.Factory().createRoute(null, null);
+		route.setRouteDescription(description);
+		return route;
+	}
+
+	@Test
+	void testSameDescriptionAsDefaultRoute() {
+		for (String description : new String[]{"a b c d", "a b", "a", "a b a"}) {
+			// as the plans reader does: start and end link from the leg, then the description
+			String[] links = description.split(" ");
+			Id<Link> startLinkId = Id.createLinkId(links[0]);
+			Id<Link> endLinkId = Id.createLinkId(links[links.length - 1]);
+			NetworkRoute compact = (NetworkRoute)new CompactNetworkRoute.Factory().createRoute(startLinkId, endLinkId);
+			compact.setRouteDescription(description);
+			NetworkRoute standard = RouteUtils.createLinkNetworkRouteImpl(startLinkId, endLinkId);
+			standard.setRouteDescription(description);
+
+			assertEquals(standard.getStartLinkId(), compact.getStartLinkId(), description);
+			assertEquals(standard.getLinkIds(), compact.getLinkIds(), description);
+			assertEquals(standard.getEndLinkId(), compact.getEndLinkId(), description);
+			assertEquals(standard.getRouteDescription(), compact.getRouteDescription(), description);
+		}
+	}
+
+	@Test
+	void testSetLinkIdsAndSubRoute() {
+		NetworkRoute route = createRoute("a");
+		route.setLinkIds(Id.createLinkId("a"), List.of(Id.createLinkId("b"), Id.createLinkId("c"), Id.createLinkId("d")),
+				Id.createLinkId("e"));
+		assertEquals("a b c d e", route.getRouteDescription());
+
+		NetworkRoute subRoute = route.getSubRoute(Id.createLinkId("b"), Id.createLinkId("e"));
+		assertEquals("b c d e", subRoute.getRouteDescription());
+		assertEquals(List.of(Id.createLinkId("c")), route.getSubRoute(Id.createLinkId("b"), Id.createLinkId("d")).getLinkIds());
+		assertThrows(IllegalArgumentException.class, () -> route.getSubRoute(Id.createLinkId("x"), Id.createLinkId("e")));
+
+		NetworkRoute cloned = route.clone();
+		cloned.setLinkIds(Id.createLinkId("a"), List.of(), Id.createLinkId("b"));
+		assertEquals("a b c d e", route.getRouteDescription());
+	}
+
+	@Test
+	void testEvRoutingCreatesCompactRoutes() {
+		Scenario scenario = BetCorridorFixture.createScenario(ConfigUtils.createConfig(new EvConfigGroup()), 1);
+		CompactNetworkRoute.useFor(scenario);
+		var routingModule = BetCorridorFixture.createRoutingModule(scenario, BetCorridorFixture.createChargers());
+
+		Person person = scenario.getPopulation().getFactory().createPerson(Id.createPersonId("0"));
+		List<? extends PlanElement> trip = routingModule.calcRoute(DefaultRoutingRequest.withoutAttributes(
+				new LinkWrapperFacility(scenario.getNetwork().getLinks().get(forward(1))),
+				new LinkWrapperFacility(scenario.getNetwork().getLinks().get(forward(100))),
+				7.5 * 3600, person));
+
+		for (PlanElement element : trip) {
+			if (element instanceof Leg leg) {
+				assertInstanceOf(CompactNetworkRoute.class, leg.getRoute());
+			}
+		}
+		Leg first = (Leg)trip.get(0);
+		List<Id<Link>> links = ((NetworkRoute)first.getRoute()).getLinkIds();
+		assertEquals(forward(2), links.get(0));
+		assertEquals(forward(29), links.get(links.size() - 1));
+	}
+}
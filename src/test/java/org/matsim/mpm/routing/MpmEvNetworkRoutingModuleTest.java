@@ -0,0 +1,108 @@
+package org.matsim.mpm.routing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.router.DefaultRoutingRequest;
+import org.matsim.core.router.LinkWrapperFacility;
+import org.matsim.core.router.RoutingModule;
+import org.matsim.mpm.discharging.LinearEnergyConsumption;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.matsim.mpm.routing.BetCorridorFixture.forward;
+
+/**
+ * Fast checks of the stops inserted by the ev routing, on the {@link BetCorridorFixture} instead of the national
+ * network.
+ */
+public class MpmEvNetworkRoutingModuleTest {
+
+	private Scenario scenario;
+	private RoutingModule routingModule;
+
+	@BeforeEach
+	void setUp() {
+		scenario = BetCorridorFixture.createScenario(ConfigUtils.createConfig(new EvConfigGroup()), 1);
+		routingModule = BetCorridorFixture.createRoutingModule(scenario, BetCorridorFixture.createChargers());
+	}
+
+	private List<? extends PlanElement> route(String personId, int fromLink, int toLink) {
+		Person person = scenario.getPopulation().getFactory().createPerson(Id.createPersonId(personId));
+		return routingModule.calcRoute(DefaultRoutingRequest.withoutAttributes(
+				new LinkWrapperFacility(scenario.getNetwork().getLinks().get(forward(fromLink))),
+				new LinkWrapperFacility(scenario.getNetwork().getLinks().get(forward(toLink))),
+				7.5 * 3600, person));
+	}
+
+	@Test
+	void testLongTripGetsChargingBreakAndRest() {
+		// at 65 km/h, 4.5 h of driving end on f31 (nearest charger on f30), 9 h on f60 (charger on f60)
+		List<? extends PlanElement> trip = route("0", 1, 100);
+
+		assertEquals(5, trip.size());
+		assertInstanceOf(Leg.class, trip.get(0));
+		Activity charging = (Activity)trip.get(1);
+		assertEquals("car charging interaction", charging.getType());
+		assertEquals(forward(30), charging.getLinkId());
+		assertEquals(45 * 60, charging.getMaximumDuration().seconds(), 0);
+
+		assertInstanceOf(Leg.class, trip.get(2));
+		Activity rest = (Activity)trip.get(3);
+		assertEquals("resting interaction", rest.getType());
+		assertEquals(forward(60), rest.getLinkId());
+		assertEquals(11 * 3600, rest.getMaximumDuration().seconds(), 0);
+
+		Leg last = (Leg)trip.get(4);
+		assertEquals(TransportMode.car, last.getMode());
+		// the rest is taken into account for the departure of the last leg
+		Leg toRest = (Leg)trip.get(2);
+		assertEquals(toRest.getDepartureTime().seconds() + toRest.getTravelTime().seconds() + 11 * 3600,
+				last.getDepartureTime().seconds(), 1e-6);
+	}
+
+	@Test
+	void testBulkConsumptionGivesSameStops() {
+		RoutingModule perLink = routingModule;
+		routingModule = BetCorridorFixture.createRoutingModule(scenario, BetCorridorFixture.createChargers(),
+				ev -> new LinearEnergyConsumption(4320, 0));
+		List<? extends PlanElement> bulkTrip = route("0", 1, 100);
+		routingModule = perLink;
+		List<? extends PlanElement> perLinkTrip = route("0", 1, 100);
+
+		assertEquals(perLinkTrip.size(), bulkTrip.size());
+		for (int i = 0; i < perLinkTrip.size(); i++) {
+			if (perLinkTrip.get(i) instanceof Activity activity) {
+				assertEquals(activity.getLinkId(), ((Activity)bulkTrip.get(i)).getLinkId());
+				assertEquals(activity.getType(), ((Activity)bulkTrip.get(i)).getType());
+			} else {
+				assertEquals(((Leg)perLinkTrip.get(i)).getDepartureTime(), ((Leg)bulkTrip.get(i)).getDepartureTime());
+			}
+		}
+	}
+
+	@Test
+	void testShortTripIsNotStaged() {
+		// 180 km: within the 4.5 h driving limit and the usable battery capacity
+		List<? extends PlanElement> trip = route("0", 1, 20);
+
+		assertEquals(1, trip.size());
+		assertInstanceOf(Leg.class, trip.get(0));
+	}
+
+	@Test
+	void testPersonWithoutElectricVehicleIsNotStaged() {
+		List<? extends PlanElement> trip = route("no_ev", 1, 100);
+
+		assertEquals(1, trip.size());
+	}
+}
@@ -0,0 +1,62 @@
+package org.matsim.mpm.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NetworkSnapshotTest {
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	void testWriteReadRoundTrip() {
+		Network network = NetworkUtils.createNetwork();
+		network.setCapacityPeriod(1800);
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(1000, 0));
+		Node c = NetworkUtils.createAndAddNode(network, Id.createNodeId("c"), new Coord(1000, 2500.5));
+		NetworkUtils.createAndAddNode(network, Id.createNodeId("unconnected"), new Coord(-10, -20));
+		// different mode sets, and a link without any mode
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("ab"), a, b, 1000, 80 / 3.6, 4000, 2)
+				.setAllowedModes(Set.of(TransportMode.car, TransportMode.truck));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("ba"), b, a, 1000, 80 / 3.6, 4000, 2);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("bc"), b, c, 2500.5, 30 / 3.6, 1234.5, 1.5)
+				.setAllowedModes(Set.of(TransportMode.truck));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("cb"), c, b, 2500.5, 30 / 3.6, 1234.5, 1.5)
+				.setAllowedModes(Set.of());
+
+		Path file = Path.of(utils.getOutputDirectory(), ShardedRouting.NETWORK_SNAPSHOT);
+		NetworkSnapshot.write(network, file);
+		Network read = NetworkSnapshot.read(file);
+
+		assertEquals(network.getCapacityPeriod(), read.getCapacityPeriod());
+		assertEquals(network.getNodes().keySet(), read.getNodes().keySet());
+		for (Node node : network.getNodes().values()) {
+			assertEquals(node.getCoord(), read.getNodes().get(node.getId()).getCoord());
+		}
+		assertEquals(network.getLinks().keySet(), read.getLinks().keySet());
+		for (Link link : network.getLinks().values()) {
+			Link readLink = read.getLinks().get(link.getId());
+			assertEquals(link.getFromNode().getId(), readLink.getFromNode().getId());
+			assertEquals(link.getToNode().getId(), readLink.getToNode().getId());
+			assertEquals(link.getLength(), readLink.getLength());
+			assertEquals(link.getFreespeed(), readLink.getFreespeed());
+			assertEquals(link.getCapacity(), readLink.getCapacity());
+			assertEquals(link.getNumberOfLanes(), readLink.getNumberOfLanes());
+			assertEquals(link.getAllowedModes(), readLink.getAllowedModes());
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package org.matsim.mpm.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.io.StreamingPopulationReader;
+import org.matsim.core.population.io.StreamingPopulationWriter;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedRoutingTest {
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	void testMergeIsSortedById() {
+		Config config = ConfigUtils.createConfig();
+		Path workDirectory = Path.of(utils.getOutputDirectory());
+		// the workers write their shard sorted by id, the shards interleave
+		writeShard(workDirectory, 0, "a", "c", "d", "g");
+		writeShard(workDirectory, 1, "b", "e");
+		writeShard(workDirectory, 2);
+		writeShard(workDirectory, 3, "f");
+
+		ShardedRouting.merge(workDirectory, 4, config);
+
+		// in file order
+		List<Person> merged = new ArrayList<>();
+		StreamingPopulationReader reader = new StreamingPopulationReader(ScenarioUtils.createScenario(config));
+		reader.addAlgorithm(merged::add);
+		reader.readFile(workDirectory.resolve(ShardedRouting.ROUTED_PLANS).toString());
+		assertEquals(List.of("a", "b", "c", "d", "e", "f", "g"),
+				merged.stream().map(person -> person.getId().toString()).toList());
+		assertEquals(3, merged.get(4).getSelectedPlan().getPlanElements().size());
+	}
+
+	private static void writeShard(Path workDirectory, int shard, String... personIds) {
+		Path directory = workDirectory.resolve("shard-" + shard);
+		directory.toFile().mkdirs();
+		PopulationFactory factory = PopulationUtils.getFactory();
+		StreamingPopulationWriter writer = new StreamingPopulationWriter();
+		writer.startStreaming(directory.resolve(ShardedRouting.ROUTED_PLANS).toString());
+		for (String id : personIds) {
+			Person person = factory.createPerson(Id.createPersonId(id));
+			Plan plan = factory.createPlan();
+			plan.addActivity(factory.createActivityFromCoord("loaded", new Coord(0, 0)));
+			plan.addLeg(factory.createLeg(TransportMode.car));
+			plan.addActivity(factory.createActivityFromCoord("loaded", new Coord(1000, 0)));
+			person.addPlan(plan);
+			writer.run(person);
+		}
+		writer.closeStreaming();
+	}
+}
@@ -0,0 +1,237 @@
+package org.matsim.mpm.routing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.contrib.ev.EvConfigGroup;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecificationImpl;
+import org.matsim.contrib.ev.fleet.ElectricFleetUtils;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecification;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecificationDefaultImpl;
+import org.matsim.contrib.ev.infrastructure.ImmutableChargerSpecification;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.DefaultRoutingModules;
+import org.matsim.core.router.TripRouter;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.timing.TimeInterpretation;
+import org.matsim.vehicles.MatsimVehicleReader;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+import org.matsim.vehicles.Vehicles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.matsim.api.core.v01.TransportMode.car;
+
+/**
+ * Links {@code a}, {@code b} and {@code c} in a row, with the detour {@code d}, {@code e} around {@code b} and a charger
+ * on {@code b}. Truck 0 charges on {@code b}, truck 1 drives through. Trips routed again get a plain network route.
+ */
+public class StagedRouteValidatorTest {
+	private static final String BET_VEHICLES = "scenarios/BETs/10_BETs_Test/10_BETs_Test_Vehicles.xml.gz";
+	private static final String CHARGING = "car charging interaction";
+	private static final Id<Link> A = Id.createLinkId("a");
+	private static final Id<Link> B = Id.createLinkId("b");
+	private static final Id<Link> C = Id.createLinkId("c");
+
+	private Scenario scenario;
+	private ElectricFleetSpecification fleet;
+
+	@BeforeEach
+	void setUp() {
+		scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig(new EvConfigGroup()));
+		Network network = scenario.getNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(10_000, 0));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.createNodeId(3), new Coord(20_000, 0));
+		Node n4 = NetworkUtils.createAndAddNode(network, Id.createNodeId(4), new Coord(30_000, 0));
+		Node n5 = NetworkUtils.createAndAddNode(network, Id.createNodeId(5), new Coord(15_000, 5_000));
+		addLink(network, A, n1, n2);
+		addLink(network, B, n2, n3);
+		addLink(network, C, n3, n4);
+		addLink(network, Id.createLinkId("d"), n2, n5);
+		addLink(network, Id.createLinkId("e"), n5, n3);
+
+		Vehicles vehicles = VehicleUtils.createVehiclesContainer();
+		new MatsimVehicleReader(vehicles).readFile(BET_VEHICLES);
+		VehicleType type = vehicles.getVehicleTypes().get(Id.create("600kWh_eTruck", VehicleType.class));
+		List<Vehicle> trucks = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			Vehicle truck = VehicleUtils.createVehicle(Id.createVehicleId(i), type);
+			truck.getAttributes().putAttribute("initialSoc", 1.0);
+			trucks.add(truck);
+		}
+		fleet = new ElectricFleetSpecificationImpl();
+		ElectricFleetUtils.createAndAddVehicleSpecificationsFromMatsimVehicles(fleet, trucks);
+
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Plan charging = factory.createPlan();
+		charging.addActivity(createActivity("loaded", A));
+		charging.addLeg(createLeg(A, List.of(), B));
+		Activity chargingActivity = createActivity(CHARGING, B);
+		chargingActivity.setMaximumDuration(1800);
+		charging.addActivity(chargingActivity);
+		charging.addLeg(createLeg(B, List.of(), C));
+		charging.addActivity(createActivity("loaded", C));
+		addPerson("0", charging);
+
+		Plan through = factory.createPlan();
+		through.addActivity(createActivity("loaded", A));
+		through.addLeg(createLeg(A, List.of(B), C));
+		through.addActivity(createActivity("loaded", C));
+		addPerson("1", through);
+	}
+
+	private static void addLink(Network network, Id<Link> id, Node from, Node to) {
+		NetworkUtils.createAndAddLink(network, id, from, to,
+				CoordUtils.calcEuclideanDistance(from.getCoord(), to.getCoord()), 80 / 3.6, 4000, 2);
+	}
+
+	private Activity createActivity(String type, Id<Link> linkId) {
+		Activity activity = scenario.getPopulation().getFactory().createActivityFromLinkId(type, linkId);
+		activity.setCoord(scenario.getNetwork().getLinks().get(linkId).getCoord());
+		if (type.equals("loaded")) {
+			activity.setEndTime(7.5 * 3600);
+		}
+		return activity;
+	}
+
+	private Leg createLeg(Id<Link> startLinkId, List<Id<Link>> linkIds, Id<Link> endLinkId) {
+		Leg leg = scenario.getPopulation().getFactory().createLeg(car);
+		TripStructureUtils.setRoutingMode(leg, car);
+		leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(startLinkId, linkIds, endLinkId));
+		return leg;
+	}
+
+	private void addPerson(String id, Plan plan) {
+		Person person = scenario.getPopulation().getFactory().createPerson(Id.createPersonId(id));
+		VehicleUtils.insertVehicleIdsIntoPersonAttributes(person, Map.of(car, Id.createVehicleId(id)));
+		person.addPlan(plan);
+		scenario.getPopulation().addPerson(person);
+	}
+
+	private static ChargingInfrastructureSpecification createChargers() {
+		ChargingInfrastructureSpecification chargers = new ChargingInfrastructureSpecificationDefaultImpl();
+		chargers.addChargerSpecification(ImmutableChargerSpecification.newBuilder()
+				.id(Id.create("charger", Charger.class))
+				.linkId(B)
+				.chargerType("DC")
+				.plugPower(720_000)
+				.plugCount(1)
+				.build());
+		return chargers;
+	}
+
+	private TripRouter createTripRouter() {
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		LeastCostPathCalculator router = new SpeedyALTFactory().createPathCalculator(scenario.getNetwork(),
+				new OnlyTimeDependentTravelDisutility(travelTime), travelTime);
+		return new TripRouter.Builder(scenario.getConfig())
+				.setRoutingModule(car, DefaultRoutingModules.createPureNetworkRouter(car,
+						scenario.getPopulation().getFactory(), scenario.getNetwork(), router))
+				.build();
+	}
+
+	private StagedRouteValidator validate(ChargingInfrastructureSpecification chargers) {
+		StagedRouteValidator validator = new StagedRouteValidator(scenario, this::createTripRouter,
+				TimeInterpretation.create(scenario.getConfig()), fleet, chargers);
+		validator.notifyStartup(null);
+		return validator;
+	}
+
+	@Test
+	void testValidTripsAreKept() {
+		List<List<PlanElement>> before = new ArrayList<>();
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			before.add(new ArrayList<>(person.getSelectedPlan().getPlanElements()));
+		}
+
+		assertEquals(0, validate(createChargers()).getReroutedTrips());
+		int i = 0;
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			List<PlanElement> after = person.getSelectedPlan().getPlanElements();
+			assertEquals(before.get(i).size(), after.size());
+			for (int j = 0; j < after.size(); j++) {
+				assertSame(before.get(i).get(j), after.get(j));
+			}
+			i++;
+		}
+	}
+
+	@Test
+	void testTripWithRemovedChargerIsRoutedAgain() {
+		assertEquals(1, validate(new ChargingInfrastructureSpecificationDefaultImpl()).getReroutedTrips());
+		assertTrue(chargingActivities(scenario.getPopulation().getPersons().get(Id.createPersonId("0"))).isEmpty());
+	}
+
+	@Test
+	void testTripWithoutRouteIsRoutedAgain() {
+		Person person = scenario.getPopulation().getPersons().get(Id.createPersonId("1"));
+		TripStructureUtils.getLegs(person.getSelectedPlan()).get(0).setRoute(null);
+
+		assertEquals(1, validate(createChargers()).getReroutedTrips());
+		for (Leg leg : TripStructureUtils.getLegs(person.getSelectedPlan())) {
+			assertNotNull(leg.getRoute());
+		}
+	}
+
+	@Test
+	void testTripsOverRemovedLinkAreRoutedAgain() {
+		// the charging stop of truck 0 is on the removed link as well
+		scenario.getNetwork().removeLink(B);
+
+		assertEquals(2, validate(createChargers()).getReroutedTrips());
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			List<Leg> legs = TripStructureUtils.getLegs(person.getSelectedPlan());
+			assertEquals(1, legs.size());
+			assertEquals(List.of(Id.createLinkId("d"), Id.createLinkId("e")),
+					((NetworkRoute)legs.get(0).getRoute()).getLinkIds());
+		}
+	}
+
+	@Test
+	void testTripWithGapInRouteIsRoutedAgain() {
+		Person person = scenario.getPopulation().getPersons().get(Id.createPersonId("1"));
+		NetworkRoute route = (NetworkRoute)TripStructureUtils.getLegs(person.getSelectedPlan()).get(0).getRoute();
+		// a ends where b starts, not where c starts
+		route.setLinkIds(A, List.of(), C);
+
+		assertEquals(1, validate(createChargers()).getReroutedTrips());
+		NetworkRoute newRoute = (NetworkRoute)TripStructureUtils.getLegs(person.getSelectedPlan()).get(0).getRoute();
+		assertEquals(List.of(B), newRoute.getLinkIds());
+	}
+
+	private static List<Activity> chargingActivities(Person person) {
+		return TripStructureUtils.getActivities(person.getSelectedPlan(), TripStructureUtils.StageActivityHandling.StagesAsNormalActivities)
+				.stream()
+				.filter(activity -> activity.getType().equals(CHARGING))
+				.toList();
+	}
+}
@@ -0,0 +1,72 @@
+package org.matsim.mpm.run;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.PopulationWriter;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelPopulationReaderTest {
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	void testSameAsPopulationReader() throws IOException {
+		Config config = ConfigUtils.createConfig();
+		Population population = ScenarioUtils.createScenario(config).getPopulation();
+		PopulationFactory factory = population.getFactory();
+		population.getAttributes().putAttribute("source", "test");
+		// two full chunks and a partial one, some persons without plans
+		for (int i = 0; i < 2500; i++) {
+			Person person = factory.createPerson(Id.createPersonId(i));
+			if (i % 100 != 0) {
+				Plan plan = factory.createPlan();
+				plan.addActivity(factory.createActivityFromCoord("loaded", new Coord(i, 0)));
+				plan.addLeg(factory.createLeg(TransportMode.car));
+				plan.addActivity(factory.createActivityFromCoord("unloaded", new Coord(i, 1000)));
+				person.addPlan(plan);
+			}
+			person.getAttributes().putAttribute("index", i);
+			population.addPerson(person);
+		}
+		String file = utils.getOutputDirectory() + "plans.xml.gz";
+		new PopulationWriter(population).write(file);
+
+		Scenario expected = ScenarioUtils.createScenario(config);
+		new PopulationReader(expected).readFile(file);
+		Scenario actual = ScenarioUtils.createScenario(config);
+		new ParallelPopulationReader(config, actual, () -> ScenarioUtils.createScenario(config), 3)
+				.read(IOUtils.getFileUrl(file));
+
+		assertEquals(List.copyOf(expected.getPopulation().getPersons().keySet()),
+				List.copyOf(actual.getPopulation().getPersons().keySet()));
+		for (Person expectedPerson : expected.getPopulation().getPersons().values()) {
+			Person actualPerson = actual.getPopulation().getPersons().get(expectedPerson.getId());
+			assertEquals(expectedPerson.getPlans().size(), actualPerson.getPlans().size());
+			if (!expectedPerson.getPlans().isEmpty()) {
+				assertEquals(expectedPerson.getSelectedPlan().getPlanElements().toString(),
+						actualPerson.getSelectedPlan().getPlanElements().toString());
+			}
+			assertEquals(expectedPerson.getAttributes().getAttribute("index"),
+					actualPerson.getAttributes().getAttribute("index"));
+		}
+		assertEquals("test", actual.getPopulation().getAttributes().getAttribute("source"));
+	}
+}
@@ -0,0 +1,74 @@
+package org.matsim.mpm.sampling;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BetPopulationSamplerTest {
+
+	/**
+	 * Adds a person driving {@code mode} 200 km east, and the vehicle the ev routing uses for it.
+	 */
+	private static Person addTruck(Scenario scenario, String id, String mode, Coord origin, VehicleType type) {
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Person person = factory.createPerson(Id.createPersonId(id));
+		Plan plan = factory.createPlan();
+		plan.addActivity(factory.createActivityFromCoord("loaded", origin));
+		plan.addLeg(factory.createLeg(mode));
+		plan.addActivity(factory.createActivityFromCoord("loaded", new Coord(origin.getX() + 200_000, origin.getY())));
+		person.addPlan(plan);
+		scenario.getPopulation().addPerson(person);
+
+		String vehicleId = mode.equals(TransportMode.car) ? id : id + "_" + mode;
+		scenario.getVehicles().addVehicle(VehicleUtils.createVehicle(Id.createVehicleId(vehicleId), type));
+		return person;
+	}
+
+	private static Scenario createScenario() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		VehicleType type = VehicleUtils.createVehicleType(Id.create("bet", VehicleType.class));
+		scenario.getVehicles().addVehicleType(type);
+		addTruck(scenario, "0", TransportMode.truck, new Coord(0, 0), type);
+		addTruck(scenario, "1", TransportMode.truck, new Coord(0, 0), type);
+		addTruck(scenario, "2", TransportMode.car, new Coord(0, 0), type);
+		addTruck(scenario, "3", TransportMode.car, new Coord(0, 0), type);
+		return scenario;
+	}
+
+	@Test
+	void testRetainSampleKeepsModeSuffixedVehicles() {
+		Scenario scenario = createScenario();
+
+		BetPopulationSampler.retainSample(scenario, Set.of(Id.createPersonId("0"), Id.createPersonId("2")));
+
+		assertEquals(Set.of(Id.createPersonId("0"), Id.createPersonId("2")),
+				scenario.getPopulation().getPersons().keySet());
+		assertEquals(Set.<Id<Vehicle>>of(Id.createVehicleId("0_truck"), Id.createVehicleId("2")),
+				scenario.getVehicles().getVehicles().keySet());
+	}
+
+	@Test
+	void testStratumHasTheVehicleTypeOfModeSuffixedVehicles() {
+		Scenario scenario = createScenario();
+		BetPopulationSampler sampler = new BetPopulationSampler(0.5, 4711, BetPopulationSampler.DEFAULT_REGION_CELL_SIZE);
+
+		String truck = sampler.stratum(scenario, scenario.getPopulation().getPersons().get(Id.createPersonId("0")));
+		String car = sampler.stratum(scenario, scenario.getPopulation().getPersons().get(Id.createPersonId("2")));
+		assertEquals("0_0|1|bet", truck);
+		assertEquals(truck, car);
+	}
+}
@@ -0,0 +1,94 @@
+package org.matsim.mpm.stats;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.contrib.ev.charging.ChargingEndEvent;
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.QueuedAtChargerEvent;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructure;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureUtils;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.mpm.MpmEvConfigGroup;
+import org.matsim.mpm.routing.BetCorridorFixture;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargerOccupancyRasterCollectorTest {
+	private static final Id<Charger> C10 = Id.create("c10", Charger.class);
+	private static final Id<Charger> C20 = Id.create("c20", Charger.class);
+	private static final Id<Charger> C30 = Id.create("c30", Charger.class);
+
+	@RegisterExtension
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	void testMeanOccupancy() throws IOException {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setEndTime(3600);
+		// c10 and c20 (at x = 95 km and 195 km) in the first cell, c30 in the second
+		MpmEvConfigGroup.get(config).chargerRasterCellSize = 150_000;
+		MpmEvConfigGroup.get(config).chargerRasterTimeBinSize = 900;
+		Scenario scenario = BetCorridorFixture.createScenario(config, 0);
+		ChargingInfrastructure chargers = ChargingInfrastructureUtils.createChargingInfrastructure(
+				BetCorridorFixture.createChargers(), scenario.getNetwork().getLinks()::get, charger -> null);
+		ChargerOccupancyRasterCollector collector = new ChargerOccupancyRasterCollector(chargers, config, null, null);
+
+		Id<Vehicle> first = Id.createVehicleId("first");
+		Id<Vehicle> second = Id.createVehicleId("second");
+		Id<Vehicle> third = Id.createVehicleId("third");
+		collector.handleEvent(new ChargingStartEvent(0, C10, first, 0));
+		collector.handleEvent(new QueuedAtChargerEvent(450, C20, second));
+		collector.handleEvent(new ChargingStartEvent(900, C20, second, 0));
+		collector.handleEvent(new ChargingEndEvent(1350, C20, second, 0));
+		collector.handleEvent(new ChargingEndEvent(1800, C10, first, 0));
+		// beyond the horizon of 3600 s, the last bin covers 2700 to 5400 s
+		collector.handleEvent(new ChargingStartEvent(2700, C30, third, 0));
+		collector.finish(5400);
+
+		String file = utils.getOutputDirectory() + ChargerOccupancyRasterCollector.FILE_NAME;
+		collector.write(file);
+
+		try (DataInputStream in = new DataInputStream(IOUtils.getInputStream(IOUtils.getFileUrl(file)))) {
+			in.readInt();// magic
+			assertEquals(2, in.readInt());
+			assertEquals(95_000, in.readDouble());
+			assertEquals(0, in.readDouble());
+			assertEquals(150_000, in.readDouble());
+			assertEquals(6, in.readInt());
+			assertEquals(1, in.readInt());
+			assertEquals(900, in.readDouble());
+			assertEquals(4, in.readInt());
+			int cellCount = in.readInt();
+			assertEquals(2, cellCount);
+
+			Map<Long, float[][]> cells = new HashMap<>();
+			for (int cell = 0; cell < cellCount; cell++) {
+				cells.put(in.readLong(), new float[][] { readBins(in, 4), readBins(in, 4) });
+			}
+			assertArrayEquals(new float[] { 1, 1.5f, 0, 0 }, cells.get(0L)[0]);
+			assertArrayEquals(new float[] { 0.5f, 0, 0, 0 }, cells.get(0L)[1]);
+			assertArrayEquals(new float[] { 0, 0, 0, 1 }, cells.get(1L)[0]);
+			assertArrayEquals(new float[] { 0, 0, 0, 0 }, cells.get(1L)[1]);
+		}
+	}
+
+	private static float[] readBins(DataInputStream in, int timeBins) throws IOException {
+		float[] bins = new float[timeBins];
+		for (int bin = 0; bin < timeBins; bin++) {
+			bins[bin] = in.readFloat();
+		}
+		return bins;
+	}
+}
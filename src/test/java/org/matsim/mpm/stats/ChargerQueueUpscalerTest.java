@@ -0,0 +1,167 @@
+package org.matsim.mpm.stats;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.contrib.ev.charging.ChargingStartEvent;
+import org.matsim.contrib.ev.charging.FixedSpeedCharging;
+import org.matsim.contrib.ev.charging.QueuedAtChargerEvent;
+import org.matsim.contrib.ev.charging.QuitQueueAtChargerEvent;
+import org.matsim.contrib.ev.fleet.ElectricFleet;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecification;
+import org.matsim.contrib.ev.fleet.ElectricFleetSpecificationImpl;
+import org.matsim.contrib.ev.fleet.ElectricFleetUtils;
+import org.matsim.contrib.ev.infrastructure.Charger;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructure;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecification;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureSpecificationDefaultImpl;
+import org.matsim.contrib.ev.infrastructure.ChargingInfrastructureUtils;
+import org.matsim.contrib.ev.infrastructure.ImmutableChargerSpecification;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.mpm.discharging.BetDriveEnergyConsumption;
+import org.matsim.mpm.fleet.CompactElectricFleet;
+import org.matsim.mpm.sampling.BetPopulationSampler;
+import org.matsim.mpm.stats.ChargerQueueUpscaler.UpscaledQueuing;
+import org.matsim.mpm.stats.ChargerQueuingCollector.ChargerVisit;
+import org.matsim.vehicles.MatsimVehicleReader;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+import org.matsim.vehicles.Vehicles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargerQueueUpscalerTest {
+	private static final String BET_VEHICLES = "scenarios/BETs/10_BETs_Test/10_BETs_Test_Vehicles.xml.gz";
+	private static final Id<Charger> CHARGER_ID = Id.create("c10", Charger.class);
+
+	@Test
+	void testUpscaling() {
+		List<ChargerVisit> visits = List.of(
+				new ChargerVisit(CHARGER_ID, 0, 100),
+				new ChargerVisit(CHARGER_ID, 0, 300),
+				new ChargerVisit(CHARGER_ID, 0, 0));// plugged in right away, not queuing
+
+		UpscaledQueuing queuing = ChargerQueueUpscaler.upscale(visits, 0.5).get(0);
+		assertEquals(CHARGER_ID, queuing.chargerId());
+		assertEquals(2, queuing.sampleCount());
+		// count n / f, band 1.96 sqrt(n (1 - f)) / f, not below the sample count
+		assertEquals(4, queuing.count(), 1e-9);
+		assertEquals(2, queuing.countBandLower(), 1e-9);
+		assertEquals(4 + 3.92, queuing.countBandUpper(), 1e-9);
+		// mean as is, band 1.96 s / sqrt(n)
+		assertEquals(200, queuing.meanWait(), 1e-9);
+		assertEquals(4, queuing.meanWaitBandLower(), 1e-9);
+		assertEquals(396, queuing.meanWaitBandUpper(), 1e-9);
+		// total sum / f, band 1.96 sqrt(sum(x^2) (1 - f)) / f, not below the sample total
+		assertEquals(800, queuing.totalWait(), 1e-9);
+		assertEquals(400, queuing.totalWaitBandLower(), 1e-9);
+		assertEquals(800 + 1.96 * Math.sqrt(100_000 * 0.5) / 0.5, queuing.totalWaitBandUpper(), 1e-9);
+	}
+
+	@Test
+	void testTrucksPluggedFromTheQueueAreCounted() {
+		ChargerQueuingCollector collector = new ChargerQueuingCollector(createCharger(), createFleet(3));
+
+		// "0" is plugged in right away, "1" waits and is plugged (no quit event with the ChargingWithQueueingLogic),
+		// "2" gives up
+		collector.handleEvent(new ChargingStartEvent(0, CHARGER_ID, Id.createVehicleId("0"), 0));
+		collector.handleEvent(new QueuedAtChargerEvent(10, CHARGER_ID, Id.createVehicleId("1")));
+		collector.handleEvent(new QueuedAtChargerEvent(20, CHARGER_ID, Id.createVehicleId("2")));
+		collector.handleEvent(new QuitQueueAtChargerEvent(120, CHARGER_ID, Id.createVehicleId("2")));
+		collector.handleEvent(new ChargingStartEvent(310, CHARGER_ID, Id.createVehicleId("1"), 0));
+
+		UpscaledQueuing queuing = ChargerQueueUpscaler.upscale(collector.getVisits(), 0.5).get(0);
+		assertEquals(2, queuing.sampleCount());
+		assertEquals(4, queuing.count(), 1e-9);
+		assertEquals(200, queuing.meanWait(), 1e-9);
+	}
+
+	@Test
+	void testStratifiedSampleIsUpscaledToFullPopulation() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		// 1000 trucks in three strata of different size, every truck queues 10 min at the charger
+		int trucks = 1000;
+		double wait = 600;
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		for (int i = 0; i < trucks; i++) {
+			Coord origin = new Coord(i % 7 == 0 ? 0 : i % 2 == 0 ? 150_000 : 350_000, 0);
+			Person person = factory.createPerson(Id.createPersonId("t" + i));
+			Plan plan = factory.createPlan();
+			plan.addActivity(factory.createActivityFromCoord("loaded", origin));
+			plan.addLeg(factory.createLeg(TransportMode.car));
+			plan.addActivity(factory.createActivityFromCoord("loaded", new Coord(origin.getX() + 400_000, 0)));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+
+		double fraction = 0.1;
+		Set<Id<Person>> sample = new BetPopulationSampler(fraction, 4711, BetPopulationSampler.DEFAULT_REGION_CELL_SIZE)
+				.drawSample(scenario);
+		// random rounding per stratum
+		assertEquals(trucks * fraction, sample.size(), 3);
+
+		List<ChargerVisit> visits = new ArrayList<>();
+		for (int i = 0; i < sample.size(); i++) {
+			visits.add(new ChargerVisit(CHARGER_ID, 0, wait));
+		}
+		UpscaledQueuing queuing = ChargerQueueUpscaler.upscale(visits, fraction).get(0);
+		assertEquals(sample.size(), queuing.sampleCount());
+		assertEquals(trucks, queuing.count(), 3 / fraction);
+		assertTrue(queuing.countBandLower() <= trucks && trucks <= queuing.countBandUpper());
+		assertEquals(wait, queuing.meanWait(), 1e-9);
+		assertTrue(queuing.totalWaitBandLower() <= trucks * wait && trucks * wait <= queuing.totalWaitBandUpper());
+	}
+
+	/**
+	 * The charger on a single link.
+	 */
+	private static ChargingInfrastructure createCharger() {
+		Network network = NetworkUtils.createNetwork();
+		Node from = NetworkUtils.createAndAddNode(network, Id.createNodeId("from"), new Coord(0, 0));
+		Node to = NetworkUtils.createAndAddNode(network, Id.createNodeId("to"), new Coord(1000, 0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId("link"), from, to, 1000, 20, 4000, 2);
+		ChargingInfrastructureSpecification chargers = new ChargingInfrastructureSpecificationDefaultImpl();
+		chargers.addChargerSpecification(ImmutableChargerSpecification.newBuilder()
+				.id(CHARGER_ID)
+				.linkId(link.getId())
+				.chargerType("DC")
+				.plugPower(720_000)
+				.plugCount(1)
+				.build());
+		return ChargingInfrastructureUtils.createChargingInfrastructure(chargers, network.getLinks()::get, spec -> null);
+	}
+
+	/**
+	 * Trucks {@code 0 ... count-1} of the BET type of {@code 10_BETs_Test}.
+	 */
+	private static ElectricFleet createFleet(int count) {
+		Vehicles vehicles = VehicleUtils.createVehiclesContainer();
+		new MatsimVehicleReader(vehicles).readFile(BET_VEHICLES);
+		VehicleType type = vehicles.getVehicleTypes().get(Id.create("600kWh_eTruck", VehicleType.class));
+		ElectricFleetSpecification fleetSpecification = new ElectricFleetSpecificationImpl();
+		List<Vehicle> trucks = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Vehicle truck = VehicleUtils.createVehicle(Id.createVehicleId(i), type);
+			truck.getAttributes().putAttribute("initialSoc", 1.0);
+			trucks.add(truck);
+		}
+		ElectricFleetUtils.createAndAddVehicleSpecificationsFromMatsimVehicles(fleetSpecification, trucks);
+		return new CompactElectricFleet(fleetSpecification, ev -> new BetDriveEnergyConsumption(),
+				ev -> (beginTime, duration, linkId) -> 0, ev -> new FixedSpeedCharging(ev, 1));
+	}
+}